@@ -0,0 +1,165 @@
+package simacogo;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks the ways of scoring the sibling leaves of frontier nodes: going over the grid of every leaf with
+ * Value.playerScore, making and unmaking every move on a SearchBoard as the search does, and scoring all the siblings
+ * together with a BatchEvaluator, one at a time (scalar) and with the Vector API (vector).  The frontier nodes are taken
+ * from every stage of a random Game.  Every invocation scores the leaves of all of them, and the number of leaves
+ * scored per second is reported as "positions".
+ * The fork adds the jdk.incubator.vector module, so this benchmark needs JDK 17 or later; vector falls back to scalar
+ * if the VectorBatchEvaluator was not built.
+ * @author Patrick Drucker
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+public class BatchEvaluatorBenchmark {
+	private static final int NUM_FRONTIER_NODES = 32;	// the frontier nodes, spread over a Game
+	@Param({"7x7", "9x9", "11x10"})
+	public String size;									// rows x columns of the grid, narrow
+	private SearchBoard[] boards;						// the frontier nodes
+	private int[][] moves;								// the columns of each frontier node
+	private int[] numMoves;								// the number of columns of each frontier node
+	private List<List<simacogo.State>> leaves;			// the children of each frontier node
+	private Player[] players;							// the Player who moves at each frontier node
+	private BatchEvaluator scalar;						// scores the siblings one at a time
+	private BatchEvaluator vector;						// scores the siblings with the Vector API, if it can
+	private double[] values;							// buffer of the values of the siblings
+	private int numLeaves;								// the number of leaves of all frontier nodes
+	
+	/**
+	 * The number of leaves scored, reported by JMH as a rate next to the time per invocation.
+	 */
+	@AuxCounters(AuxCounters.Type.OPERATIONS)
+	@State(Scope.Thread)
+	public static class Leaves {
+		public long positions;							// leaves scored during the iteration
+		
+		/**
+		 * Resets the count before every iteration.
+		 */
+		@Setup(Level.Iteration)
+		public void reset() {
+			positions = 0;
+		}
+	}
+	
+	/**
+	 * Builds the frontier nodes and their children.
+	 */
+	@Setup
+	public void setUp() {
+		BoardSize boardSize = BoardSize.parse(size);
+		boards = new SearchBoard[NUM_FRONTIER_NODES];
+		moves = new int[NUM_FRONTIER_NODES][boardSize.getColumns()];
+		numMoves = new int[NUM_FRONTIER_NODES];
+		leaves = new ArrayList<List<simacogo.State>>();
+		players = new Player[NUM_FRONTIER_NODES];
+		for(int i = 0; i < NUM_FRONTIER_NODES; i++) {
+			simacogo.State position = Positions.position(boardSize, i * (boardSize.getNumCells() - 1) / NUM_FRONTIER_NODES);
+			boards[i] = new SearchBoard(position);
+			numMoves[i] = boards[i].generateMoves(moves[i]);
+			List<simacogo.State> children = new ArrayList<simacogo.State>();
+			for(int move = 0; move < numMoves[i]; move++) {
+				children.add(position.dropPiece(moves[i][move]));
+			}
+			leaves.add(children);
+			players[i] = Positions.playerToMove(position);
+			numLeaves += numMoves[i];
+		}
+		scalar = new BatchEvaluator();
+		vector = BatchEvaluator.create();
+		values = new double[boardSize.getColumns()];
+	}
+	
+	/**
+	 * @param leavesScored	counts the leaves
+	 * @return				the sum of the values of the leaves
+	 */
+	@Benchmark
+	public double playerScore(Leaves leavesScored) {
+		double sum = 0;
+		for(int i = 0; i < NUM_FRONTIER_NODES; i++) {
+			for(simacogo.State leaf : leaves.get(i)) {
+				sum += Value.playerScore(players[i], leaf) - Value.playerScore(players[i].getOpponent(), leaf);
+			}
+		}
+		leavesScored.positions += numLeaves;
+		return sum;
+	}
+	
+	/**
+	 * @param leavesScored	counts the leaves
+	 * @return				the sum of the values of the leaves
+	 */
+	@Benchmark
+	public double makeUnmake(Leaves leavesScored) {
+		double sum = 0;
+		for(int i = 0; i < NUM_FRONTIER_NODES; i++) {
+			for(int move = 0; move < numMoves[i]; move++) {
+				boards[i].makeMove(moves[i][move]);
+				sum -= boards[i].scoreDifference();
+				boards[i].unmakeMove(moves[i][move]);
+			}
+		}
+		leavesScored.positions += numLeaves;
+		return sum;
+	}
+	
+	/**
+	 * @param leavesScored	counts the leaves
+	 * @return				the sum of the values of the leaves
+	 */
+	@Benchmark
+	public double batchScalar(Leaves leavesScored) {
+		return batch(scalar, leavesScored);
+	}
+	
+	/**
+	 * @param leavesScored	counts the leaves
+	 * @return				the sum of the values of the leaves
+	 */
+	@Benchmark
+	public double batchVector(Leaves leavesScored) {
+		return batch(vector, leavesScored);
+	}
+	
+	/**
+	 * Scores the leaves of every frontier node with one batch per frontier node.
+	 * @param evaluator		the BatchEvaluator
+	 * @param leavesScored	counts the leaves
+	 * @return				the sum of the values of the leaves
+	 */
+	private double batch(BatchEvaluator evaluator, Leaves leavesScored) {
+		double sum = 0;
+		for(int i = 0; i < NUM_FRONTIER_NODES; i++) {
+			evaluator.evaluateMoves(boards[i], moves[i], numMoves[i], players[i].getPiece(), values);
+			for(int move = 0; move < numMoves[i]; move++) {
+				sum += values[move];
+			}
+		}
+		leavesScored.positions += numLeaves;
+		return sum;
+	}
+}
@@ -0,0 +1,106 @@
+package simacogo;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks how the cost of the search grows with the size of the grid, from 7x7 (bitboards of one word) through 9x9
+ * (two words) to 13x13 and 19x19 (arrays of words).  Every grid is a quarter full.  Measures the successors of a State,
+ * making and unmaking every column on a SearchBoard, and an alpha-beta search numPlies deep with a minimal
+ * transposition table, which also reports the number of States visited per second as "nodes".
+ * @author Patrick Drucker
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class BoardSizeBenchmark {
+	@Param({"7x7", "9x9", "13x13", "19x19"})
+	public String size;						// rows x columns of the grid
+	@Param({"4"})
+	public int numPlies;					// depth of the alpha-beta search
+	private simacogo.State position;		// the State that is searched
+	private SearchBoard board;				// position as a SearchBoard
+	private int[] moves;					// buffer of the columns of board
+	private Player player;					// the Player whose turn it is
+	
+	/**
+	 * The number of States visited, reported by JMH as a rate next to the time per search.
+	 */
+	@AuxCounters(AuxCounters.Type.OPERATIONS)
+	@State(Scope.Thread)
+	public static class Nodes {
+		public long nodes;					// States visited during the iteration
+		
+		/**
+		 * Resets the count before every iteration.
+		 */
+		@Setup(Level.Iteration)
+		public void reset() {
+			nodes = 0;
+		}
+	}
+	
+	/**
+	 * Builds the position that is searched.
+	 */
+	@Setup
+	public void setUp() {
+		BoardSize boardSize = BoardSize.parse(size);
+		position = Positions.position(boardSize, boardSize.getNumCells() / 4);
+		board = new SearchBoard(position);
+		moves = new int[boardSize.getColumns()];
+		player = Positions.playerToMove(position);
+	}
+	
+	/**
+	 * @return			the States reachable in one move
+	 */
+	@Benchmark
+	public List<simacogo.State> successors() {
+		return position.successors();
+	}
+	
+	/**
+	 * @return			the sum of the scores after every move, so that the moves are not optimised away
+	 */
+	@Benchmark
+	public double makeUnmake() {
+		double sum = 0;
+		int numMoves = board.generateMoves(moves);
+		for(int i = 0; i < numMoves; i++) {
+			board.makeMove(moves[i]);
+			sum += board.scoreDifference();
+			board.unmakeMove(moves[i]);
+		}
+		return sum;
+	}
+	
+	/**
+	 * @param nodes		counts the States visited
+	 * @return			the value of the best move
+	 */
+	@Benchmark
+	public double alphaBeta(Nodes nodes) {
+		AlphaBeta alphaBeta = new AlphaBeta(0);		// a fresh table, so that earlier searches do not help
+		double value = alphaBeta.search(position, numPlies, player);
+		nodes.nodes += alphaBeta.getNodeCount();
+		return value;
+	}
+}
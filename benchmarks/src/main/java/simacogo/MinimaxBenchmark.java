@@ -0,0 +1,76 @@
+package simacogo;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks Minimax.minimax from 1 to 8 plies deep on an early position.  Besides searches per second, reports the
+ * number of States visited per second as "nodes".
+ * Run with "-prof gc" to also see the allocation rate.
+ * @author Patrick Drucker
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class MinimaxBenchmark {
+	@Param({"1", "2", "3", "4", "5", "6", "7", "8"})
+	public int numPlies;					// depth of the search
+	private simacogo.State position;		// the State that is searched
+	private Player player;					// the Player whose turn it is
+	private Minimax minimax;				// the search
+	
+	/**
+	 * The number of States visited, reported by JMH as a rate next to the searches per second.
+	 */
+	@AuxCounters(AuxCounters.Type.OPERATIONS)
+	@State(Scope.Thread)
+	public static class Nodes {
+		public long nodes;					// States visited during the iteration
+		
+		/**
+		 * Resets the count before every iteration.
+		 */
+		@Setup(Level.Iteration)
+		public void reset() {
+			nodes = 0;
+		}
+	}
+	
+	/**
+	 * Builds the position that is searched.
+	 */
+	@Setup
+	public void setUp() {
+		position = Positions.position(Positions.EARLY);
+		player = Positions.playerToMove(position);
+		minimax = new Minimax();
+	}
+	
+	/**
+	 * @param nodes		counts the States visited
+	 * @return			the value of the best move
+	 */
+	@Benchmark
+	public double minimax(Nodes nodes) {
+		minimax.resetNodeCount();
+		double value = minimax.minimax(position, numPlies, true, player);
+		nodes.nodes += minimax.getNodeCount();
+		return value;
+	}
+}
@@ -0,0 +1,148 @@
+package simacogo;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks the Evaluations on the leaves of a search: making every move of a frontier node on a SearchBoard,
+ * evaluating the leaf and unmaking the move, with SCORE, FEATURES and NEURAL, whose network is updated by the move and
+ * the unmade move.  neuralRefresh sets the board to every leaf instead, which rebuilds the network's first layer from
+ * the grid, to show what updating it move by move saves.  The frontier nodes are taken from every stage of a random
+ * 9x9 Game, the only size with a built-in network.  Every invocation evaluates the leaves of all of them, and the
+ * number of leaves evaluated per second is reported as "positions".
+ * @author Patrick Drucker
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class NeuralEvaluatorBenchmark {
+	private static final int NUM_FRONTIER_NODES = 32;	// the frontier nodes, spread over a Game
+	private SearchBoard[] boards;						// the frontier nodes
+	private int[][] moves;								// the columns of each frontier node
+	private int[] numMoves;								// the number of columns of each frontier node
+	private simacogo.State[][] leaves;					// the children of each frontier node
+	private Player[] players;							// the Player who moves at each frontier node
+	private SearchBoard leafBoard;						// set to every leaf by neuralRefresh
+	private int numLeaves;								// the number of leaves of all frontier nodes
+	
+	/**
+	 * The number of leaves evaluated, reported by JMH as a rate next to the time per invocation.
+	 */
+	@AuxCounters(AuxCounters.Type.OPERATIONS)
+	@State(Scope.Thread)
+	public static class Leaves {
+		public long positions;							// leaves evaluated during the iteration
+		
+		/**
+		 * Resets the count before every iteration.
+		 */
+		@Setup(Level.Iteration)
+		public void reset() {
+			positions = 0;
+		}
+	}
+	
+	/**
+	 * Builds the frontier nodes and their children.
+	 */
+	@Setup
+	public void setUp() {
+		BoardSize size = BoardSize.STANDARD;
+		boards = new SearchBoard[NUM_FRONTIER_NODES];
+		moves = new int[NUM_FRONTIER_NODES][size.getColumns()];
+		numMoves = new int[NUM_FRONTIER_NODES];
+		leaves = new simacogo.State[NUM_FRONTIER_NODES][];
+		players = new Player[NUM_FRONTIER_NODES];
+		for(int i = 0; i < NUM_FRONTIER_NODES; i++) {
+			simacogo.State position = Positions.position(size, i * (size.getNumCells() - 1) / NUM_FRONTIER_NODES);
+			boards[i] = new SearchBoard(position);
+			numMoves[i] = boards[i].generateMoves(moves[i]);
+			leaves[i] = new simacogo.State[numMoves[i]];
+			for(int move = 0; move < numMoves[i]; move++) {
+				leaves[i][move] = position.dropPiece(moves[i][move]);
+			}
+			players[i] = Positions.playerToMove(position);
+			numLeaves += numMoves[i];
+		}
+		leafBoard = new SearchBoard(leaves[0][0]);
+		leafBoard.neuralValue('X');
+	}
+	
+	/**
+	 * @param leavesEvaluated	counts the leaves
+	 * @return					the sum of the values of the leaves
+	 */
+	@Benchmark
+	public double score(Leaves leavesEvaluated) {
+		return makeUnmake(Evaluation.SCORE, leavesEvaluated);
+	}
+	
+	/**
+	 * @param leavesEvaluated	counts the leaves
+	 * @return					the sum of the values of the leaves
+	 */
+	@Benchmark
+	public double features(Leaves leavesEvaluated) {
+		return makeUnmake(Evaluation.FEATURES, leavesEvaluated);
+	}
+	
+	/**
+	 * @param leavesEvaluated	counts the leaves
+	 * @return					the sum of the values of the leaves
+	 */
+	@Benchmark
+	public double neural(Leaves leavesEvaluated) {
+		return makeUnmake(Evaluation.NEURAL, leavesEvaluated);
+	}
+	
+	/**
+	 * @param leavesEvaluated	counts the leaves
+	 * @return					the sum of the values of the leaves
+	 */
+	@Benchmark
+	public double neuralRefresh(Leaves leavesEvaluated) {
+		double sum = 0;
+		for(int i = 0; i < NUM_FRONTIER_NODES; i++) {
+			for(simacogo.State leaf : leaves[i]) {
+				leafBoard.set(leaf);
+				sum += leafBoard.neuralValue(players[i].getPiece());
+			}
+		}
+		leavesEvaluated.positions += numLeaves;
+		return sum;
+	}
+	
+	/**
+	 * Evaluates the leaves of every frontier node by making and unmaking every move.
+	 * @param evaluation		the Evaluation
+	 * @param leavesEvaluated	counts the leaves
+	 * @return					the sum of the values of the leaves
+	 */
+	private double makeUnmake(Evaluation evaluation, Leaves leavesEvaluated) {
+		double sum = 0;
+		for(int i = 0; i < NUM_FRONTIER_NODES; i++) {
+			for(int move = 0; move < numMoves[i]; move++) {
+				boards[i].makeMove(moves[i][move]);
+				sum += evaluation.evaluate(players[i], boards[i]);
+				boards[i].unmakeMove(moves[i][move]);
+			}
+		}
+		leavesEvaluated.positions += numLeaves;
+		return sum;
+	}
+}
@@ -0,0 +1,69 @@
+package simacogo;
+
+import java.util.Random;
+
+/**
+ * The positions that the benchmarks are run on, reached by the same random moves every time.
+ * Cannot be instantiated.
+ * @author Patrick Drucker
+ */
+final class Positions {
+	static final String EARLY = "EARLY";		// 4 pieces on the grid
+	static final String MID = "MID";			// 40 pieces on the grid
+	static final String LATE = "LATE";			// 72 pieces on the grid
+	private static final long SEED = 1;			// seed of the random moves
+	
+	/**
+	 * Private constructor to prevent instantiation.
+	 */
+	private Positions() {
+	}
+	
+	/**
+	 * @param stage		EARLY, MID or LATE
+	 * @return			the State of that stage of a Game
+	 */
+	static State position(String stage) {
+		int numPieces;
+		if(stage.equals(EARLY)) {
+			numPieces = 4;
+		}
+		else if(stage.equals(MID)) {
+			numPieces = 40;
+		}
+		else if(stage.equals(LATE)) {
+			numPieces = 72;
+		}
+		else {
+			throw new IllegalArgumentException("Unknown stage: " + stage);
+		}
+		return position(BoardSize.STANDARD, numPieces);
+	}
+	
+	/**
+	 * @param size		the size of the grid
+	 * @param numPieces	the number of pieces to drop
+	 * @return			the State after that many random drops from the initial State of a grid of that size
+	 */
+	static State position(BoardSize size, int numPieces) {
+		Random random = new Random(SEED);
+		State state = new State(size, 'O', 'X');
+		for(int piece = 0; piece < numPieces; piece++) {
+			int col;
+			do {
+				col = random.nextInt(size.getColumns());
+			} while(state.numAvailableSpaces(col) == 0);
+			state = state.dropPiece(col);
+		}
+		return state;
+	}
+	
+	/**
+	 * @param state		a State
+	 * @return			the Player whose turn it is in state, with its opponent set
+	 */
+	static Player playerToMove(State state) {
+		Player[] players = new Game(new GameConfig().withTableSizeMB(0).withEndgameCells(0)).getPlayers();
+		return players[0].getPiece() == state.getNextMovePiece() ? players[0] : players[1];
+	}
+}
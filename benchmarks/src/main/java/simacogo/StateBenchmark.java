@@ -0,0 +1,82 @@
+package simacogo;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of the operations that every node of the search runs: dropping a piece, generating the successors,
+ * checking a column and evaluating a State, on an early, a middle and a late position.
+ * Run with "-prof gc" to also see the allocation rate.
+ * @author Patrick Drucker
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StateBenchmark {
+	@Param({Positions.EARLY, Positions.MID, Positions.LATE})
+	public String stage;					// the position the operations are run on
+	private simacogo.State position;		// the State of the stage
+	private Player player;					// the Player whose turn it is
+	private int column;						// a column that is not full
+	
+	/**
+	 * Builds the position of the stage.
+	 */
+	@Setup
+	public void setUp() {
+		position = Positions.position(stage);
+		player = Positions.playerToMove(position);
+		column = position.successors().get(0).getColumnDropped();
+	}
+	
+	/**
+	 * @return the State after dropping a piece
+	 */
+	@Benchmark
+	public simacogo.State dropPiece() {
+		return position.dropPiece(column);
+	}
+	
+	/**
+	 * @return every State that can be reached with one drop
+	 */
+	@Benchmark
+	public List<simacogo.State> successors() {
+		return position.successors();
+	}
+	
+	/**
+	 * @return the available spaces of every column
+	 */
+	@Benchmark
+	public int numAvailableSpaces() {
+		int spaces = 0;
+		for(int col = 0; col < simacogo.State.COLUMNS; col++) {
+			spaces += position.numAvailableSpaces(col);
+		}
+		return spaces;
+	}
+	
+	/**
+	 * @return the value of the position for the Player whose turn it is
+	 */
+	@Benchmark
+	public double evaluate() {
+		return Value.evaluate(player, position);
+	}
+}
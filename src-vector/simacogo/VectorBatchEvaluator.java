@@ -0,0 +1,82 @@
+package simacogo;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * A BatchEvaluator that scores as many positions at once as the processor has 64-bit lanes, with the Vector API of
+ * JDK 17 and later (the incubator module jdk.incubator.vector).  Every lane counts the pairs of one position with the
+ * same shifts, ANDs and bit counts that Bitboard.pairs uses on one long, so there is no branch per position or per
+ * cell; the positions left over after the last full vector are scored one at a time.
+ * This class is compiled on its own from src-vector, and only when building with JDK 17 or later, so the rest of the
+ * engine still builds and runs on Java 11.  It is found by BatchEvaluator.create, never named by the engine.
+ * @author Patrick Drucker
+ */
+final class VectorBatchEvaluator extends BatchEvaluator {
+	private static final VectorSpecies<Long> SPECIES = LongVector.SPECIES_PREFERRED;	// the widest vectors of the processor
+	private static final long ONES = 0x5555555555555555L;		// masks of the bit count
+	private static final long TWOS = 0x3333333333333333L;
+	private static final long FOURS = 0x0F0F0F0F0F0F0F0FL;
+	private static final long BYTES = 0x0101010101010101L;
+	
+	@Override
+	public boolean isVectorized() {
+		return true;
+	}
+	
+	@Override
+	void score(BoardSize size, int count, double[] values) {
+		int right = size.getHeight();
+		int bound = SPECIES.loopBound(count);
+		for(int i = 0; i < bound; i += SPECIES.length()) {
+			LongVector own = doubledScore(LongVector.fromArray(SPECIES, ownLow, i), LongVector.fromArray(SPECIES, ownHigh, i), right);
+			LongVector opp = doubledScore(LongVector.fromArray(SPECIES, oppLow, i), LongVector.fromArray(SPECIES, oppHigh, i), right);
+			((DoubleVector)own.sub(opp).convert(VectorOperators.L2D, 0)).intoArray(values, i);
+		}
+		for(int i = bound; i < count; i++) {
+			values[i] = Value.bitboardScore(size, ownLow[i], ownHigh[i]) - Value.bitboardScore(size, oppLow[i], oppHigh[i]);
+		}
+	}
+	
+	/**
+	 * Scores the bitboards of the lanes like Value.bitboardScore: 2 * (1 per pair next to each other + .5 per diagonal
+	 * pair), which is a whole number.
+	 * @param low		low words of the bitboards
+	 * @param high		high words of the bitboards
+	 * @param right		shift between a position and the one to its right (BoardSize.getHeight)
+	 * @return			the score of each lane
+	 */
+	private static LongVector doubledScore(LongVector low, LongVector high, int right) {
+		LongVector nextTo = pairs(low, high, Bitboard.UP).add(pairs(low, high, right));
+		LongVector diagonal = pairs(low, high, right + 1).add(pairs(low, high, right - 1));
+		return nextTo.add(nextTo).add(diagonal);
+	}
+	
+	/**
+	 * Counts the pairs of set bits that are a given shift apart in every lane, like Bitboard.pairs.
+	 * @param low		low words of the bitboards
+	 * @param high		high words of the bitboards
+	 * @param shift		distance between the two bits of a pair, less than Long.SIZE
+	 * @return			the number of pairs of each lane
+	 */
+	private static LongVector pairs(LongVector low, LongVector high, int shift) {
+		LongVector lowPairs = low.and(low.lanewise(VectorOperators.LSHR, shift).or(high.lanewise(VectorOperators.LSHL, Long.SIZE - shift)));
+		LongVector highPairs = high.and(high.lanewise(VectorOperators.LSHR, shift));
+		return bitCount(lowPairs).add(bitCount(highPairs));
+	}
+	
+	/**
+	 * Counts the set bits of every lane, like Long.bitCount.  The Vector API of JDK 17 has no bit count operator, so
+	 * this adds up the bits in pairs, nibbles and bytes and sums the bytes with a multiplication.
+	 * @param v			the lanes
+	 * @return			the number of set bits of each lane
+	 */
+	private static LongVector bitCount(LongVector v) {
+		v = v.sub(v.lanewise(VectorOperators.LSHR, 1).and(ONES));
+		v = v.and(TWOS).add(v.lanewise(VectorOperators.LSHR, 2).and(TWOS));
+		v = v.add(v.lanewise(VectorOperators.LSHR, 4)).and(FOURS);
+		return v.mul(BYTES).lanewise(VectorOperators.LSHR, Long.SIZE - Byte.SIZE);
+	}
+}
@@ -0,0 +1,12 @@
+package simacogo;
+
+/**
+ * The search algorithms that a ComputerPlayer can use to choose its move.
+ * @author Patrick Drucker
+ */
+public enum Algorithm {
+	MINIMAX,			// plain minimax (see Minimax)
+	ALPHA_BETA,			// alpha-beta pruning with move ordering (see AlphaBeta)
+	PARALLEL,			// alpha-beta pruning on several threads (see ParallelSearch)
+	MCTS				// Monte Carlo tree search with random playouts (see MonteCarloTreeSearch)
+}
@@ -0,0 +1,558 @@
+package simacogo;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * A class that searches the tree of States with the minimax algorithm and alpha-beta pruning.
+ * Chooses the same move as Minimax (the lowest column among the moves with the best value), but skips the subtrees
+ * that cannot change the result.  The earlier the best move is searched, the more is skipped, so the columns are
+ * ordered at every node: the best column stored in the transposition table first, then killer moves for that ply, then
+ * by history score, then centre columns first.  States that are reached again through a different order of moves are
+ * looked up in the transposition table instead of being searched again.
+ * Can also search with a time budget instead of a fixed depth (see searchTimed).
+ * The tree is searched by making and unmaking moves on one SearchBoard, with the columns of every ply ordered into
+ * buffers that are kept between searches, so the search allocates nothing per node.
+ * An AlphaBeta keeps its transposition table between searches, while the killer moves and history scores are cleared
+ * at the start of every search, so it should not be shared between threads.  Several AlphaBetas can share one
+ * transposition table, which is how ParallelSearch uses them as workers.
+ * @author Patrick Drucker
+ */
+public class AlphaBeta {
+	private static final int NUM_KILLERS = 2;								// killer moves remembered per ply
+	private static final int CHECK_TIME_NODES = 1024;						// nodes visited between checks of the clock
+	static final int DEFAULT_TABLE_SIZE_MB = 16;							// default size of the transposition table
+	private final TranspositionTable table;			// results of States that have already been searched
+	private final Evaluation evaluation;			// values the States at the bottom of the tree
+	private char tablePiece;						// the piece whose values are stored in the table
+	private int[][] killers = new int[0][];			// columns that caused a cutoff, per ply
+	private long[][] history = new long[0][];		// history score of each column, per ply
+	private int[][] moves = new int[0][];			// buffer of the ordered columns, per ply
+	private long[][] priorities = new long[0][];	// buffer of the priorities of the ordered columns, per ply
+	private SearchBoard board;						// the board that moves are made on
+	private int[] principalVariation = new int[0];	// best line of the previous iteration, searched first
+	private long deadline;							// System.nanoTime() at which the search has to stop
+	private boolean aborted;						// true if the current iteration ran out of time or was cancelled
+	private volatile boolean cancelled;				// true to stop searching as if the time had run out (see setCancelled)
+	private int completedDepth;						// depth of the last iteration that finished
+	private long nodeCount;							// number of States visited by the last search
+	private long tableProbes;						// transposition table lookups made by the last search
+	private long tableHits;							// transposition table lookups that found their State
+	private long leafCount;							// number of States evaluated by the last search
+	private long cutoffCount;						// number of States whose remaining columns were pruned
+	private long[] plyNodeCounts = new long[0];		// number of States visited at each distance from the root
+	private State resultingState;					// the resultant "best possible state" of the last search
+	
+	/**
+	 * Creates an AlphaBeta with a transposition table of the default size.
+	 */
+	public AlphaBeta() {
+		this(DEFAULT_TABLE_SIZE_MB);
+	}
+	
+	/**
+	 * Creates an AlphaBeta.
+	 * @param tableSizeMB	size of the transposition table in megabytes
+	 */
+	public AlphaBeta(int tableSizeMB) {
+		this(tableSizeMB, Evaluation.SCORE);
+	}
+	
+	/**
+	 * Creates an AlphaBeta.
+	 * @param tableSizeMB	size of the transposition table in megabytes
+	 * @param evaluation	values the States at the bottom of the tree
+	 */
+	public AlphaBeta(int tableSizeMB, Evaluation evaluation) {
+		this(new TranspositionTable(tableSizeMB), evaluation);
+	}
+	
+	/**
+	 * Creates an AlphaBeta that uses a transposition table that may be shared with other AlphaBetas.
+	 * @param table			the transposition table
+	 * @param evaluation	values the States at the bottom of the tree
+	 */
+	AlphaBeta(TranspositionTable table, Evaluation evaluation) {
+		this.table = table;
+		this.evaluation = evaluation;
+	}
+	
+	/**
+	 * Searches numPlies deep for the best State that player can reach from state.
+	 * @param state		the current State (player has the next move)
+	 * @param numPlies	the depth of the tree
+	 * @param player	the Player making use of the search
+	 * @return			the value of the best State
+	 */
+	public double search(State state, int numPlies, Player player) {
+		prepare(numPlies, player);
+		deadline = Long.MAX_VALUE;
+		double value = searchRoot(state, numPlies, player);
+		completedDepth = numPlies;
+		return value;
+	}
+	
+	/**
+	 * Searches 1, 2, 3... plies deep for the best State that player can reach from state, until the time budget runs
+	 * out or the whole rest of the game has been searched.  Each iteration searches the best line of the previous one
+	 * first.  The iteration that is running when the time is up is thrown away, so the result is the best State of the
+	 * deepest iteration that finished.  The first iteration always finishes.
+	 * @param state			the current State (player has the next move)
+	 * @param budgetMillis	the time budget in milliseconds
+	 * @param player		the Player making use of the search
+	 * @return				the value of the best State
+	 */
+	public double searchTimed(State state, long budgetMillis, Player player) {
+		return searchDeepening(state, state.getSize().getNumCells(), budgetMillis, player, null);
+	}
+	
+	/**
+	 * Searches 1, 2, 3... plies deep for the best State that player can reach from state, as searchTimed does, until
+	 * maxPlies or the whole rest of the game has been searched, the time budget runs out or the search is cancelled.
+	 * The result of every iteration that finished is passed to listener as it finishes, with the principal variation
+	 * and the nodes and time of the whole search so far, so a controller can follow the search and stop it at any time
+	 * (see setCancelled) with the best State of the deepest iteration that finished.
+	 * @param state			the current State (player has the next move)
+	 * @param maxPlies		the deepest iteration
+	 * @param budgetMillis	the time budget in milliseconds; 0 for none
+	 * @param player		the Player making use of the search
+	 * @param listener		receives the result of every iteration that finished; null for none
+	 * @return				the value of the best State
+	 */
+	public double searchDeepening(State state, int maxPlies, long budgetMillis, Player player,
+			Consumer<SearchResult> listener) {
+		long start = System.nanoTime();
+		long stop = budgetMillis > 0 ? start + budgetMillis * 1000000 : Long.MAX_VALUE;
+		maxPlies = Math.max(1, Math.min(maxPlies, state.getSize().getNumCells() - state.turnNumber));
+		prepare(maxPlies, player);
+		
+		double bestValue = 0;
+		State bestState = null;
+		for(int numPlies = 1; numPlies <= maxPlies; numPlies++) {
+			deadline = numPlies == 1 ? Long.MAX_VALUE : stop;
+			double value = searchRoot(state, numPlies, player);
+			if(aborted) {
+				break;
+			}
+			bestValue = value;
+			bestState = resultingState;
+			completedDepth = numPlies;
+			principalVariation = principalVariation(state, numPlies);
+			if(listener != null && bestState != null) {
+				// the root was stored last, so the line starts with the best column
+				listener.accept(new SearchResult(bestState.getColumnDropped(), bestValue, numPlies, nodeCount,
+						System.nanoTime() - start, principalVariation));
+			}
+			// the next iteration takes several times as long as this one, so only start it if there is a chance to finish
+			if(budgetMillis > 0 && System.nanoTime() - start > (stop - start) / 2) {
+				break;
+			}
+		}
+		resultingState = bestState;
+		return bestValue;
+	}
+	
+	/**
+	 * Resets the statistics and move ordering tables before a search.
+	 * @param maxPlies	the deepest the search will go
+	 * @param player	the Player making use of the search
+	 */
+	private void prepare(int maxPlies, Player player) {
+		if(tablePiece != player.getPiece()) {
+			// values are stored from the point of view of the searching player
+			table.clear();
+			tablePiece = player.getPiece();
+		}
+		prepareWorker(maxPlies, Long.MAX_VALUE);
+	}
+	
+	/**
+	 * Resets the statistics and move ordering tables before this AlphaBeta is used to search part of a tree.
+	 * @param maxPlies	the deepest the search will go
+	 * @param deadline	System.nanoTime() at which the search has to stop
+	 */
+	void prepareWorker(int maxPlies, long deadline) {
+		this.deadline = deadline;
+		nodeCount = 0;
+		tableProbes = 0;
+		tableHits = 0;
+		leafCount = 0;
+		cutoffCount = 0;
+		completedDepth = 0;
+		aborted = false;
+		principalVariation = new int[0];
+		if(killers.length < maxPlies + 1) {
+			killers = new int[maxPlies + 1][NUM_KILLERS];
+			history = new long[maxPlies + 1][BoardSize.MAX_COLUMNS];
+			moves = new int[maxPlies + 1][BoardSize.MAX_COLUMNS];
+			priorities = new long[maxPlies + 1][BoardSize.MAX_COLUMNS];
+			plyNodeCounts = new long[maxPlies + 1];
+		}
+		Arrays.fill(plyNodeCounts, 0);
+		for(int ply = 0; ply < killers.length; ply++) {
+			Arrays.fill(killers[ply], -1);
+			Arrays.fill(history[ply], 0);
+		}
+	}
+	
+	/**
+	 * Searches the root of the tree and sets resultingState to the best State.
+	 * @param state		the current State (player has the next move)
+	 * @param numPlies	the depth of the tree
+	 * @param player	the Player making use of the search
+	 * @return			the value of the best State
+	 */
+	private double searchRoot(State state, int numPlies, Player player) {
+		nodeCount++;
+		plyNodeCounts[0]++;
+		resultingState = null;
+		if(numPlies == 0 || state.isTerminalState()) {
+			leafCount++;
+			return evaluation.evaluate(player, state);
+		}
+		setBoard(state);
+		
+		long rootEntry = probe(board.getCanonicalHash());
+		int tableCol = rootEntry == 0 ? -1 : board.canonicalColumn(TranspositionTable.bestColumn(rootEntry));
+		int pvCol = principalVariation.length > 0 ? principalVariation[0] : -1;
+		int numMoves = orderColumns(0, pvCol, tableCol);
+		int[] columns = moves[0];
+		double bestValue = Double.NEGATIVE_INFINITY;
+		int bestCol = -1;
+		for(int i = 0; i < numMoves; i++) {
+			int col = columns[i];
+			board.makeMove(col);
+			if(bestCol >= 0 && col < bestCol) {
+				// a lower column wins a tie, so the window has to include the best value so far
+				double current = alphaBeta(numPlies-1, 1, Math.nextDown(bestValue), Double.POSITIVE_INFINITY, false, col == pvCol, player);
+				if(!aborted && current >= bestValue) {
+					bestValue = current;
+					bestCol = col;
+				}
+			}
+			else {
+				double current = alphaBeta(numPlies-1, 1, bestValue, Double.POSITIVE_INFINITY, false, col == pvCol, player);
+				if(!aborted && current > bestValue) {
+					bestValue = current;
+					bestCol = col;
+				}
+			}
+			board.unmakeMove(col);
+			if(aborted) {
+				return 0;
+			}
+		}
+		table.store(board.getCanonicalHash(), bestValue, TranspositionTable.EXACT, numPlies, board.canonicalColumn(bestCol));
+		resultingState = state.dropPiece(bestCol);
+		return bestValue;
+	}
+	
+	/**
+	 * Copies a State onto the board that moves are made on.
+	 * @param state		the State
+	 */
+	private void setBoard(State state) {
+		if(board == null) {
+			board = new SearchBoard(state);
+		}
+		else {
+			board.set(state);
+		}
+	}
+	
+	/**
+	 * Searches part of a tree for ParallelSearch.  prepareWorker has to be called before the first subtree of a search.
+	 * @param state		the root of the subtree
+	 * @param numPlies	the remaining depth of the tree
+	 * @param ply		the distance from the root of the whole tree
+	 * @param alpha		the value that the maximizing player is already assured of
+	 * @param beta		the value that the minimizing player is already assured of
+	 * @param isMax		true if state is a maximizing state
+	 * @param player	the Player making use of the search
+	 * @return			the value of state if it is between alpha and beta; otherwise a bound on the value
+	 */
+	double searchSubtree(State state, int numPlies, int ply, double alpha, double beta, boolean isMax, Player player) {
+		setBoard(state);
+		return alphaBeta(numPlies, ply, alpha, beta, isMax, false, player);
+	}
+	
+	/**
+	 * Recursive (fail-soft) alpha-beta search below the root, of the position on the board.
+	 * @param numPlies	the remaining depth of the tree
+	 * @param ply		the distance from the root
+	 * @param alpha		the value that the maximizing player is already assured of
+	 * @param beta		the value that the minimizing player is already assured of
+	 * @param isMax		true if this is a maximizing state
+	 * @param onPv		true if every move from the root to here is on the principal variation of the last iteration
+	 * @param player	the Player making use of the search
+	 * @return			the value of state if it is between alpha and beta; otherwise a bound on the value
+	 */
+	private double alphaBeta(int numPlies, int ply, double alpha, double beta, boolean isMax, boolean onPv, Player player) {
+		nodeCount++;
+		plyNodeCounts[ply]++;
+		if(nodeCount % CHECK_TIME_NODES == 0 && (cancelled || System.nanoTime() > deadline)) {
+			aborted = true;
+		}
+		if(aborted) {
+			return 0;
+		}
+		if(numPlies == 0 || board.isTerminal()) {
+			leafCount++;
+			return evaluation.evaluate(player, board);
+		}
+		
+		long entry = probe(board.getCanonicalHash());
+		int tableCol = -1;
+		if(entry != 0) {
+			tableCol = board.canonicalColumn(TranspositionTable.bestColumn(entry));
+			if(TranspositionTable.depth(entry) >= numPlies) {
+				double value = TranspositionTable.value(entry);
+				int bound = TranspositionTable.bound(entry);
+				if(bound == TranspositionTable.EXACT
+						|| bound == TranspositionTable.LOWER && value >= beta
+						|| bound == TranspositionTable.UPPER && value <= alpha) {
+					return value;
+				}
+			}
+		}
+		
+		int pvCol = onPv && ply < principalVariation.length ? principalVariation[ply] : -1;
+		double originalAlpha = alpha;
+		double originalBeta = beta;
+		double bestValue = isMax ? Double.NEGATIVE_INFINITY : Double.POSITIVE_INFINITY;
+		int bestCol = -1;
+		int numMoves = orderColumns(ply, pvCol, tableCol);
+		int[] columns = moves[ply];
+		for(int i = 0; i < numMoves; i++) {
+			int col = columns[i];
+			board.makeMove(col);
+			double current = alphaBeta(numPlies-1, ply+1, alpha, beta, !isMax, col == pvCol, player);
+			board.unmakeMove(col);
+			if(aborted) {
+				return 0;
+			}
+			if(isMax ? current > bestValue : current < bestValue) {
+				bestValue = current;
+				bestCol = col;
+			}
+			if(isMax) {
+				alpha = Math.max(alpha, current);
+			}
+			else {
+				beta = Math.min(beta, current);
+			}
+			if(alpha >= beta) {
+				cutoffCount++;
+				storeCutoff(col, ply, numPlies);
+				break;
+			}
+		}
+		
+		int bound = TranspositionTable.EXACT;
+		if(bestValue <= originalAlpha) {
+			bound = TranspositionTable.UPPER;
+		}
+		else if(bestValue >= originalBeta) {
+			bound = TranspositionTable.LOWER;
+		}
+		table.store(board.getCanonicalHash(), bestValue, bound, numPlies, board.canonicalColumn(bestCol));
+		return bestValue;
+	}
+	
+	/**
+	 * Looks up a State in the transposition table and counts the lookup.
+	 * @param hash		canonical Zobrist hash of the State
+	 * @return			the packed entry of the State; 0 if the State is not in the table
+	 */
+	private long probe(long hash) {
+		tableProbes++;
+		long entry = table.probe(hash);
+		if(entry != 0) {
+			tableHits++;
+		}
+		return entry;
+	}
+	
+	/**
+	 * Remembers a column that caused a cutoff as a killer move for its ply and adds to its history score.
+	 * @param col		the column that caused the cutoff
+	 * @param ply		the distance from the root
+	 * @param numPlies	the remaining depth of the tree (deeper cutoffs count for more)
+	 */
+	void storeCutoff(int col, int ply, int numPlies) {
+		int[] plyKillers = killers[ply];
+		if(plyKillers[0] != col) {
+			plyKillers[1] = plyKillers[0];
+			plyKillers[0] = col;
+		}
+		history[ply][col] += numPlies * numPlies;
+	}
+	
+	/**
+	 * Returns the columns of a State that are not full, in the order they should be searched.  Allocates, so it is only
+	 * for ParallelSearch's split nodes.
+	 * @param state		the State whose columns are ordered
+	 * @param ply		the distance from the root
+	 * @param tableCol	the best column stored in the transposition table; -1 if there is none
+	 * @return			the available columns, most promising first
+	 */
+	int[] orderedColumns(State state, int ply, int tableCol) {
+		setBoard(state);
+		return Arrays.copyOf(moves[ply], orderColumns(ply, -1, tableCol));
+	}
+	
+	/**
+	 * Writes the columns of the board that are not full into the buffer of a ply, in the order they should be searched.
+	 * When the board is its own mirror image, only the left column of each mirrored pair is written.
+	 * @param ply		the distance from the root
+	 * @param pvCol		the column of the principal variation of the last iteration; -1 if the board is not on it
+	 * @param tableCol	the best column stored in the transposition table; -1 if there is none
+	 * @return			the number of available columns
+	 */
+	private int orderColumns(int ply, int pvCol, int tableCol) {
+		int[] columns = moves[ply];
+		long[] plyPriorities = priorities[ply];
+		int numColumns = board.generateDistinctMoves(columns);
+		for(int i = 0; i < numColumns; i++) {
+			int col = columns[i];
+			long priority = history[ply][col];
+			if(col == pvCol) {
+				priority = Long.MAX_VALUE;
+			}
+			else if(col == tableCol) {
+				priority = Long.MAX_VALUE - 1;
+			}
+			else if(col == killers[ply][0]) {
+				priority = Long.MAX_VALUE - 2;
+			}
+			else if(col == killers[ply][1]) {
+				priority = Long.MAX_VALUE - 3;
+			}
+			// insertion sort, stable so that ties keep the centre order
+			int j = i;
+			while(j > 0 && plyPriorities[j-1] < priority) {
+				columns[j] = columns[j-1];
+				plyPriorities[j] = plyPriorities[j-1];
+				j--;
+			}
+			columns[j] = col;
+			plyPriorities[j] = priority;
+		}
+		return numColumns;
+	}
+	
+	/**
+	 * Follows the best columns stored in the transposition table from state to find the best line of play.
+	 * @param state		the root of the search
+	 * @param numPlies	the depth of the search
+	 * @return			the columns of the best line, at most numPlies long
+	 */
+	private int[] principalVariation(State state, int numPlies) {
+		int[] line = new int[numPlies];
+		int length = 0;
+		while(length < numPlies) {
+			long entry = table.probe(state.getCanonicalHash());
+			int col = entry == 0 ? -1 : state.canonicalColumn(TranspositionTable.bestColumn(entry));
+			if(col < 0 || state.numAvailableSpaces(col) == 0) {
+				break;
+			}
+			line[length++] = col;
+			state = state.dropPiece(col);
+		}
+		return Arrays.copyOf(line, length);
+	}
+	
+	/**
+	 * @return nodeCount	the number of States visited by the last search
+	 */
+	public long getNodeCount() {
+		return nodeCount;
+	}
+	
+	/**
+	 * @return completedDepth	the depth of the last search (the deepest finished iteration for searchTimed)
+	 */
+	public int getCompletedDepth() {
+		return completedDepth;
+	}
+	
+	/**
+	 * @return tableProbes	the number of transposition table lookups made by the last search
+	 */
+	public long getTableProbes() {
+		return tableProbes;
+	}
+	
+	/**
+	 * @return tableHits	the number of transposition table lookups that found their State in the last search
+	 */
+	public long getTableHits() {
+		return tableHits;
+	}
+	
+	/**
+	 * @return leafCount	the number of States evaluated by the last search
+	 */
+	public long getLeafCount() {
+		return leafCount;
+	}
+	
+	/**
+	 * @return cutoffCount	the number of States whose remaining columns were pruned in the last search
+	 */
+	public long getCutoffCount() {
+		return cutoffCount;
+	}
+	
+	/**
+	 * @return			the number of States visited at each distance from the root by the last search (over every
+	 * 					iteration of searchTimed)
+	 */
+	public long[] getPlyNodeCounts() {
+		int length = plyNodeCounts.length;
+		while(length > 0 && plyNodeCounts[length - 1] == 0) {
+			length--;
+		}
+		return Arrays.copyOf(plyNodeCounts, length);
+	}
+	
+	/**
+	 * Adds the number of States visited at each distance from the root by the last search to a total.
+	 * @param totals	the totals, at least as long as the deepest search
+	 */
+	void addPlyNodeCounts(long[] totals) {
+		for(int ply = 0; ply < plyNodeCounts.length && ply < totals.length; ply++) {
+			totals[ply] += plyNodeCounts[ply];
+		}
+	}
+	
+	/**
+	 * @return			the transposition table hit rate of the last search
+	 */
+	public double getTableHitRate() {
+		return tableProbes == 0 ? 0 : (double)tableHits / tableProbes;
+	}
+	
+	/**
+	 * @return aborted	true if the last search ran out of time or was cancelled
+	 */
+	boolean isAborted() {
+		return aborted;
+	}
+	
+	/**
+	 * Stops the running search, and every search started until this is called again with false, as if its time had run
+	 * out.  The result of a cancelled search is meaningless.  Can be called from any thread.
+	 * @param cancelled	true to stop searching; false to search normally again
+	 */
+	void setCancelled(boolean cancelled) {
+		this.cancelled = cancelled;
+	}
+	
+	/**
+	 * @return resultingState
+	 */
+	public State getResultingState() {
+		return resultingState;
+	}
+}
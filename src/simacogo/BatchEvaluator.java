@@ -0,0 +1,144 @@
+package simacogo;
+
+import java.util.List;
+
+/**
+ * Scores many positions together from their bitboards, e.g. all the sibling leaves of a frontier node of the search or
+ * a list of States to analyse.  The positions of a batch are packed into four arrays with one word per position: the
+ * low and the high word of the bitboard of one Player's pieces, and the low and the high word of that of its opponent.
+ * Packed like this, the same word of a whole batch sits side by side in memory and can be scored in the lanes of a
+ * SIMD register.  Only narrow grids are packed (see BoardSize); the positions of wide grids are scored one at a time.
+ * This class scores a batch one position at a time with Value.bitboardScore.  create returns a VectorBatchEvaluator
+ * instead when the JVM can run it, which scores as many positions at once as the processor has 64-bit lanes.  Both give
+ * the same values.
+ * A BatchEvaluator owns the arrays of its batch, so it belongs to one thread at a time, like a SearchBoard.
+ * @author Patrick Drucker
+ */
+public class BatchEvaluator {
+	private static final String VECTOR_CLASS = "simacogo.VectorBatchEvaluator";	// built from src-vector on JDK 17+
+	long[] ownLow = new long[BoardSize.MAX_COLUMNS];	// low words of the bitboards of the Player's pieces
+	long[] ownHigh = new long[BoardSize.MAX_COLUMNS];	// high words of the bitboards of the Player's pieces
+	long[] oppLow = new long[BoardSize.MAX_COLUMNS];	// low words of the bitboards of the opponent's pieces
+	long[] oppHigh = new long[BoardSize.MAX_COLUMNS];	// high words of the bitboards of the opponent's pieces
+	
+	/**
+	 * Returns the fastest BatchEvaluator the JVM can run: a VectorBatchEvaluator if it was built (with JDK 17 or later)
+	 * and the JVM was started with "--add-modules jdk.incubator.vector", and a BatchEvaluator otherwise.  The
+	 * VectorBatchEvaluator is looked up by reflection, so this also compiles and runs without the Vector API.
+	 * @return			a new BatchEvaluator
+	 */
+	public static BatchEvaluator create() {
+		try {
+			return (BatchEvaluator)Class.forName(VECTOR_CLASS).getDeclaredConstructor().newInstance();
+		}
+		catch(ReflectiveOperationException | LinkageError e) {
+			return new BatchEvaluator();
+		}
+	}
+	
+	/**
+	 * @return			true if the batches are scored with the Vector API
+	 */
+	public boolean isVectorized() {
+		return false;
+	}
+	
+	/**
+	 * Scores the positions after each of a number of moves of a SearchBoard, without making the moves: the sibling
+	 * leaves of a frontier node.  The SearchBoard is not changed.
+	 * @param board		the board of the frontier node
+	 * @param moves		columns that are not full, e.g. from generateMoves
+	 * @param numMoves	the number of columns
+	 * @param piece		the piece whose view the values are from ('X' or 'O')
+	 * @param values	receives the value of the position after moves[i] at values[i]: the score of piece minus the score
+	 * 					of the other piece, like Value.evaluate
+	 */
+	public void evaluateMoves(SearchBoard board, int[] moves, int numMoves, char piece, double[] values) {
+		BoardSize size = board.getSize();
+		if(size.isWide()) {
+			for(int i = 0; i < numMoves; i++) {
+				board.makeMove(moves[i]);
+				values[i] = board.score(piece) - board.score(piece == 'X' ? 'O' : 'X');
+				board.unmakeMove(moves[i]);
+			}
+			return;
+		}
+		char mover = board.getNextMovePiece();
+		char other = mover == 'X' ? 'O' : 'X';
+		long[] moverLow = mover == piece ? ownLow : oppLow;
+		long[] moverHigh = mover == piece ? ownHigh : oppHigh;
+		long[] otherLow = mover == piece ? oppLow : ownLow;
+		long[] otherHigh = mover == piece ? oppHigh : ownHigh;
+		long low = board.lowBits(mover);
+		long high = board.highBits(mover);
+		ensureCapacity(numMoves);
+		for(int i = 0; i < numMoves; i++) {
+			int index = board.dropIndex(moves[i]);
+			moverLow[i] = index < Long.SIZE ? low | 1L << index : low;
+			moverHigh[i] = index < Long.SIZE ? high : high | 1L << (index - Long.SIZE);
+			otherLow[i] = board.lowBits(other);
+			otherHigh[i] = board.highBits(other);
+		}
+		score(size, numMoves, values);
+	}
+	
+	/**
+	 * Scores a list of States from their bitboards, ignoring the running scores they keep.
+	 * @param states	States of the same size of grid
+	 * @param piece		the piece whose view the values are from ('X' or 'O')
+	 * @param values	receives the score of piece minus the score of the other piece in states.get(i) at values[i]
+	 * @throws IllegalArgumentException	if the States do not all have the same size of grid
+	 */
+	public void evaluate(List<State> states, char piece, double[] values) {
+		if(states.isEmpty()) {
+			return;
+		}
+		BoardSize size = states.get(0).getSize();
+		char other = piece == 'X' ? 'O' : 'X';
+		ensureCapacity(states.size());
+		for(int i = 0; i < states.size(); i++) {
+			State state = states.get(i);
+			if(state.getSize() != size) {
+				throw new IllegalArgumentException("States of a " + size + " and a " + state.getSize() + " grid");
+			}
+			if(size.isWide()) {
+				values[i] = Value.bitboardScore(size, state.wideBits(piece)) - Value.bitboardScore(size, state.wideBits(other));
+			}
+			else {
+				ownLow[i] = state.lowBits(piece);
+				ownHigh[i] = state.highBits(piece);
+				oppLow[i] = state.lowBits(other);
+				oppHigh[i] = state.highBits(other);
+			}
+		}
+		if(!size.isWide()) {
+			score(size, states.size(), values);
+		}
+	}
+	
+	/**
+	 * Scores the packed positions of the batch.
+	 * @param size		the size of the grid, narrow
+	 * @param count		the number of positions packed
+	 * @param values	receives the score of the Player minus the score of the opponent of each position
+	 */
+	void score(BoardSize size, int count, double[] values) {
+		for(int i = 0; i < count; i++) {
+			values[i] = Value.bitboardScore(size, ownLow[i], ownHigh[i]) - Value.bitboardScore(size, oppLow[i], oppHigh[i]);
+		}
+	}
+	
+	/**
+	 * Makes the packed arrays hold at least a number of positions.
+	 * @param count		the number of positions
+	 */
+	private void ensureCapacity(int count) {
+		if(ownLow.length < count) {
+			int capacity = Math.max(count, 2 * ownLow.length);
+			ownLow = new long[capacity];
+			ownHigh = new long[capacity];
+			oppLow = new long[capacity];
+			oppHigh = new long[capacity];
+		}
+	}
+}
@@ -0,0 +1,234 @@
+package simacogo;
+
+/**
+ * A final class that contains static functions for working with the bitboards that back a State.
+ * A bitboard holds one bit per position of the grid.  Positions are stored column by column from the bottom of the
+ * column to the top, with one extra "guard" bit above every column that is never set, so that shifting a bitboard never
+ * moves a piece from the top of one column to the bottom of the next.  The bitboard of a narrow grid is split over a low
+ * and a high long; that of a wide grid is an array of longs (see BoardSize).  The shifts between a position and its
+ * neighbours to the right depend on the number of rows, so they are taken from the BoardSize.
+ * Cannot be instantiated.
+ * @author Patrick Drucker
+ */
+final class Bitboard {
+	static final int UP = 1;							// shift between a position and the one above it
+	
+	/**
+	 * Private constructor to prevent instantiation.
+	 */
+	private Bitboard() {
+	}
+	
+	/**
+	 * Returns whether a bit is set in a bitboard.  Indexes outside of the bitboard are never set.
+	 * @param low		low word of the bitboard
+	 * @param high		high word of the bitboard
+	 * @param index		bit index
+	 * @return true		if the bit is set; false otherwise
+	 */
+	static boolean isSet(long low, long high, int index) {
+		if(index < 0) {
+			return false;
+		}
+		if(index < Long.SIZE) {
+			return (low >>> index & 1L) != 0;
+		}
+		return index < 2 * Long.SIZE && (high >>> (index - Long.SIZE) & 1L) != 0;
+	}
+	
+	/**
+	 * Returns whether a bit is set in a wide bitboard.  Indexes outside of the bitboard are never set.
+	 * @param words		the bitboard
+	 * @param index		bit index
+	 * @return true		if the bit is set; false otherwise
+	 */
+	static boolean isSet(long[] words, int index) {
+		return index >= 0 && index < words.length * Long.SIZE && (words[index / Long.SIZE] >>> index & 1L) != 0;
+	}
+	
+	/**
+	 * Sets a bit of a wide bitboard.
+	 * @param words		the bitboard
+	 * @param index		bit index
+	 */
+	static void set(long[] words, int index) {
+		words[index / Long.SIZE] |= 1L << index;
+	}
+	
+	/**
+	 * Clears a bit of a wide bitboard.
+	 * @param words		the bitboard
+	 * @param index		bit index
+	 */
+	static void clear(long[] words, int index) {
+		words[index / Long.SIZE] &= ~(1L << index);
+	}
+	
+	/**
+	 * Counts the pairs of set bits that are a given shift apart, i.e. the pieces that have a neighbour in one direction.
+	 * @param low		low word of the bitboard
+	 * @param high		high word of the bitboard
+	 * @param shift		distance between the two bits of a pair, less than Long.SIZE
+	 * @return			the number of pairs
+	 */
+	static int pairs(long low, long high, int shift) {
+		return Long.bitCount(low & (low >>> shift | high << (Long.SIZE - shift))) + Long.bitCount(high & high >>> shift);
+	}
+	
+	/**
+	 * Counts the pairs of set bits of a wide bitboard that are a given shift apart.
+	 * @param words		the bitboard
+	 * @param shift		distance between the two bits of a pair, less than Long.SIZE
+	 * @return			the number of pairs
+	 */
+	static int pairs(long[] words, int shift) {
+		int count = 0;
+		int last = words.length - 1;
+		for(int i = 0; i < last; i++) {
+			count += Long.bitCount(words[i] & (words[i] >>> shift | words[i+1] << (Long.SIZE - shift)));
+		}
+		return count + Long.bitCount(words[last] & words[last] >>> shift);
+	}
+	
+	/**
+	 * @param size		the size of the grid
+	 * @param low		low word of the bitboard
+	 * @param high		high word of the bitboard
+	 * @return			the number of pairs of pieces next to each other (up, down, left, right)
+	 */
+	static int nextToPairs(BoardSize size, long low, long high) {
+		return pairs(low, high, UP) + pairs(low, high, size.getHeight());
+	}
+	
+	/**
+	 * @param size		the size of the grid
+	 * @param low		low word of the bitboard
+	 * @param high		high word of the bitboard
+	 * @return			the number of pairs of pieces that are diagonal from each other
+	 */
+	static int diagonalPairs(BoardSize size, long low, long high) {
+		return pairs(low, high, size.getHeight() + 1) + pairs(low, high, size.getHeight() - 1);
+	}
+	
+	/**
+	 * @param size		the size of the grid
+	 * @param words		the wide bitboard
+	 * @return			the number of pairs of pieces next to each other (up, down, left, right)
+	 */
+	static int nextToPairs(BoardSize size, long[] words) {
+		return pairs(words, UP) + pairs(words, size.getHeight());
+	}
+	
+	/**
+	 * @param size		the size of the grid
+	 * @param words		the wide bitboard
+	 * @return			the number of pairs of pieces that are diagonal from each other
+	 */
+	static int diagonalPairs(BoardSize size, long[] words) {
+		return pairs(words, size.getHeight() + 1) + pairs(words, size.getHeight() - 1);
+	}
+	
+	/**
+	 * Counts the neighbours of a position that are next to it (up, down, left, right) and set in a bitboard.
+	 * @param size		the size of the grid
+	 * @param low		low word of the bitboard
+	 * @param high		high word of the bitboard
+	 * @param index		bit index of the position
+	 * @return			the number of neighbours (0-4)
+	 */
+	static int nextToNeighbours(BoardSize size, long low, long high, int index) {
+		int right = size.getHeight();
+		int count = 0;
+		if(isSet(low, high, index + UP)) {
+			count++;
+		}
+		if(isSet(low, high, index - UP)) {
+			count++;
+		}
+		if(isSet(low, high, index + right)) {
+			count++;
+		}
+		if(isSet(low, high, index - right)) {
+			count++;
+		}
+		return count;
+	}
+	
+	/**
+	 * Counts the neighbours of a position that are diagonal from it and set in a bitboard.
+	 * @param size		the size of the grid
+	 * @param low		low word of the bitboard
+	 * @param high		high word of the bitboard
+	 * @param index		bit index of the position
+	 * @return			the number of neighbours (0-4)
+	 */
+	static int diagonalNeighbours(BoardSize size, long low, long high, int index) {
+		int upRight = size.getHeight() + 1;
+		int downRight = size.getHeight() - 1;
+		int count = 0;
+		if(isSet(low, high, index + upRight)) {
+			count++;
+		}
+		if(isSet(low, high, index - upRight)) {
+			count++;
+		}
+		if(isSet(low, high, index + downRight)) {
+			count++;
+		}
+		if(isSet(low, high, index - downRight)) {
+			count++;
+		}
+		return count;
+	}
+	
+	/**
+	 * Counts the neighbours of a position that are next to it (up, down, left, right) and set in a wide bitboard.
+	 * @param size		the size of the grid
+	 * @param words		the bitboard
+	 * @param index		bit index of the position
+	 * @return			the number of neighbours (0-4)
+	 */
+	static int nextToNeighbours(BoardSize size, long[] words, int index) {
+		int right = size.getHeight();
+		int count = 0;
+		if(isSet(words, index + UP)) {
+			count++;
+		}
+		if(isSet(words, index - UP)) {
+			count++;
+		}
+		if(isSet(words, index + right)) {
+			count++;
+		}
+		if(isSet(words, index - right)) {
+			count++;
+		}
+		return count;
+	}
+	
+	/**
+	 * Counts the neighbours of a position that are diagonal from it and set in a wide bitboard.
+	 * @param size		the size of the grid
+	 * @param words		the bitboard
+	 * @param index		bit index of the position
+	 * @return			the number of neighbours (0-4)
+	 */
+	static int diagonalNeighbours(BoardSize size, long[] words, int index) {
+		int upRight = size.getHeight() + 1;
+		int downRight = size.getHeight() - 1;
+		int count = 0;
+		if(isSet(words, index + upRight)) {
+			count++;
+		}
+		if(isSet(words, index - upRight)) {
+			count++;
+		}
+		if(isSet(words, index + downRight)) {
+			count++;
+		}
+		if(isSet(words, index - downRight)) {
+			count++;
+		}
+		return count;
+	}
+}
@@ -0,0 +1,181 @@
+package simacogo;
+
+/**
+ * The number of rows and columns of a grid, and the layout of its bitboards (see Bitboard).  Every State and SearchBoard
+ * has a BoardSize, which picks the representation of its bitboards:
+ * <ul>
+ * <li>grids whose bitboards fit in 64 bits (up to 7x7) only use the low word; the high word stays 0</li>
+ * <li>grids whose bitboards fit in 128 bits (up to 11x10, including the standard 9x9) use a low and a high word</li>
+ * <li>larger grids (e.g. 13x13 or 19x19) are wide: their bitboards are arrays of words</li>
+ * </ul>
+ * The words are fields of the State, so the first two take no allocation and no indirection.  BoardSizes are
+ * immutable, and there is one per size, so they can be compared with ==.
+ * @author Patrick Drucker
+ */
+public final class BoardSize {
+	static final int MAX_ROWS = 25;						// the most rows a grid can have
+	static final int MAX_COLUMNS = 25;					// the most columns a grid can have
+	static final int MAX_CELLS = MAX_ROWS * MAX_COLUMNS;	// the most positions a grid can have
+	private static final int MAX_NARROW_ROWS = 15;		// the most rows whose heights fit the 4 bits per column of a State
+	private static final int MAX_NARROW_COLUMNS = 16;	// the most columns whose heights fit in one long
+	private static final BoardSize[][] SIZES = new BoardSize[MAX_ROWS + 1][MAX_COLUMNS + 1];	// the BoardSize of each size
+	public static final BoardSize STANDARD = of(State.ROWS, State.COLUMNS);	// the 9x9 grid of Simacogo
+	private final int rows;								// number of rows in the grid
+	private final int columns;							// number of columns in the grid
+	private final int height;							// bits used by each column (including the guard bit)
+	private final boolean wide;							// true if the bitboards are arrays of words
+	private final long fullLow;							// low word of a bitboard with every position set (narrow grids)
+	private final long fullHigh;						// high word of a bitboard with every position set (narrow grids)
+	private final long[] full;							// bitboard with every position set (wide grids); null for narrow ones
+	private final int[] centreOrder;					// columns ordered from the centre outwards
+	
+	private BoardSize(int rows, int columns) {
+		this.rows = rows;
+		this.columns = columns;
+		this.height = rows + 1;
+		this.wide = height * columns > 2 * Long.SIZE || rows > MAX_NARROW_ROWS || columns > MAX_NARROW_COLUMNS;
+		long[] words = new long[(height * columns + Long.SIZE - 1) / Long.SIZE];
+		for(int col = 0; col < columns; col++) {
+			for(int level = 0; level < rows; level++) {
+				Bitboard.set(words, index(col, level));
+			}
+		}
+		this.full = wide ? words : null;
+		this.fullLow = words[0];
+		this.fullHigh = words.length > 1 ? words[1] : 0;
+		this.centreOrder = new int[columns];
+		for(int col = 0; col < columns; col++) {
+			// insert by distance from the centre; the lower column of two at the same distance comes first
+			int i = col;
+			while(i > 0 && Math.abs(2 * centreOrder[i-1] - (columns - 1)) > Math.abs(2 * col - (columns - 1))) {
+				centreOrder[i] = centreOrder[i-1];
+				i--;
+			}
+			centreOrder[i] = col;
+		}
+	}
+	
+	/**
+	 * Returns the BoardSize of a number of rows and columns.
+	 * @param rows		number of rows, 1 to MAX_ROWS
+	 * @param columns	number of columns, 1 to MAX_COLUMNS
+	 * @return			the BoardSize
+	 * @throws IllegalArgumentException	if the size is not supported
+	 */
+	public static synchronized BoardSize of(int rows, int columns) {
+		if(rows < 1 || rows > MAX_ROWS || columns < 1 || columns > MAX_COLUMNS) {
+			throw new IllegalArgumentException("Grids are 1x1 to " + MAX_ROWS + "x" + MAX_COLUMNS + ", not " + rows + "x" + columns);
+		}
+		if(SIZES[rows][columns] == null) {
+			SIZES[rows][columns] = new BoardSize(rows, columns);
+		}
+		return SIZES[rows][columns];
+	}
+	
+	/**
+	 * Reads a size written as ROWSxCOLUMNS, e.g. "13x13", or as one number for a square grid.
+	 * @param size		the size
+	 * @return			the BoardSize
+	 * @throws IllegalArgumentException	if the size cannot be read or is not supported
+	 */
+	public static BoardSize parse(String size) {
+		String[] parts = size.toLowerCase().split("x");
+		int rows = Integer.parseInt(parts[0].trim());
+		return of(rows, parts.length > 1 ? Integer.parseInt(parts[1].trim()) : rows);
+	}
+	
+	/**
+	 * Returns the bit index of a position in the grid.
+	 * @param col		column number (0 is the leftmost)
+	 * @param level		number of pieces below this position in the column (0 is the bottom row)
+	 * @return			the bit index of the position
+	 */
+	int index(int col, int level) {
+		return col * height + level;
+	}
+	
+	/**
+	 * @param col		column number (0 is the leftmost)
+	 * @return			the column in the same place of the mirror image of the grid (reflected left to right)
+	 */
+	int mirror(int col) {
+		return columns - 1 - col;
+	}
+	
+	/**
+	 * @return rows
+	 */
+	public int getRows() {
+		return rows;
+	}
+	
+	/**
+	 * @return columns
+	 */
+	public int getColumns() {
+		return columns;
+	}
+	
+	/**
+	 * @return			the number of positions of the grid
+	 */
+	public int getNumCells() {
+		return rows * columns;
+	}
+	
+	/**
+	 * @return height	bits used by each column of a bitboard, including the guard bit
+	 */
+	int getHeight() {
+		return height;
+	}
+	
+	/**
+	 * @return wide		true if the bitboards are arrays of words rather than a low and a high word
+	 */
+	boolean isWide() {
+		return wide;
+	}
+	
+	/**
+	 * @return			the number of words of a wide bitboard
+	 */
+	int getNumWords() {
+		return (height * columns + Long.SIZE - 1) / Long.SIZE;
+	}
+	
+	/**
+	 * @return fullLow	low word of a bitboard with every position of a narrow grid set
+	 */
+	long getFullLow() {
+		return fullLow;
+	}
+	
+	/**
+	 * @return fullHigh	high word of a bitboard with every position of a narrow grid set
+	 */
+	long getFullHigh() {
+		return fullHigh;
+	}
+	
+	/**
+	 * @return full		a wide bitboard with every position of the grid set; must not be changed
+	 */
+	long[] getFull() {
+		return full;
+	}
+	
+	/**
+	 * @return centreOrder	the columns ordered from the centre outwards; must not be changed
+	 */
+	int[] getCentreOrder() {
+		return centreOrder;
+	}
+	
+	/* (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	public String toString() {
+		return rows + "x" + columns;
+	}
+}
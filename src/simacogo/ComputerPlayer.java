@@ -1,23 +1,121 @@
 package simacogo;
 
 /**
- * A class for a Computer Player.  Contains a dropPiece method that makes use of the minimax algorithm.
+ * A class for a Computer Player.  Contains a dropPiece method that makes use of the minimax algorithm, with or without
+ * alpha-beta pruning, on one or several threads, depending on the GameConfig it was created with.
  * @author Patrick Drucker
  */
 public class ComputerPlayer extends Player {
+	private final Engine engine;			// keeps its transposition tables between turns
+	private final OpeningBook openingBook;	// looked up before searching; null for none
+	private final PositionCache positionCache;	// looked up before searching and added to after; null for none
+	private final GameConfig config;		// settings of the search
+	private SearchResult lastResult;		// result of the search for the last move
+	private int searchedDepth;				// depth the last search of the engine finished, for the cache; 0 before it
+	
 	/**
-	 * Constructor for a ComputerPlayer.  Initializes its piece to 'X'.
+	 * Constructor for a ComputerPlayer that uses the default GameConfig.  Initializes its piece to 'X'.
 	 */
 	public ComputerPlayer() {
-		piece = 'X';
+		this(new GameConfig());
+	}
+	
+	/**
+	 * Constructor for a ComputerPlayer.  Initializes its piece to 'X'.
+	 * @param config	settings of the search
+	 */
+	public ComputerPlayer(GameConfig config) {
+		this(config, 'X');
+	}
+	
+	/**
+	 * Constructor for a ComputerPlayer with any piece, e.g. to play against another ComputerPlayer.
+	 * @param config	settings of the search
+	 * @param piece		'X' or 'O'
+	 */
+	public ComputerPlayer(GameConfig config, char piece) {
+		this.piece = piece;
+		engine = new Engine(config);
+		openingBook = config.getOpeningBook();
+		positionCache = config.getPositionCache();
+		this.config = config;
 	}
 	
 	/* (non-Javadoc)
+	 * Plays the move of the opening book if there is one for currentState, then the move of the position cache if it was
+	 * searched deep enough, and searches otherwise.  Then starts pondering on the opponent's replies.
 	 * @see simicogo.Player#dropPiece(simicogo.State, int)
 	 */
 	@Override
 	public State dropPiece(State currentState, int columnNumber) {
-		Minimax.minimax(currentState, Game.getNumPlies(), true, this);
-		return Minimax.getResultingState();
+		// the book only holds positions of the standard grid
+		SearchResult bookResult = openingBook == null || currentState.getSize() != BoardSize.STANDARD
+				? null : openingBook.lookup(currentState);
+		if(bookResult != null && currentState.numAvailableSpaces(bookResult.getBestColumn()) > 0) {
+			lastResult = bookResult;
+		}
+		else {
+			SearchResult cacheResult = lookUp(currentState);
+			if(cacheResult != null) {
+				lastResult = cacheResult;
+			}
+			else {
+				lastResult = engine.search(currentState, this);
+				if(usesCache(currentState)) {
+					searchedDepth = lastResult.getDepth();
+					positionCache.store(currentState, config.getEvaluation(), lastResult);
+				}
+			}
+		}
+		State nextState = currentState.dropPiece(lastResult.getBestColumn());
+		// search the opponent's replies while it thinks, if the GameConfig says so
+		engine.ponder(nextState, this);
+		return nextState;
+	}
+	
+	/**
+	 * Looks currentState up in the position cache.  A result is only used if it is at least as deep as the search would
+	 * be: the number of plies, or with a time budget the depth the last search of the engine reached in time, not that of
+	 * a result of the book or the cache.  With a time budget nothing is looked up before the first search.
+	 * @param currentState	the current State
+	 * @return				the cached result; null if there is none deep enough
+	 */
+	private SearchResult lookUp(State currentState) {
+		if(!usesCache(currentState)) {
+			return null;
+		}
+		int depth = config.getMoveTimeMillis() > 0 ? searchedDepth : config.getNumPlies();
+		if(depth == 0) {
+			return null;
+		}
+		SearchResult result = positionCache.lookup(currentState, config.getEvaluation());
+		if(result == null || result.getDepth() < depth || currentState.numAvailableSpaces(result.getBestColumn()) == 0) {
+			return null;
+		}
+		return result;
+	}
+	
+	/**
+	 * @param currentState	the current State
+	 * @return				true if the result of currentState is looked up in and added to the position cache: not for
+	 * 						MCTS, whose values are not those of a search to a depth, nor once the EndgameSolver takes over
+	 */
+	private boolean usesCache(State currentState) {
+		return positionCache != null && config.getAlgorithm() != Algorithm.MCTS
+				&& EndgameSolver.emptyCells(currentState) > config.getEndgameCells();
+	}
+	
+	/**
+	 * @return engine
+	 */
+	public Engine getEngine() {
+		return engine;
+	}
+	
+	/**
+	 * @return lastResult	the result of the search for the last move; null before the first move
+	 */
+	public SearchResult getLastResult() {
+		return lastResult;
 	}
 }
@@ -0,0 +1,77 @@
+package simacogo;
+
+import java.util.Random;
+
+/**
+ * Compares the EndgameSolver with searching to the end of the Game by Minimax and AlphaBeta, on positions reached by
+ * random play with a given number of empty cells.  Also checks that all of them find the same final score.
+ * Minimax is only run while it finishes in reasonable time (up to 10 empty cells).
+ * Usage: EndgameBenchmark [maxEmptyCells] [numPositions] [seed]
+ * @author Patrick Drucker
+ */
+public class EndgameBenchmark {
+	private static final int MAX_MINIMAX_CELLS = 10;	// most empty cells that Minimax is run on
+	
+	/**
+	 * Runs the benchmark and prints one line per number of empty cells, totalled over the positions.
+	 * @param args
+	 */
+	public static void main(String[] args) {
+		int maxEmptyCells = args.length > 0 ? Integer.parseInt(args[0]) : 18;
+		int numPositions = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+		Random random = new Random(args.length > 2 ? Long.parseLong(args[2]) : 1);
+		Player computer = new Game().getComputerPlayer();
+		Minimax minimax = new Minimax();
+		
+		System.out.println("empty\tminimax nodes\tms\talpha-beta nodes\tms\tsolver nodes\tms\tsame score");
+		for(int emptyCells = 6; emptyCells <= maxEmptyCells; emptyCells += 2) {
+			long minimaxNodes = 0, minimaxNanos = 0;
+			long alphaBetaNodes = 0, alphaBetaNanos = 0;
+			long solverNodes = 0, solverNanos = 0;
+			boolean sameScore = true;
+			for(int position = 0; position < numPositions; position++) {
+				State state = randomPosition(random, emptyCells, computer.getPiece());
+				
+				if(emptyCells <= MAX_MINIMAX_CELLS) {
+					SearchResult result = minimax.search(state, emptyCells, computer);
+					minimaxNodes += result.getNodeCount();
+					minimaxNanos += result.getElapsedNanos();
+				}
+				
+				AlphaBeta alphaBeta = new AlphaBeta();		// a fresh table, so that earlier searches do not help
+				long start = System.nanoTime();
+				double value = alphaBeta.search(state, emptyCells, computer);
+				alphaBetaNanos += System.nanoTime() - start;
+				alphaBetaNodes += alphaBeta.getNodeCount();
+				
+				SearchResult result = new EndgameSolver().solve(state, computer);
+				solverNodes += result.getNodeCount();
+				solverNanos += result.getElapsedNanos();
+				sameScore &= result.getValue() == value;
+			}
+			System.out.printf("%d\t%s\t%s\t%d\t%d\t%d\t%d\t%b%n", emptyCells,
+					emptyCells <= MAX_MINIMAX_CELLS ? String.valueOf(minimaxNodes) : "-",
+					emptyCells <= MAX_MINIMAX_CELLS ? String.valueOf(minimaxNanos / 1000000) : "-",
+					alphaBetaNodes, alphaBetaNanos / 1000000, solverNodes, solverNanos / 1000000, sameScore);
+		}
+	}
+	
+	/**
+	 * Plays random moves from the initial State until a number of cells are empty and piece has the next move.
+	 * @param random		source of the random moves
+	 * @param emptyCells	the number of empty cells to leave
+	 * @param piece			the piece that has the next move in the returned State
+	 * @return				the State
+	 */
+	private static State randomPosition(Random random, int emptyCells, char piece) {
+		State state = emptyCells % 2 == 1 ? new State(piece, piece == 'X' ? 'O' : 'X') : new State(piece == 'X' ? 'O' : 'X', piece);
+		while(EndgameSolver.emptyCells(state) > emptyCells) {
+			int col;
+			do {
+				col = random.nextInt(State.COLUMNS);
+			} while(state.numAvailableSpaces(col) == 0);
+			state = state.dropPiece(col);
+		}
+		return state;
+	}
+}
@@ -0,0 +1,325 @@
+package simacogo;
+
+import java.util.Arrays;
+
+/**
+ * A class that solves the end of a Game exactly: it searches every remaining move down to the full grid and returns
+ * the final score difference, instead of guessing with Value.evaluate at a fixed depth.
+ * The search is a negamax alpha-beta search on a SearchBoard that is pruned with score bounds: a piece gains at most
+ * MAX_DROP_SCORE when it is dropped, and no more than it would by filling every empty cell, so a position whose score
+ * difference cannot reach the window even if every remaining drop of one side scores the most it could is cut off
+ * without being searched.  Solved positions are kept
+ * in a cache of their own between searches.
+ * Keeps the result of its last search, so an EndgameSolver should only be used by one thread at a time.
+ * @author Patrick Drucker
+ */
+public class EndgameSolver {
+	public static final int DEFAULT_EMPTY_CELLS = 16;	// default number of empty cells below which the solver is used
+	static final int MAX_DROP_SCORE = (int)Value.dropScore(3, 4);	// most a drop can score (3 next to, 4 diagonal)
+	private static final int CHECK_CANCEL_NODES = 1024;	// positions visited between checks for cancellation
+	
+	private final TranspositionTable cache;				// solved positions, scores are from the side to move
+	private int[][] moves = new int[0][];				// buffer of the ordered columns, per ply
+	private int[][] priorities = new int[0][];			// buffer of the priorities of the ordered columns, per ply
+	private SearchBoard board;							// the board that moves are made on
+	private long nodeCount;								// number of positions visited by the last search
+	private long leafCount;								// number of full grids reached by the last search
+	private long cutoffCount;							// number of positions cut off by a score bound or whose remaining columns were pruned
+	private long cacheProbes;							// cache lookups made by the last search
+	private long cacheHits;								// cache lookups that found their position
+	private long[] plyNodeCounts = new long[1];			// positions visited at each distance from the root
+	private State resultingState;						// the resultant "best possible state"
+	private boolean aborted;							// true if the last search was cancelled
+	private volatile boolean cancelled;					// true to stop solving (see setCancelled)
+	
+	/**
+	 * Creates an EndgameSolver with a cache of the default size.
+	 */
+	public EndgameSolver() {
+		this(AlphaBeta.DEFAULT_TABLE_SIZE_MB);
+	}
+	
+	/**
+	 * Creates an EndgameSolver.
+	 * @param cacheSizeMB	size of the solved-position cache in megabytes (0 for a minimal cache)
+	 */
+	public EndgameSolver(int cacheSizeMB) {
+		this.cache = new TranspositionTable(cacheSizeMB);
+	}
+	
+	/**
+	 * @param state		a State
+	 * @return			the number of positions of the grid that have no piece
+	 */
+	public static int emptyCells(State state) {
+		int empty = 0;
+		for(int col = 0; col < state.getSize().getColumns(); col++) {
+			empty += state.numAvailableSpaces(col);
+		}
+		return empty;
+	}
+	
+	/**
+	 * Solves state to the end of the Game.
+	 * @param state		the current State (player has the next move)
+	 * @param player	the Player making use of the solver
+	 * @return			the best move and the exact final score difference (scorePlayer - scoreOpponent) it leads to
+	 */
+	public SearchResult solve(State state, Player player) {
+		long start = System.nanoTime();
+		nodeCount = 1;
+		aborted = false;
+		leafCount = 0;
+		cutoffCount = 0;
+		cacheProbes = 0;
+		cacheHits = 0;
+		int maxPlies = emptyCells(state);
+		if(moves.length < maxPlies + 1) {
+			moves = new int[maxPlies + 1][BoardSize.MAX_COLUMNS];
+			priorities = new int[maxPlies + 1][BoardSize.MAX_COLUMNS];
+			plyNodeCounts = new long[maxPlies + 1];
+		}
+		Arrays.fill(plyNodeCounts, 0);
+		plyNodeCounts[0] = 1;
+		resultingState = null;
+		if(board == null) {
+			board = new SearchBoard(state);
+		}
+		else {
+			board.set(state);
+		}
+		
+		int value;
+		int bestCol = -1;
+		if(board.isTerminal()) {
+			leafCount++;
+			value = (int)board.scoreDifference();
+		}
+		else {
+			value = Integer.MIN_VALUE;
+			int numMoves = orderColumns(0, -1);
+			for(int i = 0; i < numMoves; i++) {
+				int col = moves[0][i];
+				board.makeMove(col);
+				// a lower column wins a tie, so the window has to include the best value so far
+				int alpha = bestCol >= 0 && col < bestCol ? value - 1 : value;
+				int current = -solve(-Integer.MAX_VALUE, alpha == Integer.MIN_VALUE ? Integer.MAX_VALUE : -alpha, 1);
+				board.unmakeMove(col);
+				if(aborted) {
+					return new SearchResult(-1, 0, 0, nodeCount, System.nanoTime() - start);
+				}
+				if(current > value || (current == value && col < bestCol)) {
+					value = current;
+					bestCol = col;
+				}
+			}
+			cache.store(board.getCanonicalHash(), value, TranspositionTable.EXACT, emptyCells(state), board.canonicalColumn(bestCol));
+			resultingState = state.dropPiece(bestCol);
+		}
+		if(player.getPiece() != state.getNextMovePiece()) {
+			value = -value;
+		}
+		return new SearchResult(bestCol, value, emptyCells(state), nodeCount, System.nanoTime() - start);
+	}
+	
+	/**
+	 * Recursive (fail-soft) negamax alpha-beta search of the position on the board, down to the full grid.
+	 * @param alpha		the score the side to move is already sure of
+	 * @param beta		the score the other side is already sure of
+	 * @param ply		the distance from the root
+	 * @return			the final score difference from the side to move, exact if it is inside the window
+	 */
+	private int solve(int alpha, int beta, int ply) {
+		nodeCount++;
+		plyNodeCounts[ply]++;
+		if(nodeCount % CHECK_CANCEL_NODES == 0 && cancelled) {
+			aborted = true;
+		}
+		if(aborted) {
+			return 0;
+		}
+		int difference = (int)board.scoreDifference();
+		int empty = board.getSize().getNumCells() - board.getTurnNumber();
+		if(empty == 0) {
+			leafCount++;
+			return difference;
+		}
+		
+		// the side to move has the odd drop when an odd number of cells is left, and neither side can score more than
+		// it would by filling every empty cell
+		char piece = board.getNextMovePiece();
+		char otherPiece = piece == 'X' ? 'O' : 'X';
+		int upper = Math.min(difference + MAX_DROP_SCORE * ((empty + 1) / 2),
+				(int)(board.maxScore(piece) - board.score(otherPiece)));
+		if(upper <= alpha) {
+			cutoffCount++;
+			return upper;
+		}
+		int lower = Math.max(difference - MAX_DROP_SCORE * (empty / 2),
+				(int)(board.score(piece) - board.maxScore(otherPiece)));
+		if(lower >= beta) {
+			cutoffCount++;
+			return lower;
+		}
+		
+		int cacheCol = -1;
+		long entry = cache.probe(board.getCanonicalHash());
+		cacheProbes++;
+		if(entry != 0) {
+			cacheHits++;
+			int value = (int)TranspositionTable.value(entry);
+			int bound = TranspositionTable.bound(entry);
+			if(bound == TranspositionTable.EXACT
+					|| (bound == TranspositionTable.LOWER && value >= beta)
+					|| (bound == TranspositionTable.UPPER && value <= alpha)) {
+				return value;
+			}
+			cacheCol = board.canonicalColumn(TranspositionTable.bestColumn(entry));
+		}
+		
+		int originalAlpha = alpha;
+		int bestValue = Integer.MIN_VALUE;
+		int bestCol = -1;
+		int numMoves = orderColumns(ply, cacheCol);
+		int[] columns = moves[ply];
+		for(int i = 0; i < numMoves; i++) {
+			int col = columns[i];
+			board.makeMove(col);
+			int current;
+			if(i == 0) {
+				current = -solve(-beta, -alpha, ply+1);
+			}
+			else {
+				// the scores are whole numbers, so a null window proves whether the column beats the best so far
+				current = -solve(-alpha - 1, -alpha, ply+1);
+				if(current > alpha && current < beta) {
+					current = -solve(-beta, -current, ply+1);
+				}
+			}
+			board.unmakeMove(col);
+			if(aborted) {
+				return 0;
+			}
+			if(current > bestValue) {
+				bestValue = current;
+				bestCol = col;
+				if(current > alpha) {
+					alpha = current;
+					if(alpha >= beta) {
+						cutoffCount++;
+						break;
+					}
+				}
+			}
+		}
+		
+		int bound;
+		if(bestValue <= originalAlpha) {
+			bound = TranspositionTable.UPPER;
+		}
+		else if(bestValue >= beta) {
+			bound = TranspositionTable.LOWER;
+		}
+		else {
+			bound = TranspositionTable.EXACT;
+		}
+		cache.store(board.getCanonicalHash(), bestValue, bound, empty, board.canonicalColumn(bestCol));
+		return bestValue;
+	}
+	
+	/**
+	 * Writes the columns of the board that are not full into the buffer of a ply, the column from the cache first and
+	 * then the drops that score the most.
+	 * @param ply		the distance from the root
+	 * @param cacheCol	the best column stored in the cache; -1 if there is none
+	 * @return			the number of available columns
+	 */
+	private int orderColumns(int ply, int cacheCol) {
+		int[] columns = moves[ply];
+		int[] plyPriorities = priorities[ply];
+		int numColumns = board.generateDistinctMoves(columns);
+		for(int i = 0; i < numColumns; i++) {
+			int col = columns[i];
+			int priority = col == cacheCol ? Integer.MAX_VALUE : (int)board.dropScore(col);
+			// insertion sort, stable so that ties keep the centre order
+			int j = i;
+			while(j > 0 && plyPriorities[j-1] < priority) {
+				columns[j] = columns[j-1];
+				plyPriorities[j] = plyPriorities[j-1];
+				j--;
+			}
+			columns[j] = col;
+			plyPriorities[j] = priority;
+		}
+		return numColumns;
+	}
+	
+	/**
+	 * Stops the running search, and every search started until this is called again with false.  Nothing that a
+	 * cancelled search found is cached, and it returns a best column of -1.  Can be called from any thread.
+	 * @param cancelled	true to stop solving; false to solve normally again
+	 */
+	void setCancelled(boolean cancelled) {
+		this.cancelled = cancelled;
+	}
+	
+	/**
+	 * Empties the solved-position cache.
+	 */
+	public void clear() {
+		cache.clear();
+	}
+	
+	/**
+	 * @return nodeCount	the number of positions visited by the last search
+	 */
+	public long getNodeCount() {
+		return nodeCount;
+	}
+	
+	/**
+	 * @return leafCount	the number of full grids reached by the last search
+	 */
+	public long getLeafCount() {
+		return leafCount;
+	}
+	
+	/**
+	 * @return cutoffCount	the number of positions cut off by a score bound or whose remaining columns were pruned
+	 */
+	public long getCutoffCount() {
+		return cutoffCount;
+	}
+	
+	/**
+	 * @return cacheProbes	the number of cache lookups made by the last search
+	 */
+	public long getCacheProbes() {
+		return cacheProbes;
+	}
+	
+	/**
+	 * @return cacheHits	the number of cache lookups that found their position in the last search
+	 */
+	public long getCacheHits() {
+		return cacheHits;
+	}
+	
+	/**
+	 * @return			the number of positions visited at each distance from the root by the last search
+	 */
+	public long[] getPlyNodeCounts() {
+		int length = plyNodeCounts.length;
+		while(length > 0 && plyNodeCounts[length - 1] == 0) {
+			length--;
+		}
+		return Arrays.copyOf(plyNodeCounts, length);
+	}
+	
+	/**
+	 * @return resultingState
+	 */
+	public State getResultingState() {
+		return resultingState;
+	}
+}
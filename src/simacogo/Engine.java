@@ -0,0 +1,387 @@
+package simacogo;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+/**
+ * The search engine of one Game: chooses a move with the algorithm and settings of a GameConfig.  An Engine keeps its
+ * tables between searches and holds no static state, so any number of Engines can search at the same time.
+ * @author Patrick Drucker
+ */
+public class Engine {
+	private final GameConfig config;			// settings of the search
+	private final Minimax minimax;				// used by the MINIMAX algorithm
+	private final AlphaBeta alphaBeta;			// used by the ALPHA_BETA algorithm
+	private final ParallelSearch parallelSearch;	// used by the PARALLEL algorithm
+	private final MonteCarloTreeSearch monteCarlo;	// used by the MCTS algorithm
+	private final EndgameSolver endgameSolver;	// used by every algorithm once few enough cells are empty
+	private final SearchMonitor monitor;		// adds up the statistics of every search; null if monitoring is off
+	private SearchStatistics lastStatistics;	// statistics of the last search; null before the first
+	private SearchStatistics algorithmStatistics;	// statistics of the last run of searchWithAlgorithm, on either thread
+	private final ExecutorService ponderer;		// the thread that ponders; null if pondering is off
+	private Future<?> ponderTask;				// the pondering that was started last; null if there is none
+	private final Object ponderLock = new Object();	// guards the fields below, which are shared with the ponderer
+	private State ponderState;					// the State pondered on (the opponent has the next move)
+	private SearchResult[] replyResults;		// result of the search of each reply column; null until it finished
+	private SearchStatistics[] replyStatistics;	// statistics of the search of each reply column
+	private int ponderColumn = -1;				// reply column being searched by the ponderer; -1 if none
+	private boolean ponderStopped;				// true once the ponderer must not start another search
+	private boolean ponderCancelled;			// true if the search of ponderColumn was cancelled
+	
+	/**
+	 * Creates an Engine.  Only the tables needed by the configured algorithm are allocated.
+	 * @param config	settings of the search
+	 */
+	public Engine(GameConfig config) {
+		this.config = config;
+		this.minimax = config.getAlgorithm() == Algorithm.MINIMAX ? new Minimax(config.getEvaluation()) : null;
+		this.alphaBeta = config.getAlgorithm() == Algorithm.ALPHA_BETA
+				? new AlphaBeta(config.getTableSizeMB(), config.getEvaluation()) : null;
+		this.parallelSearch = config.getAlgorithm() == Algorithm.PARALLEL
+				? new ParallelSearch(config.getNumThreads(), config.getTableSizeMB(), config.getEvaluation()) : null;
+		this.monteCarlo = config.getAlgorithm() == Algorithm.MCTS
+				? new MonteCarloTreeSearch(config.getNumThreads(), config.getTableSizeMB()) : null;
+		this.endgameSolver = config.getEndgameCells() > 0 ? new EndgameSolver(config.getTableSizeMB()) : null;
+		this.monitor = config.isMonitored() ? SearchMonitor.getInstance() : null;
+		this.ponderer = config.isPondering() ? Executors.newSingleThreadExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "simacogo-ponder");
+			thread.setDaemon(true);
+			return thread;
+		}) : null;
+	}
+	
+	/**
+	 * Searches for the best move that player can make from state.  Once no more than the configured number of cells
+	 * are empty, the rest of the Game is solved exactly instead.  Stops the pondering: a reply it has searched is
+	 * returned at once and one it is searching is waited for, so the move is the one it would be without pondering.
+	 * @param state		the current State (player has the next move)
+	 * @param player	the Player making use of the search
+	 * @return			the best move and its value
+	 */
+	public synchronized SearchResult search(State state, Player player) {
+		SearchEvent event = new SearchEvent();
+		event.begin();
+		SearchResult result = stopPondering(state);
+		if(result != null) {
+			lastStatistics = replyStatistics[state.getColumnDropped()];
+		}
+		else {
+			result = searchWithAlgorithm(state, player);
+			lastStatistics = algorithmStatistics;
+		}
+		record(event, result);
+		return result;
+	}
+	
+	/**
+	 * Searches for the best move that player can make from state, deepening 1, 2, 3... plies up to maxPlies until the
+	 * time budget runs out or setStopped(true) is called, and passes the result of every iteration that finished to
+	 * listener, with its principal variation.  Returns the result of the deepest iteration that finished, so stopping
+	 * returns the best move found so far within a few thousand nodes; the first iteration always finishes.  Once no
+	 * more than the configured number of cells are empty, a 1-ply search is followed by the EndgameSolver, whose exact
+	 * result is passed on unless it was stopped first.  Needs the ALPHA_BETA algorithm, and pondering off.
+	 * @param state			the current State (player has the next move); not the end of the Game
+	 * @param player		the Player making use of the search
+	 * @param maxPlies		the deepest iteration
+	 * @param budgetMillis	the time budget in milliseconds; 0 for none
+	 * @param listener		receives the result of every iteration that finished; null for none
+	 * @return				the best move of the deepest iteration that finished, and its value
+	 * @throws IllegalStateException	if the algorithm is not ALPHA_BETA
+	 */
+	public synchronized SearchResult analyse(State state, Player player, int maxPlies, long budgetMillis,
+			Consumer<SearchResult> listener) {
+		if(alphaBeta == null) {
+			throw new IllegalStateException("analyse needs the ALPHA_BETA algorithm, not " + config.getAlgorithm());
+		}
+		SearchEvent event = new SearchEvent();
+		event.begin();
+		long start = System.nanoTime();
+		SearchResult[] last = new SearchResult[1];		// the result of the deepest iteration that finished
+		Consumer<SearchResult> iterations = iteration -> {
+			last[0] = iteration;
+			if(listener != null) {
+				listener.accept(iteration);
+			}
+		};
+		boolean solve = endgameSolver != null && EndgameSolver.emptyCells(state) <= config.getEndgameCells();
+		alphaBeta.searchDeepening(state, solve ? 1 : maxPlies, budgetMillis, player, iterations);
+		algorithmStatistics = new SearchStatistics(config.getAlgorithm().name(), alphaBeta.getCompletedDepth(),
+				alphaBeta.getNodeCount(), alphaBeta.getLeafCount(), alphaBeta.getCutoffCount(), alphaBeta.getTableProbes(),
+				alphaBeta.getTableHits(), alphaBeta.getPlyNodeCounts(), System.nanoTime() - start);
+		if(solve) {
+			SearchResult solved = endgameSolver.solve(state, player);
+			if(solved.getBestColumn() >= 0) {
+				iterations.accept(solved);
+				algorithmStatistics = new SearchStatistics("ENDGAME", solved.getDepth(), solved.getNodeCount(),
+						endgameSolver.getLeafCount(), endgameSolver.getCutoffCount(), endgameSolver.getCacheProbes(),
+						endgameSolver.getCacheHits(), endgameSolver.getPlyNodeCounts(), solved.getElapsedNanos());
+			}
+		}
+		lastStatistics = algorithmStatistics;
+		record(event, last[0]);
+		return last[0];
+	}
+	
+	/**
+	 * Stops the running analysis, and every analysis started until this is called again with false, as if its time had
+	 * run out: analyse returns the best move of the deepest iteration that finished.  Can be called from any thread.
+	 * @param stopped	true to stop searching; false to search normally again
+	 */
+	public void setStopped(boolean stopped) {
+		setCancelled(stopped);
+	}
+	
+	/**
+	 * Adds lastStatistics to the SearchMonitor, if monitoring is on, and commits the events of a search, if they are
+	 * being recorded.
+	 * @param event		the event of the search, begun when the search began
+	 * @param result	the result of the search
+	 */
+	private void record(SearchEvent event, SearchResult result) {
+		if(monitor != null) {
+			monitor.record(lastStatistics);
+		}
+		if(event.shouldCommit()) {
+			event.algorithm = lastStatistics.getAlgorithm();
+			event.depth = result.getDepth();
+			event.bestColumn = result.getBestColumn();
+			event.value = result.getValue();
+			event.nodes = lastStatistics.getNodeCount();
+			event.leaves = lastStatistics.getLeafCount();
+			event.nodesPerSecond = lastStatistics.getNodesPerSecond();
+			event.branchingFactor = lastStatistics.getEffectiveBranchingFactor();
+			event.cutoffRate = lastStatistics.getCutoffRate();
+			event.tableHitRate = lastStatistics.getTableHitRate();
+			event.commit();
+			for(int ply = 1; ply < lastStatistics.getNumPlies(); ply++) {
+				SearchPlyEvent plyEvent = new SearchPlyEvent();
+				plyEvent.ply = ply;
+				plyEvent.nodes = lastStatistics.getNodeCount(ply);
+				plyEvent.branchingFactor = lastStatistics.getBranchingFactor(ply);
+				plyEvent.commit();
+			}
+		}
+	}
+	
+	/**
+	 * Runs the search of the configured algorithm, or the EndgameSolver, and sets algorithmStatistics.
+	 * @param state		the current State (player has the next move)
+	 * @param player	the Player making use of the search
+	 * @return			the best move and its value
+	 */
+	private SearchResult searchWithAlgorithm(State state, Player player) {
+		long start = System.nanoTime();
+		SearchResult result;
+		if(endgameSolver != null && EndgameSolver.emptyCells(state) <= config.getEndgameCells()) {
+			result = endgameSolver.solve(state, player);
+			algorithmStatistics = new SearchStatistics("ENDGAME", result.getDepth(), result.getNodeCount(),
+					endgameSolver.getLeafCount(), endgameSolver.getCutoffCount(), endgameSolver.getCacheProbes(),
+					endgameSolver.getCacheHits(), endgameSolver.getPlyNodeCounts(), result.getElapsedNanos());
+			return result;
+		}
+		switch(config.getAlgorithm()) {
+		case MINIMAX:
+			result = minimax.search(state, config.getNumPlies(), player);
+			algorithmStatistics = new SearchStatistics(config.getAlgorithm().name(), result.getDepth(), result.getNodeCount(),
+					minimax.getLeafCount(), 0, 0, 0, minimax.getPlyNodeCounts(), result.getElapsedNanos());
+			return result;
+		case PARALLEL:
+			if(config.getMoveTimeMillis() > 0) {
+				result = parallelSearch.searchTimed(state, config.getMoveTimeMillis(), player);
+			}
+			else {
+				result = parallelSearch.search(state, config.getNumPlies(), player);
+			}
+			algorithmStatistics = new SearchStatistics(config.getAlgorithm().name(), result.getDepth(), result.getNodeCount(),
+					parallelSearch.getLeafCount(), parallelSearch.getCutoffCount(), parallelSearch.getTableProbes(),
+					parallelSearch.getTableHits(), parallelSearch.getPlyNodeCounts(), result.getElapsedNanos());
+			return result;
+		case MCTS:
+			if(config.getMoveTimeMillis() > 0) {
+				result = monteCarlo.searchTimed(state, config.getMoveTimeMillis(), player);
+			}
+			else {
+				result = monteCarlo.search(state, config.getNumPlayouts(), player);
+			}
+			algorithmStatistics = new SearchStatistics(config.getAlgorithm().name(), result.getDepth(),
+					result.getNodeCount(), monteCarlo.getLeafCount(), 0, 0, 0, monteCarlo.getPlyNodeCounts(),
+					result.getElapsedNanos());
+			return result;
+		default:
+			double value;
+			if(config.getMoveTimeMillis() > 0) {
+				value = alphaBeta.searchTimed(state, config.getMoveTimeMillis(), player);
+			}
+			else {
+				value = alphaBeta.search(state, config.getNumPlies(), player);
+			}
+			State resultingState = alphaBeta.getResultingState();
+			result = new SearchResult(resultingState == null ? -1 : resultingState.getColumnDropped(), value,
+					alphaBeta.getCompletedDepth(), alphaBeta.getNodeCount(), System.nanoTime() - start);
+			algorithmStatistics = new SearchStatistics(config.getAlgorithm().name(), result.getDepth(), result.getNodeCount(),
+					alphaBeta.getLeafCount(), alphaBeta.getCutoffCount(), alphaBeta.getTableProbes(),
+					alphaBeta.getTableHits(), alphaBeta.getPlyNodeCounts(), result.getElapsedNanos());
+			return result;
+		}
+	}
+	
+	/**
+	 * Starts pondering on state: searching every reply the opponent can make, on the thread of this Engine, in the same
+	 * way as search would search it.  Returns at once.  Does nothing if pondering is off or the Game is over.
+	 * @param state		the State after player's move (the opponent has the next move)
+	 * @param player	the Player that will search after the opponent's reply
+	 */
+	public synchronized void ponder(State state, Player player) {
+		if(ponderer == null) {
+			return;
+		}
+		stopPondering(null);
+		if(state.isTerminalState()) {
+			return;
+		}
+		synchronized(ponderLock) {
+			ponderState = state;
+			replyResults = new SearchResult[state.getSize().getColumns()];
+			replyStatistics = new SearchStatistics[state.getSize().getColumns()];
+			ponderStopped = false;
+			ponderCancelled = false;
+		}
+		ponderTask = ponderer.submit(() -> ponderReplies(state, player));
+	}
+	
+	/**
+	 * Searches the replies to state one after the other, from the centre outwards, until they have all been searched or
+	 * the pondering is stopped.  Runs on the ponderer.
+	 * @param state		the State pondered on
+	 * @param player	the Player that will search after the opponent's reply
+	 */
+	private void ponderReplies(State state, Player player) {
+		for(int col : state.getSize().getCentreOrder()) {
+			if(state.numAvailableSpaces(col) == 0) {
+				continue;
+			}
+			synchronized(ponderLock) {
+				if(ponderStopped) {
+					return;
+				}
+				ponderColumn = col;
+			}
+			SearchResult result = searchWithAlgorithm(state.dropPiece(col), player);
+			synchronized(ponderLock) {
+				if(!ponderCancelled) {
+					replyResults[col] = result;
+					replyStatistics[col] = algorithmStatistics;
+				}
+				ponderColumn = -1;
+			}
+		}
+	}
+	
+	/**
+	 * Stops the pondering and waits for the ponderer to be idle.  A search of the reply that led to state is allowed to
+	 * finish; any other search is cancelled.
+	 * @param state		the State that is about to be searched; null if none
+	 * @return			the result of the search of state by the ponderer; null if it did not search state
+	 */
+	private SearchResult stopPondering(State state) {
+		if(ponderTask == null) {
+			return null;
+		}
+		int reply = -1;
+		synchronized(ponderLock) {
+			ponderStopped = true;
+			if(state != null && isReply(state)) {
+				reply = state.getColumnDropped();
+			}
+			if(ponderColumn >= 0 && ponderColumn != reply) {
+				ponderCancelled = true;
+				setCancelled(true);
+			}
+		}
+		try {
+			ponderTask.get();
+		}
+		catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		catch(ExecutionException e) {
+			throw new IllegalStateException("pondering failed", e.getCause());
+		}
+		finally {
+			ponderTask = null;
+			setCancelled(false);
+		}
+		synchronized(ponderLock) {
+			return reply >= 0 ? replyResults[reply] : null;
+		}
+	}
+	
+	/**
+	 * @param state		a State
+	 * @return			true if state is the State pondered on after one of its replies
+	 */
+	private boolean isReply(State state) {
+		int col = state.getColumnDropped();
+		return state.getSize() == ponderState.getSize() && state.turnNumber == ponderState.turnNumber + 1 && col >= 0
+				&& ponderState.numAvailableSpaces(col) > 0 && ponderState.dropPiece(col).getHash() == state.getHash();
+	}
+	
+	/**
+	 * Cancels or allows the searches of every algorithm of this Engine.
+	 * @param cancelled	true to stop searching; false to search normally again
+	 */
+	private void setCancelled(boolean cancelled) {
+		if(minimax != null) {
+			minimax.setCancelled(cancelled);
+		}
+		if(alphaBeta != null) {
+			alphaBeta.setCancelled(cancelled);
+		}
+		if(parallelSearch != null) {
+			parallelSearch.setCancelled(cancelled);
+		}
+		if(monteCarlo != null) {
+			monteCarlo.setCancelled(cancelled);
+		}
+		if(endgameSolver != null) {
+			endgameSolver.setCancelled(cancelled);
+		}
+	}
+	
+	/**
+	 * @return lastStatistics	the statistics of the last search; null before the first
+	 */
+	public synchronized SearchStatistics getLastStatistics() {
+		return lastStatistics;
+	}
+	
+	/**
+	 * Stops the pondering and the threads of the PARALLEL and MCTS algorithms.  The Engine cannot be used afterwards.
+	 */
+	public void shutdown() {
+		if(ponderer != null) {
+			synchronized(ponderLock) {
+				ponderStopped = true;
+				ponderCancelled = true;
+				setCancelled(true);
+			}
+			ponderer.shutdown();
+		}
+		if(parallelSearch != null) {
+			parallelSearch.shutdown();
+		}
+		if(monteCarlo != null) {
+			monteCarlo.shutdown();
+		}
+	}
+	
+	/**
+	 * @return config
+	 */
+	public GameConfig getConfig() {
+		return config;
+	}
+}
@@ -0,0 +1,348 @@
+package simacogo;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Drives the engine with a text protocol on standard input and output, modelled on the UCI protocol of chess engines,
+ * so that other programs can set up positions and search them without going through the console of PrintGame.  Every
+ * command is one line:
+ * <pre>
+ * uci								names the engine							id name Simacogo, id author ..., uciok
+ * isready							answered at once, even while searching		readyok
+ * setoption name N value V			sets the option "-N V" of Simacogo, e.g. "name eval value features"
+ * ucinewgame						clears the tables of the search
+ * position startpos [moves C...]	the initial State, then the columns (1 is the leftmost) dropped into, 'O' first
+ * position board ROWS [moves C...]	the rows of the grid, top row first, separated by '/' as GameServer replies to BOARD
+ * go [depth N] [movetime MS] [infinite]	searches the position				info ..., bestmove C
+ * stop								stops the search							bestmove C
+ * quit								stops the search and exits
+ * </pre>
+ * The search is the ALPHA_BETA search of one Engine (see Engine.analyse), which keeps its tables until ucinewgame.  A
+ * command that cannot be carried out gets "info string message".
+ * Usage: EngineProtocol [options]   or   Simacogo -protocol [options]
+ * where options are the options of Simacogo that choose the search.
+ * @author Patrick Drucker
+ */
+public class EngineProtocol {
+	private final BufferedReader in;			// the commands
+	private final PrintWriter out;				// the replies, written by the reading thread and the searcher (see send)
+	private final ExecutorService searcher;		// the thread that runs go
+	private final Player[] players;				// the two Players, one for each piece
+	private GameConfig config;					// settings of the search
+	private Engine engine;						// keeps its tables from one search to the next
+	private State position;						// the position of the last position command
+	private Future<?> search;					// the running search; null if there is none
+	private boolean infinite;					// true if the running search only ends with stop
+	
+	/**
+	 * Creates an EngineProtocol.  Nothing is read until run is called.
+	 * @param in		the commands
+	 * @param out		the replies
+	 * @param config	settings of the search; its algorithm must be ALPHA_BETA
+	 */
+	public EngineProtocol(BufferedReader in, PrintWriter out, GameConfig config) {
+		this.in = in;
+		this.out = out;
+		this.config = config.withPondering(false);
+		this.searcher = Executors.newSingleThreadExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "simacogo-protocol");
+			thread.setDaemon(true);
+			return thread;
+		});
+		this.players = new Game(new GameConfig().withTableSizeMB(0).withEndgameCells(0)).getPlayers();
+		this.engine = new Engine(this.config);
+		this.position = new State(config.getBoardSize(), 'O', 'X');
+	}
+	
+	/**
+	 * Reads standard input and writes to standard output until quit or the end of the input.
+	 * @param args		the options of Simacogo that choose the search
+	 * @throws IOException
+	 */
+	public static void main(String[] args) throws IOException {
+		GameConfig config = new GameConfig().withArguments(args);
+		if(config.getAlgorithm() != Algorithm.ALPHA_BETA) {
+			System.err.println("The protocol searches with -algorithm alpha_beta, not " + config.getAlgorithm());
+			return;
+		}
+		BufferedReader in = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+		PrintWriter out = new PrintWriter(new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8)));
+		new EngineProtocol(in, out, config).run();
+	}
+	
+	/**
+	 * Carries out the commands until quit or the end of the input, then lets the search finish and stops the Engine.
+	 * @throws IOException	if the commands cannot be read
+	 */
+	public void run() throws IOException {
+		try {
+			String line;
+			while((line = in.readLine()) != null) {
+				String[] words = line.trim().split("\\s+");
+				if(words[0].isEmpty()) {
+					continue;
+				}
+				try {
+					if(!execute(words)) {
+						break;
+					}
+				}
+				catch(IllegalArgumentException e) {
+					send("info string " + e.getMessage());
+				}
+			}
+		}
+		finally {
+			finishSearch();
+			searcher.shutdown();
+			engine.shutdown();
+		}
+	}
+	
+	/**
+	 * Carries out one command.  Any command but isready waits for a running search to finish first, or stops it if it
+	 * is infinite, so that commands can be sent without waiting for bestmove.
+	 * @param words		the words of the command
+	 * @return			false if the command was quit
+	 * @throws IllegalArgumentException	if the command cannot be carried out
+	 */
+	private boolean execute(String[] words) {
+		if(words[0].equals("stop") || words[0].equals("quit")) {
+			stopSearch();
+		}
+		else if(!words[0].equals("isready")) {
+			finishSearch();
+		}
+		switch(words[0]) {
+		case "uci":
+			send("id name Simacogo");
+			send("id author Patrick Drucker");
+			send("uciok");
+			return true;
+		case "isready":
+			send("readyok");
+			return true;
+		case "setoption":
+			setOption(words);
+			return true;
+		case "ucinewgame":
+			engine.shutdown();
+			engine = new Engine(config);
+			return true;
+		case "position":
+			position = readPosition(words);
+			return true;
+		case "go":
+			go(words);
+			return true;
+		case "stop":
+			return true;
+		case "quit":
+			return false;
+		default:
+			throw new IllegalArgumentException("unknown command " + words[0]);
+		}
+	}
+	
+	/**
+	 * Sets an option of the search and starts a new Engine with it.  A new size of grid also sets up its initial State.
+	 * @param words		"setoption name N value V"
+	 * @throws IllegalArgumentException	if the option cannot be set
+	 */
+	private void setOption(String[] words) {
+		if(words.length != 5 || !words[1].equals("name") || !words[3].equals("value")) {
+			throw new IllegalArgumentException("usage: setoption name N value V");
+		}
+		GameConfig newConfig = config.withArguments(new String[] {"-" + words[2], words[4]}).withPondering(false);
+		if(newConfig.getAlgorithm() != Algorithm.ALPHA_BETA) {
+			throw new IllegalArgumentException("the protocol searches with alpha_beta");
+		}
+		if(newConfig.getBoardSize() != config.getBoardSize()) {
+			position = new State(newConfig.getBoardSize(), 'O', 'X');
+		}
+		config = newConfig;
+		engine.shutdown();
+		engine = new Engine(config);
+	}
+	
+	/**
+	 * Reads the position of a position command.
+	 * @param words		"position startpos|board ROWS [moves C...]"
+	 * @return			the State of the position
+	 * @throws IllegalArgumentException	if the command is not a position on a grid of the size of the options
+	 */
+	private State readPosition(String[] words) {
+		State state;
+		int next;
+		if(words.length > 1 && words[1].equals("startpos")) {
+			state = new State(config.getBoardSize(), 'O', 'X');
+			next = 2;
+		}
+		else if(words.length > 2 && words[1].equals("board")) {
+			state = State.parse(words[2]);
+			if(state.getSize() != config.getBoardSize()) {
+				throw new IllegalArgumentException("not a " + config.getBoardSize() + " grid");
+			}
+			next = 3;
+		}
+		else {
+			throw new IllegalArgumentException("usage: position startpos|board ROWS [moves C...]");
+		}
+		if(next < words.length && !words[next].equals("moves")) {
+			throw new IllegalArgumentException("expected moves, not " + words[next]);
+		}
+		for(int i = next + 1; i < words.length; i++) {
+			int column = parseInt(words[i]);
+			if(column < 1 || column > state.getSize().getColumns() || !state.columnIsAvailable(column)) {
+				throw new IllegalArgumentException("column " + column + " is not available");
+			}
+			state = state.dropPiece(column - 1);
+		}
+		return state;
+	}
+	
+	/**
+	 * Starts searching the position on the searcher, deepening one ply at a time until it is N plies deep or MS
+	 * milliseconds have passed, or until stop with infinite; with none of them as the options say.  It writes an info
+	 * line per ply and at the end "bestmove C", the best column of the deepest ply that finished.  stop makes it return
+	 * within a few thousand nodes.
+	 * @param words		"go [depth N] [movetime MS] [infinite]"
+	 * @throws IllegalArgumentException	if a limit is not a number
+	 */
+	private void go(String[] words) {
+		int depth = 0;
+		long moveTime = 0;
+		boolean infinite = false;
+		for(int i = 1; i < words.length; i++) {
+			if(words[i].equals("infinite")) {
+				infinite = true;
+			}
+			else if(words[i].equals("depth") && i + 1 < words.length) {
+				depth = Math.max(1, parseInt(words[++i]));
+			}
+			else if(words[i].equals("movetime") && i + 1 < words.length) {
+				moveTime = Math.max(1, parseInt(words[++i]));
+			}
+			else {
+				throw new IllegalArgumentException("unknown limit " + words[i]);
+			}
+		}
+		if(!infinite && depth == 0 && moveTime == 0) {
+			// as the options say: a time budget or a number of plies
+			moveTime = config.getMoveTimeMillis();
+			depth = moveTime > 0 ? 0 : config.getNumPlies();
+		}
+		State state = position;
+		if(state.isTerminalState()) {
+			send("bestmove none");
+			return;
+		}
+		Player player = players[0].getPiece() == state.getNextMovePiece() ? players[0] : players[1];
+		this.infinite = infinite;
+		Engine searchEngine = engine;
+		int plies = depth > 0 ? depth : Integer.MAX_VALUE;
+		long budget = moveTime;
+		searchEngine.setStopped(false);
+		search = searcher.submit(() -> {
+			SearchResult result = searchEngine.analyse(state, player, plies, budget, iteration -> send(info(iteration)));
+			send("bestmove " + (result.getBestColumn() + 1));
+		});
+	}
+	
+	/**
+	 * Stops the running search, if there is one, and waits for it to write its best move.
+	 */
+	private void stopSearch() {
+		if(search != null) {
+			engine.setStopped(true);
+			waitForSearch();
+		}
+	}
+	
+	/**
+	 * Lets the running search, if there is one, finish and write its best move; stops it if it is infinite.
+	 */
+	private void finishSearch() {
+		if(infinite) {
+			stopSearch();
+		}
+		else {
+			waitForSearch();
+		}
+	}
+	
+	/**
+	 * Waits for the running search, if there is one, to write its best move.
+	 */
+	private void waitForSearch() {
+		if(search == null) {
+			return;
+		}
+		try {
+			search.get();
+		}
+		catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		catch(ExecutionException e) {
+			send("info string search failed: " + e.getCause());
+		}
+		finally {
+			search = null;
+			infinite = false;
+		}
+	}
+	
+	/**
+	 * @param iteration	the result of a ply of the search
+	 * @return			its info line, "info depth D score V nodes N time MS nps N pv C...", with the value for
+	 * 					the piece that has the next move and the columns of the best line
+	 */
+	private static String info(SearchResult iteration) {
+		StringBuilder info = new StringBuilder("info depth ").append(iteration.getDepth())
+				.append(" score ").append(iteration.getValue())
+				.append(" nodes ").append(iteration.getNodeCount())
+				.append(" time ").append(iteration.getElapsedNanos() / 1000000)
+				.append(" nps ").append((long)iteration.getNodesPerSecond())
+				.append(" pv");
+		for(int col : iteration.getPrincipalVariation()) {
+			info.append(' ').append(col + 1);
+		}
+		return info.toString();
+	}
+	
+	/**
+	 * Writes a line and flushes it, so the controller sees it at once.  Called by the reading thread and the searcher.
+	 * @param line		the line
+	 */
+	private void send(String line) {
+		synchronized(out) {
+			out.println(line);
+			out.flush();
+		}
+	}
+	
+	/**
+	 * @param word		a word of a command
+	 * @return			the number
+	 * @throws IllegalArgumentException	if the word is not a number
+	 */
+	private static int parseInt(String word) {
+		try {
+			return Integer.parseInt(word);
+		}
+		catch(NumberFormatException e) {
+			throw new IllegalArgumentException("not a number: " + word);
+		}
+	}
+}
@@ -0,0 +1,56 @@
+package simacogo;
+
+/**
+ * The ways a search can value the States at the bottom of its tree.  Every value is for a Player: positive when the
+ * Player is ahead.  At the end of the Game every Evaluation gives the final score difference.
+ * @author Patrick Drucker
+ */
+public enum Evaluation {
+	SCORE {				// the current score difference (see Value.evaluate)
+		@Override
+		public double evaluate(Player player, SearchBoard board) {
+			return Value.evaluate(player, board);
+		}
+	},
+	POTENTIAL {			// the score difference, plus a share of how much more each piece could still score
+		@Override
+		public double evaluate(Player player, SearchBoard board) {
+			char piece = player.getPiece();
+			char other = player.getOpponent().getPiece();
+			double potential = (board.maxScore(piece) - board.score(piece)) - (board.maxScore(other) - board.score(other));
+			return Value.evaluate(player, board) + POTENTIAL_WEIGHT * potential;
+		}
+	},
+	FEATURES {			// a weighted sum of features, with weights fitted on self-play Games (see FeatureEvaluator)
+		@Override
+		public double evaluate(Player player, SearchBoard board) {
+			return FeatureEvaluator.evaluate(player.getPiece(), board);
+		}
+	},
+	NEURAL {			// the score difference plus a small neural network's guess of how it will change (see NeuralNetwork)
+		@Override
+		public double evaluate(Player player, SearchBoard board) {
+			return board.neuralValue(player.getPiece());
+		}
+	};
+	
+	private static final double POTENTIAL_WEIGHT = 0.25;	// a power of two (see TranspositionTable)
+	
+	/**
+	 * Evaluates a board for a Player.
+	 * @param player	the Player whose value is being evaluated
+	 * @param board		the board being searched
+	 * @return			the value of the board for player
+	 */
+	public abstract double evaluate(Player player, SearchBoard board);
+	
+	/**
+	 * Evaluates a State for a Player.
+	 * @param player	the Player whose value is being evaluated
+	 * @param state		the State
+	 * @return			the value of the State for player
+	 */
+	public double evaluate(Player player, State state) {
+		return evaluate(player, new SearchBoard(state));
+	}
+}
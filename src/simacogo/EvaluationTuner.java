@@ -0,0 +1,213 @@
+package simacogo;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Fits the weights of the FEATURES evaluation offline, on positions of self-play Games.  Plays Games of the computer
+ * against itself from random openings, on all the processors at once, and keeps every position after the opening with
+ * its features (see FeatureEvaluator) and the final score difference of the Game, both for the piece that has the next
+ * move.  The weights are the least-squares fit of the final score difference to the features, rounded to multiples of
+ * FeatureEvaluator.WEIGHT_UNIT, so that the evaluation predicts where a position is going rather than where it is.
+ * Every HOLDOUT-th Game is kept out of the fit, and the error of the fitted weights on its positions is printed next to
+ * that of the score difference alone (SCORE) and of the weights in use, so a fit that does not generalise shows.
+ * Usage: EvaluationTuner [-games N] [-threads N] [-opening PLIES] [-seed S] [-out FILE] [options]
+ * where options are the options of Simacogo that choose the search of the self-play, e.g. "-plies 4 -eval features" to
+ * tune on the Games of the current weights.  "-out" writes the weights to a file for "-Dsimacogo.weights=FILE".
+ * Compare the result with Tournament, e.g. -a "-plies 4 -eval features" -b "-plies 6".
+ * @author Patrick Drucker
+ */
+public class EvaluationTuner {
+	private static final int HOLDOUT = 5;				// every HOLDOUT-th Game is used to test the fit, not to fit
+	private static final int TABLE_SIZE_MB = 1;			// table size of each side, as many Games are played at once
+	private static final double RIDGE = 1e-6;			// keeps the fit stable when a feature barely varies
+	
+	/**
+	 * Plays the Games, fits the weights and prints them.
+	 * @param args
+	 * @throws IOException
+	 * @throws InterruptedException
+	 * @throws ExecutionException
+	 */
+	public static void main(String[] args) throws IOException, InterruptedException, ExecutionException {
+		int numGames = 1000;
+		int numThreads = Runtime.getRuntime().availableProcessors();
+		int openingPlies = 8;
+		long seed = 1;
+		String out = null;
+		for(int i = 0; i + 1 < args.length; i++) {
+			if(args[i].equals("-games")) {
+				numGames = Integer.parseInt(args[i+1]);
+			}
+			else if(args[i].equals("-threads")) {
+				numThreads = Integer.parseInt(args[i+1]);
+			}
+			else if(args[i].equals("-opening")) {
+				openingPlies = Integer.parseInt(args[i+1]);
+			}
+			else if(args[i].equals("-seed")) {
+				seed = Long.parseLong(args[i+1]);
+			}
+			else if(args[i].equals("-out")) {
+				out = args[i+1];
+			}
+		}
+		final GameConfig config = new GameConfig().withTableSizeMB(TABLE_SIZE_MB).withNumThreads(1).withArguments(args);
+		System.out.println("Self-play: " + config + ", " + numGames + " games from " + openingPlies
+				+ "-ply random openings on " + numThreads + " threads");
+		
+		ExecutorService pool = Executors.newFixedThreadPool(numThreads);
+		List<Future<List<double[]>>> futures = new ArrayList<Future<List<double[]>>>();
+		long start = System.nanoTime();
+		for(int game = 0; game < numGames; game++) {
+			final Random random = new Random(seed * 1000003 + game);
+			final int plies = openingPlies;
+			futures.add(pool.submit(() -> play(State.randomOpening(random, config.getBoardSize(), plies), config)));
+		}
+		List<double[]> training = new ArrayList<double[]>();
+		List<double[]> test = new ArrayList<double[]>();
+		for(int game = 0; game < numGames; game++) {
+			(game % HOLDOUT == HOLDOUT - 1 ? test : training).addAll(futures.get(game).get());
+		}
+		pool.shutdown();
+		System.out.printf("%d training and %d test positions in %d s%n", training.size(), test.size(),
+				(System.nanoTime() - start) / 1000000000);
+		
+		double[] weights = fit(training);
+		double[] scoreOnly = new double[FeatureEvaluator.NUM_FEATURES];
+		scoreOnly[0] = 1;
+		System.out.printf("RMS error on the test positions: score %.2f, weights in use %.2f, fitted %.2f%n",
+				rmsError(scoreOnly, test), rmsError(FeatureEvaluator.getWeights(), test), rmsError(weights, test));
+		for(int i = 0; i < FeatureEvaluator.NUM_FEATURES; i++) {
+			System.out.println(FeatureEvaluator.NAMES[i] + " " + weights[i]);
+		}
+		if(out != null) {
+			FeatureEvaluator.writeWeights(Paths.get(out), weights);
+			System.out.println("Wrote the weights to " + out);
+		}
+	}
+	
+	/**
+	 * Plays one Game of the computer against itself and keeps its positions as rows.
+	 * @param opening	the State after the opening
+	 * @param config	settings of the search of both sides
+	 * @return			a row per position: its features, then the final score difference, for the piece to move
+	 */
+	private static List<double[]> play(State opening, GameConfig config) {
+		List<State> states = selfPlay(opening, config, null);
+		State end = states.get(states.size() - 1);
+		List<double[]> rows = new ArrayList<double[]>();
+		SearchBoard board = new SearchBoard(opening);
+		for(State state : states.subList(0, states.size() - 1)) {
+			char piece = state.getNextMovePiece();
+			double[] row = new double[FeatureEvaluator.NUM_FEATURES + 1];
+			board.set(state);
+			FeatureEvaluator.features(piece, board, row);
+			row[FeatureEvaluator.NUM_FEATURES] = end.score(piece) - end.score(piece == 'O' ? 'X' : 'O');
+			rows.add(row);
+		}
+		return rows;
+	}
+	
+	/**
+	 * Plays one Game of the computer against itself.
+	 * @param opening	the State after the opening
+	 * @param config	settings of the search of both sides
+	 * @param results	receives the result of the search of every move, for the piece that moved; null for none
+	 * @return			every State of the Game from opening to the end
+	 */
+	static List<State> selfPlay(State opening, GameConfig config, List<SearchResult> results) {
+		ComputerPlayer o = new ComputerPlayer(config, 'O');
+		ComputerPlayer x = new ComputerPlayer(config, 'X');
+		o.setOpponent(x);
+		x.setOpponent(o);
+		List<State> states = new ArrayList<State>();
+		State state = opening;
+		states.add(state);
+		try {
+			while(!state.isTerminalState()) {
+				ComputerPlayer player = state.getNextMovePiece() == 'O' ? o : x;
+				state = player.dropPiece(state, -1);
+				states.add(state);
+				if(results != null) {
+					results.add(player.getLastResult());
+				}
+			}
+		}
+		finally {
+			o.getEngine().shutdown();
+			x.getEngine().shutdown();
+		}
+		return states;
+	}
+	
+	/**
+	 * Fits the weights by least squares: solves the normal equations, with a small ridge, by Gaussian elimination.
+	 * @param rows		the features and final score difference of each position
+	 * @return			the weights, rounded to multiples of FeatureEvaluator.WEIGHT_UNIT
+	 */
+	static double[] fit(List<double[]> rows) {
+		int n = FeatureEvaluator.NUM_FEATURES;
+		double[][] a = new double[n][n + 1];				// the normal equations, with the right-hand side last
+		for(double[] row : rows) {
+			for(int i = 0; i < n; i++) {
+				for(int j = 0; j < n; j++) {
+					a[i][j] += row[i] * row[j];
+				}
+				a[i][n] += row[i] * row[n];
+			}
+		}
+		for(int i = 0; i < n; i++) {
+			a[i][i] += RIDGE * (1 + a[i][i]);
+		}
+		for(int col = 0; col < n; col++) {
+			int pivot = col;
+			for(int row = col + 1; row < n; row++) {
+				if(Math.abs(a[row][col]) > Math.abs(a[pivot][col])) {
+					pivot = row;
+				}
+			}
+			double[] swap = a[col];
+			a[col] = a[pivot];
+			a[pivot] = swap;
+			for(int row = 0; row < n; row++) {
+				if(row != col && a[col][col] != 0) {
+					double factor = a[row][col] / a[col][col];
+					for(int k = col; k <= n; k++) {
+						a[row][k] -= factor * a[col][k];
+					}
+				}
+			}
+		}
+		double[] weights = new double[n];
+		for(int i = 0; i < n; i++) {
+			double weight = a[i][i] == 0 ? 0 : a[i][n] / a[i][i];
+			weights[i] = Math.round(weight / FeatureEvaluator.WEIGHT_UNIT) * FeatureEvaluator.WEIGHT_UNIT;
+		}
+		return weights;
+	}
+	
+	/**
+	 * @param weights	the weight of each feature
+	 * @param rows		the features and final score difference of each position
+	 * @return			the root mean square difference between the weighted features and the final score difference
+	 */
+	private static double rmsError(double[] weights, List<double[]> rows) {
+		double sum = 0;
+		for(double[] row : rows) {
+			double error = -row[FeatureEvaluator.NUM_FEATURES];
+			for(int i = 0; i < FeatureEvaluator.NUM_FEATURES; i++) {
+				error += weights[i] * row[i];
+			}
+			sum += error * error;
+		}
+		return Math.sqrt(sum / Math.max(1, rows.size()));
+	}
+}
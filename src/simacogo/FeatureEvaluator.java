@@ -0,0 +1,206 @@
+package simacogo;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+/**
+ * A final class that values a board as a weighted sum of features, for the FEATURES Evaluation.  Every feature is for a
+ * piece, positive when the piece is better off:
+ * <pre>
+ * score		its score minus the opponent's, the only feature of SCORE
+ * potential	how much more it could still score in the empty cells minus the same for the opponent
+ * tempo		1 if it has the next move, -1 otherwise
+ * drops		what it would score by dropping into each column now, minus the same for the opponent, added up
+ * parity		the columns with an odd number of empty cells, whose last cell goes to the side that has the next move,
+ * 				counted for it (times tempo)
+ * heights		the differences of height between neighbouring columns, counted for the side that has the next move
+ * 				(times tempo)
+ * </pre>
+ * The weights are fitted by EvaluationTuner on positions of self-play Games and are kept in multiples of WEIGHT_UNIT
+ * (see TranspositionTable for why it is a power of two).  The weights tuned last are built in;
+ * "-Dsimacogo.weights=FILE" replaces them with a file written by EvaluationTuner.  At the end of the Game the value is
+ * the final score difference whatever the weights.
+ * Cannot be instantiated.
+ * @author Patrick Drucker
+ */
+final class FeatureEvaluator {
+	static final String[] NAMES = {"score", "potential", "tempo", "drops", "parity", "heights"};
+	static final int NUM_FEATURES = NAMES.length;
+	static final double WEIGHT_UNIT = 1.0 / 64;			// the weights are multiples of this
+	static final double[] DEFAULT_WEIGHTS = {1.109375, 0.515625, 3.015625, 0.015625, 0.046875, -0.015625};	// fitted by EvaluationTuner
+	private static final double[] WEIGHTS = weights(System.getProperty("simacogo.weights"));	// the weights in use
+	
+	/**
+	 * Private constructor to prevent instantiation of this class.
+	 */
+	private FeatureEvaluator() {
+	}
+	
+	/**
+	 * Evaluates a board for a piece with the weights in use.
+	 * @param piece		'X' or 'O'
+	 * @param board		the board being searched
+	 * @return			the value of the board for piece
+	 */
+	static double evaluate(char piece, SearchBoard board) {
+		return evaluate(WEIGHTS, piece, board);
+	}
+	
+	/**
+	 * Evaluates a board for a piece.
+	 * @param weights	the weight of each feature, in the order of NAMES
+	 * @param piece		'X' or 'O'
+	 * @param board		the board being searched
+	 * @return			the value of the board for piece
+	 */
+	static double evaluate(double[] weights, char piece, SearchBoard board) {
+		char other = piece == 'X' ? 'O' : 'X';
+		double score = board.score(piece) - board.score(other);
+		if(board.isTerminal()) {
+			return score;
+		}
+		double tempo = board.getNextMovePiece() == piece ? 1 : -1;
+		return weights[0] * score + weights[1] * potential(piece, other, board) + weights[2] * tempo
+				+ weights[3] * drops(piece, other, board) + tempo * (weights[4] * parity(board) + weights[5] * heights(board));
+	}
+	
+	/**
+	 * Computes the features of a board for a piece.
+	 * @param piece		'X' or 'O'
+	 * @param board		the board
+	 * @param features	receives the features, in the order of NAMES
+	 */
+	static void features(char piece, SearchBoard board, double[] features) {
+		char other = piece == 'X' ? 'O' : 'X';
+		double tempo = board.getNextMovePiece() == piece ? 1 : -1;
+		features[0] = board.score(piece) - board.score(other);
+		features[1] = potential(piece, other, board);
+		features[2] = tempo;
+		features[3] = drops(piece, other, board);
+		features[4] = tempo * parity(board);
+		features[5] = tempo * heights(board);
+	}
+	
+	/**
+	 * @param piece		'X' or 'O'
+	 * @param other		the other piece
+	 * @param board		the board
+	 * @return			how much more piece could score in the empty cells, minus the same for other
+	 */
+	private static double potential(char piece, char other, SearchBoard board) {
+		return (board.maxScore(piece) - board.score(piece)) - (board.maxScore(other) - board.score(other));
+	}
+	
+	/**
+	 * @param piece		'X' or 'O'
+	 * @param other		the other piece
+	 * @param board		the board
+	 * @return			what piece would score by dropping into each column that is not full, minus the same for other
+	 */
+	private static double drops(char piece, char other, SearchBoard board) {
+		double drops = 0;
+		for(int col = 0; col < board.getSize().getColumns(); col++) {
+			if(!board.isFull(col)) {
+				drops += board.dropScore(col, piece) - board.dropScore(col, other);
+			}
+		}
+		return drops;
+	}
+	
+	/**
+	 * @param board		the board
+	 * @return			the number of columns with an odd number of empty cells
+	 */
+	private static int parity(SearchBoard board) {
+		int rows = board.getSize().getRows();
+		int parity = 0;
+		for(int col = 0; col < board.getSize().getColumns(); col++) {
+			parity += (rows - board.height(col)) & 1;
+		}
+		return parity;
+	}
+	
+	/**
+	 * @param board		the board
+	 * @return			the differences of height between neighbouring columns, added up
+	 */
+	private static int heights(SearchBoard board) {
+		int heights = 0;
+		for(int col = 1; col < board.getSize().getColumns(); col++) {
+			heights += Math.abs(board.height(col) - board.height(col - 1));
+		}
+		return heights;
+	}
+	
+	/**
+	 * @return			a copy of the weights in use
+	 */
+	static double[] getWeights() {
+		return WEIGHTS.clone();
+	}
+	
+	/**
+	 * Reads the weights in use.
+	 * @param file		a file written by writeWeights; null for DEFAULT_WEIGHTS
+	 * @return			the weights
+	 * @throws IllegalStateException	if the file cannot be read
+	 */
+	private static double[] weights(String file) {
+		if(file == null) {
+			return DEFAULT_WEIGHTS;
+		}
+		try {
+			return readWeights(Paths.get(file));
+		}
+		catch(IOException | IllegalArgumentException e) {
+			throw new IllegalStateException("Cannot read the weights of " + file, e);
+		}
+	}
+	
+	/**
+	 * Reads a file of weights: one "name weight" line per feature.  Features that are not in the file weigh 0.
+	 * @param file		the file
+	 * @return			the weights, in the order of NAMES
+	 * @throws IOException	if the file cannot be read
+	 * @throws IllegalArgumentException	if a line is not the weight of a feature
+	 */
+	static double[] readWeights(Path file) throws IOException {
+		double[] weights = new double[NUM_FEATURES];
+		try(BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+			String line;
+			while((line = reader.readLine()) != null) {
+				String[] words = line.trim().split("\\s+");
+				if(words[0].isEmpty() || words[0].startsWith("#")) {
+					continue;
+				}
+				int feature = Arrays.asList(NAMES).indexOf(words[0]);
+				if(feature < 0 || words.length != 2) {
+					throw new IllegalArgumentException("not a weight: " + line);
+				}
+				weights[feature] = Math.round(Double.parseDouble(words[1]) / WEIGHT_UNIT) * WEIGHT_UNIT;
+			}
+		}
+		return weights;
+	}
+	
+	/**
+	 * Writes a file of weights, to be read by readWeights.
+	 * @param file		the file, replaced if it exists
+	 * @param weights	the weights, in the order of NAMES
+	 * @throws IOException	if the file cannot be written
+	 */
+	static void writeWeights(Path file, double[] weights) throws IOException {
+		try(PrintWriter writer = new PrintWriter(Files.newBufferedWriter(file, StandardCharsets.UTF_8))) {
+			writer.println("# weights of the FEATURES evaluation, written by EvaluationTuner");
+			for(int i = 0; i < NUM_FEATURES; i++) {
+				writer.println(NAMES[i] + " " + weights[i]);
+			}
+		}
+	}
+}
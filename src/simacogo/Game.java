@@ -1,29 +1,27 @@
 package simacogo;
 
+import java.util.Arrays;
+
 /**
  * A class that represents a Game of Simicogo.
+ * Everything about a Game (its players, their pieces, its settings and the computer's search tables) belongs to that
+ * Game, so any number of Games can be played at the same time, each one from one thread at a time.
  * @author Patrick Drucker
  */
 public class Game {
-	static Player[] players;
-	static char[] pieces;
-	static int numPlies;
+	Player[] players;
+	char[] pieces;
+	GameConfig config;
 	State currentState;
+	int[] moves;
+	int numMoves;
 	
 	/**
-	 * Creates a Game with a Human and Computer player.  Initializes Human to player0 and Computer to player1.
-	 * Doesn't initialize numPlies.
+	 * Creates a Game with a Human and Computer player and the default GameConfig.  Initializes Human to player0 and
+	 * Computer to player1.
 	 */
 	public Game() {
-		players = new Player[2];
-		pieces = new char[2];
-		players[0] = new HumanPlayer();
-		players[1] = new ComputerPlayer();
-		pieces[0] = players[0].getPiece();
-		pieces[1] = players[1].getPiece();
-		currentState = new State();
-		players[0].setOpponent(players[1]);
-		players[1].setOpponent(players[0]);
+		this(new GameConfig());
 	}
 	
 	/**
@@ -31,32 +29,38 @@ public class Game {
 	 * @param numPlies 	the number of plies that the computer should search through (depth of minimax algorithm)
 	 */
 	public Game(int numPlies) {
-		//this = new Game();
-		//Game.numPlies = numPlies;
-		
+		this(new GameConfig().withNumPlies(numPlies));
+	}
+	
+	/**
+	 * Creates a Game with a Human and Computer player.  Initializes Human to player0 and Computer to player1.
+	 * @param config 	settings of the computer player's search
+	 */
+	public Game(GameConfig config) {
+		this.config = config;
 		players = new Player[2];
 		pieces = new char[2];
 		players[0] = new HumanPlayer();
-		players[1] = new ComputerPlayer();
+		players[1] = new ComputerPlayer(config);
 		pieces[0] = players[0].getPiece();
 		pieces[1] = players[1].getPiece();
-		currentState = new State();
+		currentState = new State(config.getBoardSize(), pieces[0], pieces[1]);
+		moves = new int[config.getBoardSize().getNumCells()];
 		players[0].setOpponent(players[1]);
 		players[1].setOpponent(players[0]);
-		Game.numPlies = numPlies;
 	}
 	
 	/**
 	 * @return pieces[0] 	the piece of the Player that will move first (Human)
 	 */
-	public static char getFirstMovePiece() {
+	public char getFirstMovePiece() {
 		return pieces[0];
 	}
 	
 	/**
 	 * @return pieces
 	 */
-	public static char[] getPieces() {
+	public char[] getPieces() {
 		return pieces;
 	}
 	
@@ -70,22 +74,29 @@ public class Game {
 	/**
 	 * @return players[0] 	the human player
 	 */
-	public static Player getHumanPlayer() {
+	public Player getHumanPlayer() {
 		return players[0];
 	}
 	
 	/**
 	 * @return players[1] 	the computer player
 	 */
-	public static Player getComputerPlayer() {
+	public Player getComputerPlayer() {
 		return players[1];
 	}
 	
+	/**
+	 * @return config
+	 */
+	public GameConfig getConfig() {
+		return config;
+	}
+	
 	/**
 	 * @return numPlies
 	 */
-	public static int getNumPlies() {
-		return numPlies;
+	public int getNumPlies() {
+		return config.getNumPlies();
 	}
 
 	/**
@@ -95,6 +106,7 @@ public class Game {
 	 */
 	public void takeTurnHuman(Player player, int columnNumber) {
 		currentState = player.dropPiece(currentState, columnNumber);
+		moves[numMoves++] = currentState.getColumnDropped();
 	}
 	
 	/**
@@ -103,6 +115,7 @@ public class Game {
 	 */
 	public void takeTurnComputer(Player player) {
 		currentState = player.dropPiece(currentState, -1);
+		moves[numMoves++] = currentState.getColumnDropped();
 	}
 	
 	/**
@@ -111,4 +124,22 @@ public class Game {
 	public State getCurrentState() {
 		return currentState;
 	}
+	
+	/**
+	 * @return			the columns (0 is the leftmost) dropped into so far, in the order of the moves
+	 */
+	public int[] getMoves() {
+		return Arrays.copyOf(moves, numMoves);
+	}
+	
+	/**
+	 * Stops any threads used by the computer player's search.  The Game cannot be played afterwards.
+	 */
+	public void shutdown() {
+		for(Player player : players) {
+			if(player instanceof ComputerPlayer) {
+				((ComputerPlayer)player).getEngine().shutdown();
+			}
+		}
+	}
 }
@@ -0,0 +1,326 @@
+package simacogo;
+
+/**
+ * The immutable settings of a Game: the size of its grid and how the computer player searches for its moves.
+ * Starts from the defaults and is changed with the with... methods, which return a new GameConfig, so one GameConfig
+ * can be shared by any number of Games.
+ * @author Patrick Drucker
+ */
+public final class GameConfig {
+	private final int numPlies;				// depth of the search
+	private final Algorithm algorithm;		// search algorithm of the computer player
+	private final long moveTimeMillis;		// time budget per move; 0 to search numPlies deep
+	private final int tableSizeMB;			// size of the transposition table in megabytes
+	private final int numThreads;			// threads used by the PARALLEL and MCTS algorithms
+	private final int endgameCells;			// empty cells below which the end of the Game is solved exactly; 0 to never solve
+	private final OpeningBook openingBook;	// book the computer player looks its moves up in before searching; null for none
+	private final boolean monitored;		// true to add the statistics of every search to the SearchMonitor MBean
+	private final Evaluation evaluation;	// values the States at the bottom of the computer player's search tree
+	private final BoardSize boardSize;		// number of rows and columns of the grid
+	private final boolean pondering;		// true to search the replies to the computer player's move while the opponent thinks
+	private final int numPlayouts;			// playouts per move of the MCTS algorithm
+	private final PositionCache positionCache;	// results the computer player looks up before searching and adds to; null for none
+	
+	/**
+	 * Creates a GameConfig with the default settings: a 9x9 grid, alpha-beta search 4 plies deep with a 16 MB
+	 * transposition table, solving the last 16 empty cells exactly, without pondering.
+	 */
+	public GameConfig() {
+		this(4, Algorithm.ALPHA_BETA, 0, AlphaBeta.DEFAULT_TABLE_SIZE_MB, Runtime.getRuntime().availableProcessors(),
+				EndgameSolver.DEFAULT_EMPTY_CELLS, null, false, Evaluation.SCORE, BoardSize.STANDARD, false,
+				MonteCarloTreeSearch.DEFAULT_PLAYOUTS, null);
+	}
+	
+	private GameConfig(int numPlies, Algorithm algorithm, long moveTimeMillis, int tableSizeMB, int numThreads,
+			int endgameCells, OpeningBook openingBook, boolean monitored, Evaluation evaluation,
+			BoardSize boardSize, boolean pondering, int numPlayouts, PositionCache positionCache) {
+		this.numPlies = numPlies;
+		this.algorithm = algorithm;
+		this.moveTimeMillis = moveTimeMillis;
+		this.tableSizeMB = tableSizeMB;
+		this.numThreads = numThreads;
+		this.endgameCells = endgameCells;
+		this.openingBook = openingBook;
+		this.monitored = monitored;
+		this.evaluation = evaluation;
+		this.boardSize = boardSize;
+		this.pondering = pondering;
+		this.numPlayouts = numPlayouts;
+		this.positionCache = positionCache;
+	}
+	
+	/**
+	 * @param numPlies	the number of plies that the computer should search through (depth of minimax algorithm)
+	 * @return			a copy of this GameConfig with numPlies changed
+	 */
+	public GameConfig withNumPlies(int numPlies) {
+		return new GameConfig(numPlies, algorithm, moveTimeMillis, tableSizeMB, numThreads, endgameCells, openingBook,
+				monitored, evaluation, boardSize, pondering, numPlayouts, positionCache);
+	}
+	
+	/**
+	 * @param algorithm	the search algorithm the computer player should use
+	 * @return			a copy of this GameConfig with algorithm changed
+	 */
+	public GameConfig withAlgorithm(Algorithm algorithm) {
+		return new GameConfig(numPlies, algorithm, moveTimeMillis, tableSizeMB, numThreads, endgameCells, openingBook,
+				monitored, evaluation, boardSize, pondering, numPlayouts, positionCache);
+	}
+	
+	/**
+	 * @param moveTimeMillis	the time budget of each computer move in milliseconds; 0 to search numPlies deep.
+	 * 							Only used with the ALPHA_BETA, PARALLEL and MCTS algorithms.
+	 * @return					a copy of this GameConfig with moveTimeMillis changed
+	 */
+	public GameConfig withMoveTimeMillis(long moveTimeMillis) {
+		return new GameConfig(numPlies, algorithm, moveTimeMillis, tableSizeMB, numThreads, endgameCells, openingBook,
+				monitored, evaluation, boardSize, pondering, numPlayouts, positionCache);
+	}
+	
+	/**
+	 * @param tableSizeMB	size of the transposition table in megabytes (0 for a minimal table)
+	 * @return				a copy of this GameConfig with tableSizeMB changed
+	 */
+	public GameConfig withTableSizeMB(int tableSizeMB) {
+		return new GameConfig(numPlies, algorithm, moveTimeMillis, tableSizeMB, numThreads, endgameCells, openingBook,
+				monitored, evaluation, boardSize, pondering, numPlayouts, positionCache);
+	}
+	
+	/**
+	 * @param numThreads	the number of threads used by the PARALLEL and MCTS algorithms
+	 * @return				a copy of this GameConfig with numThreads changed
+	 */
+	public GameConfig withNumThreads(int numThreads) {
+		return new GameConfig(numPlies, algorithm, moveTimeMillis, tableSizeMB, numThreads, endgameCells, openingBook,
+				monitored, evaluation, boardSize, pondering, numPlayouts, positionCache);
+	}
+	
+	/**
+	 * @param endgameCells	the number of empty cells at or below which the computer player solves the rest of the Game
+	 * 						exactly instead of searching; 0 to never solve
+	 * @return				a copy of this GameConfig with endgameCells changed
+	 */
+	public GameConfig withEndgameCells(int endgameCells) {
+		return new GameConfig(numPlies, algorithm, moveTimeMillis, tableSizeMB, numThreads, endgameCells, openingBook,
+				monitored, evaluation, boardSize, pondering, numPlayouts, positionCache);
+	}
+	
+	/**
+	 * @param openingBook	the book the computer player looks its moves up in before searching; null for none
+	 * @return				a copy of this GameConfig with openingBook changed
+	 */
+	public GameConfig withOpeningBook(OpeningBook openingBook) {
+		return new GameConfig(numPlies, algorithm, moveTimeMillis, tableSizeMB, numThreads, endgameCells, openingBook,
+				monitored, evaluation, boardSize, pondering, numPlayouts, positionCache);
+	}
+	
+	/**
+	 * @param monitored		true to add the statistics of every search to the SearchMonitor MBean (see Engine)
+	 * @return				a copy of this GameConfig with monitored changed
+	 */
+	public GameConfig withMonitoring(boolean monitored) {
+		return new GameConfig(numPlies, algorithm, moveTimeMillis, tableSizeMB, numThreads, endgameCells, openingBook,
+				monitored, evaluation, boardSize, pondering, numPlayouts, positionCache);
+	}
+	
+	/**
+	 * @param evaluation	how the computer player values the States at the bottom of its search tree
+	 * @return				a copy of this GameConfig with evaluation changed
+	 */
+	public GameConfig withEvaluation(Evaluation evaluation) {
+		return new GameConfig(numPlies, algorithm, moveTimeMillis, tableSizeMB, numThreads, endgameCells, openingBook,
+				monitored, evaluation, boardSize, pondering, numPlayouts, positionCache);
+	}
+	
+	/**
+	 * @param boardSize		the number of rows and columns of the grid
+	 * @return				a copy of this GameConfig with boardSize changed
+	 */
+	public GameConfig withBoardSize(BoardSize boardSize) {
+		return new GameConfig(numPlies, algorithm, moveTimeMillis, tableSizeMB, numThreads, endgameCells, openingBook,
+				monitored, evaluation, boardSize, pondering, numPlayouts, positionCache);
+	}
+	
+	/**
+	 * @param pondering		true to search the replies to the computer player's move while the opponent thinks (see Engine)
+	 * @return				a copy of this GameConfig with pondering changed
+	 */
+	public GameConfig withPondering(boolean pondering) {
+		return new GameConfig(numPlies, algorithm, moveTimeMillis, tableSizeMB, numThreads, endgameCells, openingBook,
+				monitored, evaluation, boardSize, pondering, numPlayouts, positionCache);
+	}
+	
+	/**
+	 * @param numPlayouts	the number of playouts of each move of the MCTS algorithm, when it has no time budget
+	 * @return				a copy of this GameConfig with numPlayouts changed
+	 */
+	public GameConfig withNumPlayouts(int numPlayouts) {
+		return new GameConfig(numPlies, algorithm, moveTimeMillis, tableSizeMB, numThreads, endgameCells, openingBook,
+				monitored, evaluation, boardSize, pondering, numPlayouts, positionCache);
+	}
+	
+	/**
+	 * @param positionCache	the cache of results the computer player looks up before searching and adds its results to;
+	 * 						null for none
+	 * @return				a copy of this GameConfig with positionCache changed
+	 */
+	public GameConfig withPositionCache(PositionCache positionCache) {
+		return new GameConfig(numPlies, algorithm, moveTimeMillis, tableSizeMB, numThreads, endgameCells, openingBook,
+				monitored, evaluation, boardSize, pondering, numPlayouts, positionCache);
+	}
+	
+	/**
+	 * @return numPlies
+	 */
+	public int getNumPlies() {
+		return numPlies;
+	}
+	
+	/**
+	 * @return algorithm
+	 */
+	public Algorithm getAlgorithm() {
+		return algorithm;
+	}
+	
+	/**
+	 * @return moveTimeMillis
+	 */
+	public long getMoveTimeMillis() {
+		return moveTimeMillis;
+	}
+	
+	/**
+	 * @return tableSizeMB
+	 */
+	public int getTableSizeMB() {
+		return tableSizeMB;
+	}
+	
+	/**
+	 * @return numThreads
+	 */
+	public int getNumThreads() {
+		return numThreads;
+	}
+	
+	/**
+	 * @return endgameCells
+	 */
+	public int getEndgameCells() {
+		return endgameCells;
+	}
+	
+	/**
+	 * @return openingBook
+	 */
+	public OpeningBook getOpeningBook() {
+		return openingBook;
+	}
+	
+	/**
+	 * @return positionCache
+	 */
+	public PositionCache getPositionCache() {
+		return positionCache;
+	}
+	
+	/**
+	 * @return monitored
+	 */
+	public boolean isMonitored() {
+		return monitored;
+	}
+	
+	/**
+	 * @return evaluation
+	 */
+	public Evaluation getEvaluation() {
+		return evaluation;
+	}
+	
+	/**
+	 * @return boardSize
+	 */
+	public BoardSize getBoardSize() {
+		return boardSize;
+	}
+	
+	/**
+	 * @return pondering
+	 */
+	public boolean isPondering() {
+		return pondering;
+	}
+	
+	/**
+	 * @return numPlayouts
+	 */
+	public int getNumPlayouts() {
+		return numPlayouts;
+	}
+	
+	/**
+	 * Reads the settings from command line arguments: "-plies N", "-algorithm NAME", "-time MS", "-hash MB",
+	 * "-threads N", "-endgame N", "-eval NAME", "-size ROWSxCOLUMNS", "-ponder on|off", "-playouts N" and
+	 * "-jmx" (monitoring on).  Other arguments are ignored; the opening book is read by Simacogo and the position
+	 * cache by PositionCache.fromArguments.  The NEURAL Evaluation is only accepted on a grid that it has a network for.
+	 * @param args		the command line arguments
+	 * @return			a copy of this GameConfig with the given settings changed
+	 * @throws IllegalArgumentException	if a setting is unknown, or there is no network for NEURAL on the grid
+	 */
+	public GameConfig withArguments(String[] args) {
+		GameConfig config = this;
+		for(int i = 0; i < args.length; i++) {
+			if(args[i].equals("-jmx")) {
+				config = config.withMonitoring(true);
+			}
+		}
+		for(int i = 0; i + 1 < args.length; i++) {
+			if(args[i].equals("-plies")) {
+				config = config.withNumPlies(Integer.parseInt(args[i+1]));
+			}
+			else if(args[i].equals("-algorithm")) {
+				config = config.withAlgorithm(Algorithm.valueOf(args[i+1].toUpperCase()));
+			}
+			else if(args[i].equals("-time")) {
+				config = config.withMoveTimeMillis(Long.parseLong(args[i+1]));
+			}
+			else if(args[i].equals("-hash")) {
+				config = config.withTableSizeMB(Integer.parseInt(args[i+1]));
+			}
+			else if(args[i].equals("-threads")) {
+				config = config.withNumThreads(Integer.parseInt(args[i+1]));
+			}
+			else if(args[i].equals("-endgame")) {
+				config = config.withEndgameCells(Integer.parseInt(args[i+1]));
+			}
+			else if(args[i].equals("-eval")) {
+				config = config.withEvaluation(Evaluation.valueOf(args[i+1].toUpperCase()));
+			}
+			else if(args[i].equals("-size")) {
+				config = config.withBoardSize(BoardSize.parse(args[i+1]));
+			}
+			else if(args[i].equals("-playouts")) {
+				config = config.withNumPlayouts(Integer.parseInt(args[i+1]));
+			}
+			else if(args[i].equals("-ponder")) {
+				config = config.withPondering(args[i+1].equalsIgnoreCase("on"));
+			}
+		}
+		if(config.evaluation == Evaluation.NEURAL && !NeuralNetwork.hasDefault(config.boardSize)) {
+			throw new IllegalArgumentException(NeuralNetwork.noNetwork(config.boardSize));
+		}
+		return config;
+	}
+	
+	/* (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	public String toString() {
+		return algorithm + (moveTimeMillis > 0 ? " " + moveTimeMillis + " ms/move"
+				: algorithm == Algorithm.MCTS ? " " + numPlayouts + " playouts" : " " + numPlies + "-ply")
+				+ (evaluation == Evaluation.SCORE ? "" : " " + evaluation)
+				+ (boardSize == BoardSize.STANDARD ? "" : " on " + boardSize) + (pondering ? " pondering" : "");
+	}
+}
@@ -0,0 +1,196 @@
+package simacogo;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Converts text logs of Games, as printed by PrintGame with State.toString after every move, to game records.  The
+ * boards of a log are the blocks of lines made of nothing but '.', 'X' and 'O' separated by spaces; every other line is
+ * skipped.  A board that has one more piece than the board before it, on top of one of its columns, is the next move of
+ * the same Game, and a board that is printed twice is skipped.  Any other board ends the Game before it and starts a
+ * new one, which must start from an empty board or a board with a single piece, as the order of the moves cannot be
+ * told from a board with more.  Boards that cannot be placed in a Game are reported and skipped.
+ * The options are written into every record as the settings of the computer's search, e.g. "-plies 6"; the size of
+ * the grid of each Game is that of its boards.
+ * Usage: GameRecordConverter in.txt out.games [options]
+ * @author Patrick Drucker
+ */
+public class GameRecordConverter {
+	private final GameRecordWriter writer;		// writes the Games
+	private final GameConfig config;			// the settings of the computer's search
+	private String[] board;						// the last board of the Game being read; null between Games
+	private char firstMovePiece;				// the piece that moved first in the Game being read
+	private final int[] moves = new int[BoardSize.MAX_CELLS];	// the columns of the moves of the Game being read
+	private int numMoves;						// the number of moves of the Game being read
+	private long numSkipped;					// the number of boards skipped
+	
+	/**
+	 * Creates a GameRecordConverter.
+	 * @param writer	writes the Games
+	 * @param config	the settings of the computer's search
+	 */
+	GameRecordConverter(GameRecordWriter writer, GameConfig config) {
+		this.writer = writer;
+		this.config = config;
+	}
+	
+	/**
+	 * Converts a log and prints the number of Games written.
+	 * @param args
+	 * @throws IOException
+	 */
+	public static void main(String[] args) throws IOException {
+		if(args.length < 2) {
+			System.out.println("Usage: GameRecordConverter in.txt out.games [options]");
+			return;
+		}
+		GameConfig config = new GameConfig().withArguments(args);
+		try(BufferedReader reader = Files.newBufferedReader(Paths.get(args[0]), StandardCharsets.UTF_8);
+				GameRecordWriter writer = new GameRecordWriter(Files.newOutputStream(Paths.get(args[1])))) {
+			GameRecordConverter converter = new GameRecordConverter(writer, config);
+			List<String> rows = new ArrayList<String>();
+			String line;
+			while((line = reader.readLine()) != null) {
+				String row = row(line);
+				if(row != null) {
+					rows.add(row);
+				}
+				else if(!rows.isEmpty()) {
+					converter.add(rows.toArray(new String[rows.size()]));
+					rows.clear();
+				}
+			}
+			if(!rows.isEmpty()) {
+				converter.add(rows.toArray(new String[rows.size()]));
+			}
+			converter.endGame();
+			System.out.println("Wrote " + writer.getNumRecords() + " games to " + args[1] + ", skipped "
+					+ converter.numSkipped + " boards");
+		}
+	}
+	
+	/**
+	 * @param line		a line of a log
+	 * @return			the pieces of the line without the spaces if it is a row of a board; null otherwise
+	 */
+	static String row(String line) {
+		String trimmed = line.trim();
+		if(trimmed.isEmpty()) {
+			return null;
+		}
+		StringBuilder row = new StringBuilder(trimmed.length() / 2 + 1);
+		for(int i = 0; i < trimmed.length(); i++) {
+			char c = trimmed.charAt(i);
+			if(i % 2 == 1 ? c != ' ' : c != '.' && c != 'X' && c != 'O') {
+				return null;
+			}
+			if(i % 2 == 0) {
+				row.append(c);
+			}
+		}
+		return row.toString();
+	}
+	
+	/**
+	 * Adds the next board of the log: the next move of the Game being read, or the start of a new Game.
+	 * @param rows		the rows of the board, top row first
+	 * @throws IOException	if a Game cannot be written
+	 */
+	void add(String[] rows) throws IOException {
+		int column = board == null ? -2 : move(board, rows);
+		if(column == -1) {
+			return;			// printed twice
+		}
+		if(column >= 0) {
+			if(numMoves == 0) {
+				firstMovePiece = pieceAt(rows, column);
+			}
+			moves[numMoves++] = column;
+			board = rows;
+			return;
+		}
+		endGame();
+		int numPieces = 0;
+		for(int row = 0; row < rows.length; row++) {
+			for(int col = 0; col < rows[row].length(); col++) {
+				if(rows[row].charAt(col) != '.') {
+					numPieces++;
+					firstMovePiece = rows[row].charAt(col);
+					moves[0] = col;
+				}
+			}
+		}
+		if(numPieces > 1 || numPieces == 1 && rows[rows.length - 1].charAt(moves[0]) == '.'
+				|| rows.length > BoardSize.MAX_ROWS || rows[0].length() > BoardSize.MAX_COLUMNS) {
+			System.err.println("Skipped a board that does not start a game:\n" + String.join("\n", rows));
+			numSkipped++;
+			return;
+		}
+		board = rows;
+		numMoves = numPieces;
+		if(numPieces == 0) {
+			firstMovePiece = 'O';		// until the first move says otherwise
+		}
+	}
+	
+	/**
+	 * Finds the move between two boards.
+	 * @param before	the rows of a board
+	 * @param after		the rows of the board after it
+	 * @return			the column of the piece added on top of a column of before by the piece that has the next move,
+	 * 					either piece on an empty board; -1 if the boards are the same; -2 if after does not follow before
+	 */
+	private int move(String[] before, String[] after) {
+		if(before.length != after.length || before[0].length() != after[0].length()) {
+			return -2;
+		}
+		char piece = numMoves == 0 ? '.' : numMoves % 2 == 0 ? firstMovePiece : firstMovePiece == 'O' ? 'X' : 'O';
+		int column = -1;
+		for(int row = 0; row < before.length; row++) {
+			if(after[row].length() != before[row].length()) {
+				return -2;
+			}
+			for(int col = 0; col < before[row].length(); col++) {
+				if(before[row].charAt(col) == after[row].charAt(col)) {
+					continue;
+				}
+				if(column >= 0 || before[row].charAt(col) != '.'
+						|| piece != '.' && after[row].charAt(col) != piece
+						|| row + 1 < before.length && before[row + 1].charAt(col) == '.') {
+					return -2;
+				}
+				column = col;
+			}
+		}
+		return column;
+	}
+	
+	/**
+	 * @param rows		the rows of a board
+	 * @param col		a column of the board that is not empty
+	 * @return			the piece on top of the column
+	 */
+	private static char pieceAt(String[] rows, int col) {
+		int row = 0;
+		while(rows[row].charAt(col) == '.') {
+			row++;
+		}
+		return rows[row].charAt(col);
+	}
+	
+	/**
+	 * Writes the Game being read, if there is one.
+	 * @throws IOException	if the Game cannot be written
+	 */
+	void endGame() throws IOException {
+		if(board != null) {
+			writer.write(config.withBoardSize(BoardSize.of(board.length, board[0].length())), firstMovePiece, moves, numMoves);
+			board = null;
+		}
+	}
+}
@@ -0,0 +1,175 @@
+package simacogo;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reads a stream of game records written by GameRecordWriter, one record at a time, so streams of any length can be
+ * read in the same memory.  next reads the following record into the reader, which reuses its buffers for every
+ * record, and the getters describe the record read last.  replay plays a record on a SearchBoard, so millions of Games
+ * can be replayed without creating a State per move.
+ * Every record is checked as it is read: a column outside the grid or a move into a full column is an IOException.
+ * @author Patrick Drucker
+ */
+public class GameRecordReader implements Closeable {
+	private final DataInputStream in;				// the stream of records
+	private final byte[] packed = new byte[BoardSize.MAX_CELLS];	// the packed moves of the record
+	private final int[] heights = new int[BoardSize.MAX_COLUMNS];	// heights of the columns, to check the moves
+	private State initialO;							// the initial State of the grid of the record with 'O' moving first
+	private State initialX;							// the initial State of the grid of the record with 'X' moving first
+	private BoardSize size;							// the size of the grid of the record
+	private char firstMovePiece;					// the piece that moved first
+	private Algorithm algorithm;					// the computer's search
+	private Evaluation evaluation;					// the computer's evaluation
+	private int numPlies;							// the depth of the computer's search
+	private long moveTimeMillis;					// the time budget per move; 0 for a fixed depth
+	private int numMoves;							// the number of moves of the record
+	private boolean wide;							// true if the moves are stored in 8 bits
+	
+	/**
+	 * Creates a GameRecordReader and reads the start of the stream.
+	 * @param in			the stream, which the reader buffers and closes
+	 * @throws IOException	if the stream is not a stream of game records
+	 */
+	public GameRecordReader(InputStream in) throws IOException {
+		this.in = new DataInputStream(new BufferedInputStream(in));
+		if(this.in.readInt() != GameRecordWriter.MAGIC) {
+			throw new IOException("Not a stream of game records");
+		}
+		int version = this.in.readUnsignedByte();
+		if(version != GameRecordWriter.VERSION) {
+			throw new IOException("Game records of version " + version + ", expected " + GameRecordWriter.VERSION);
+		}
+	}
+	
+	/**
+	 * Reads the next record.
+	 * @return true			if a record was read; false at the end of the stream
+	 * @throws IOException	if the stream cannot be read or the record is not a Game
+	 */
+	public boolean next() throws IOException {
+		int flags = in.read();
+		if(flags < 0) {
+			return false;
+		}
+		try {
+			int rows = in.readUnsignedByte();
+			int columns = in.readUnsignedByte();
+			BoardSize recordSize = BoardSize.of(rows, columns);
+			if(recordSize != size) {
+				size = recordSize;
+				initialO = new State(size, 'O', 'X');
+				initialX = new State(size, 'X', 'O');
+			}
+			firstMovePiece = (flags & GameRecordWriter.X_FIRST) != 0 ? 'X' : 'O';
+			algorithm = Algorithm.values()[in.readUnsignedByte()];
+			evaluation = Evaluation.values()[in.readUnsignedByte()];
+			numPlies = in.readUnsignedShort();
+			moveTimeMillis = in.readInt();
+			numMoves = in.readUnsignedShort();
+			wide = (flags & GameRecordWriter.WIDE_MOVES) != 0;
+			if(numMoves > size.getNumCells()) {
+				throw new IOException(numMoves + " moves on a " + size + " grid");
+			}
+			in.readFully(packed, 0, wide ? numMoves : (numMoves + 1) / 2);
+		}
+		catch(EOFException e) {
+			throw new IOException("Record cut short", e);
+		}
+		catch(IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+			throw new IOException("Not a game record", e);
+		}
+		for(int col = 0; col < size.getColumns(); col++) {
+			heights[col] = 0;
+		}
+		for(int i = 0; i < numMoves; i++) {
+			int col = getColumn(i);
+			if(col >= size.getColumns() || heights[col]++ == size.getRows()) {
+				throw new IOException("Move " + (i + 1) + " into column " + (col + 1) + " is not possible");
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * @param move		the number of a move of the record, from 0
+	 * @return			the column (0 is the leftmost) of the move
+	 */
+	public int getColumn(int move) {
+		if(wide) {
+			return packed[move] & 0xFF;
+		}
+		return (move % 2 == 0 ? packed[move / 2] >>> 4 : packed[move / 2]) & 0x0F;
+	}
+	
+	/**
+	 * Plays the moves of the record on a SearchBoard, from the initial State.
+	 * @param board		the board, which is set to the initial State first
+	 */
+	public void replay(SearchBoard board) {
+		board.set(getInitialState());
+		for(int i = 0; i < numMoves; i++) {
+			board.makeMove(getColumn(i));
+		}
+	}
+	
+	/**
+	 * Plays the moves of the record on States.  Slower than replay, as it creates a State per move.
+	 * @return			the State at the end of the record
+	 */
+	public State toState() {
+		State state = getInitialState();
+		for(int i = 0; i < numMoves; i++) {
+			state = state.dropPiece(getColumn(i));
+		}
+		return state;
+	}
+	
+	/**
+	 * @return			the State the Game of the record started from
+	 */
+	public State getInitialState() {
+		return firstMovePiece == 'X' ? initialX : initialO;
+	}
+	
+	/**
+	 * @return			the settings of the Game of the record: its size and the computer's search
+	 */
+	public GameConfig getConfig() {
+		return new GameConfig().withBoardSize(size).withAlgorithm(algorithm).withEvaluation(evaluation)
+				.withNumPlies(numPlies).withMoveTimeMillis(moveTimeMillis);
+	}
+	
+	/**
+	 * @return size		the size of the grid of the record
+	 */
+	public BoardSize getSize() {
+		return size;
+	}
+	
+	/**
+	 * @return firstMovePiece	the piece that moved first
+	 */
+	public char getFirstMovePiece() {
+		return firstMovePiece;
+	}
+	
+	/**
+	 * @return numMoves	the number of moves of the record
+	 */
+	public int getNumMoves() {
+		return numMoves;
+	}
+	
+	/* (non-Javadoc)
+	 * @see java.io.Closeable#close()
+	 */
+	@Override
+	public void close() throws IOException {
+		in.close();
+	}
+}
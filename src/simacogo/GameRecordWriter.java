@@ -0,0 +1,147 @@
+package simacogo;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes Games to a stream of game records, to be read back by GameRecordReader.  A record stores a Game as the
+ * columns of its moves rather than as its positions, packed at 4 bits per move on grids of up to 16 columns and at 8
+ * bits on wider ones, behind a small header:
+ * <pre>
+ * flags			1 byte		bit 0: 'X' moved first; bit 1: 8 bits per move
+ * rows, columns	2 bytes		the size of the grid
+ * algorithm		1 byte		the computer's search (ordinal of Algorithm)
+ * evaluation		1 byte		ordinal of Evaluation
+ * plies			2 bytes		the depth of the search
+ * time				4 bytes		the time budget per move in milliseconds; 0 for a fixed depth
+ * moves			2 bytes		the number of moves
+ * columns			the columns of the moves, 0 is the leftmost, the first move in the high bits of the first byte
+ * </pre>
+ * A Game of 9x9 takes 54 bytes.  The stream starts with MAGIC and VERSION, so a reader can tell what it is reading.
+ * A file of records can be added to with append, which writes them only if the file is empty.
+ * @author Patrick Drucker
+ */
+public class GameRecordWriter implements Closeable, Flushable {
+	static final int MAGIC = 0x534D4347;			// "SMCG", the first four bytes of a stream of game records
+	static final int VERSION = 1;					// version of the format
+	static final int X_FIRST = 1;					// flag: 'X' moved first
+	static final int WIDE_MOVES = 2;				// flag: 8 bits per move
+	static final int NARROW_COLUMNS = 16;			// the most columns whose moves are stored in 4 bits
+	private final DataOutputStream out;				// the stream of records
+	private final byte[] packed = new byte[BoardSize.MAX_CELLS];	// the packed moves of a record
+	private long numRecords;						// the number of records written
+	
+	/**
+	 * Creates a GameRecordWriter and writes the start of the stream.
+	 * @param out			the stream, which the writer buffers and closes
+	 * @throws IOException	if the stream cannot be written
+	 */
+	public GameRecordWriter(OutputStream out) throws IOException {
+		this(out, true);
+	}
+	
+	/**
+	 * Creates a GameRecordWriter.
+	 * @param out			the stream, which the writer buffers and closes
+	 * @param start			true to write the start of the stream; false if the stream goes on after earlier records
+	 * @throws IOException	if the stream cannot be written
+	 */
+	private GameRecordWriter(OutputStream out, boolean start) throws IOException {
+		this.out = new DataOutputStream(new BufferedOutputStream(out));
+		if(start) {
+			this.out.writeInt(MAGIC);
+			this.out.writeByte(VERSION);
+		}
+	}
+	
+	/**
+	 * Creates a GameRecordWriter that adds records to the end of a file, keeping the records that are already in it.
+	 * The start of the stream is only written if the file is new or empty.
+	 * @param file			the file of game records
+	 * @return				the writer
+	 * @throws IOException	if the file cannot be written, or is not empty and not a stream of game records
+	 */
+	public static GameRecordWriter append(Path file) throws IOException {
+		boolean empty = !Files.exists(file) || Files.size(file) == 0;
+		if(!empty) {
+			// reads the start of the stream, so that records of another version are not appended to it
+			new GameRecordReader(Files.newInputStream(file)).close();
+		}
+		return new GameRecordWriter(Files.newOutputStream(file, StandardOpenOption.CREATE, StandardOpenOption.APPEND),
+				empty);
+	}
+	
+	/**
+	 * Writes a Game as it is now: finished or not.
+	 * @param game			the Game
+	 * @throws IOException	if the stream cannot be written
+	 */
+	public void write(Game game) throws IOException {
+		int[] moves = game.getMoves();
+		write(game.getConfig(), game.getFirstMovePiece(), moves, moves.length);
+	}
+	
+	/**
+	 * Writes a record.
+	 * @param config			the settings of the Game: its size and the computer's search
+	 * @param firstMovePiece	the piece that moved first
+	 * @param columns			the columns (0 is the leftmost) of the moves, in order
+	 * @param numMoves			the number of moves
+	 * @throws IOException		if the stream cannot be written
+	 */
+	public void write(GameConfig config, char firstMovePiece, int[] columns, int numMoves) throws IOException {
+		BoardSize size = config.getBoardSize();
+		boolean wide = size.getColumns() > NARROW_COLUMNS;
+		out.writeByte((firstMovePiece == 'X' ? X_FIRST : 0) | (wide ? WIDE_MOVES : 0));
+		out.writeByte(size.getRows());
+		out.writeByte(size.getColumns());
+		out.writeByte(config.getAlgorithm().ordinal());
+		out.writeByte(config.getEvaluation().ordinal());
+		out.writeShort(config.getNumPlies());
+		out.writeInt((int)config.getMoveTimeMillis());
+		out.writeShort(numMoves);
+		if(wide) {
+			for(int i = 0; i < numMoves; i++) {
+				packed[i] = (byte)columns[i];
+			}
+			out.write(packed, 0, numMoves);
+		}
+		else {
+			for(int i = 0; i < numMoves; i += 2) {
+				packed[i / 2] = (byte)(columns[i] << 4 | (i + 1 < numMoves ? columns[i + 1] : 0));
+			}
+			out.write(packed, 0, (numMoves + 1) / 2);
+		}
+		numRecords++;
+	}
+	
+	/**
+	 * @return			the number of records written
+	 */
+	public long getNumRecords() {
+		return numRecords;
+	}
+	
+	/* (non-Javadoc)
+	 * @see java.io.Flushable#flush()
+	 */
+	@Override
+	public void flush() throws IOException {
+		out.flush();
+	}
+	
+	/* (non-Javadoc)
+	 * @see java.io.Closeable#close()
+	 */
+	@Override
+	public void close() throws IOException {
+		out.close();
+	}
+}
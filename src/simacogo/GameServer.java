@@ -0,0 +1,316 @@
+package simacogo;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Serves Games of Simacogo to any number of players over TCP, with a line-based protocol.  Every request is one line
+ * and gets one line back:
+ * <pre>
+ * NEW [options]		starts a Game with the human moving first		GAME id
+ * DROP id column		drops the human's piece (column 1-9 on 9x9)		MOVE computerColumn humanScore computerScore [OVER]
+ * BOARD id				the board, top row first						BOARD row/row/.../row
+ * END id				ends a Game										OK
+ * QUIT					closes the connection							BYE
+ * </pre>
+ * The options of NEW choose the computer's search (see GameConfig.withArguments); every other setting comes from the
+ * server.  A request that cannot be carried out gets "ERROR message"; a Game whose search fails is ended.
+ * Usage: GameServer [-port N] [-searchThreads N] [-record FILE] [-cache FILE [-cacheMB N]] [options]
+ * @author Patrick Drucker
+ */
+public class GameServer {
+	static final int DEFAULT_PORT = 4000;
+	private static final int DEFAULT_TABLE_SIZE_MB = 1;	// small, as every Game of every connection has its own tables
+	static final int MAX_GAMES = 16;					// Games a connection can have at once
+	private final ServerSocket serverSocket;
+	private final GameConfig config;					// settings of new Games, and the largest table they may ask for
+	private final ExecutorService connections;			// one thread per connection, virtual when the JVM has them
+	private final ExecutorService searches;				// the threads that run the computer players' searches, so a
+														// slow client never holds one
+	private final Set<Socket> sockets;					// the open connections, closed with the server
+	private GameRecordWriter recorder;					// writes the Games that end; null if they are not recorded
+	
+	/**
+	 * Creates a GameServer and opens its port.  Nothing is served until serve is called.
+	 * @param port				the TCP port; 0 for any free port
+	 * @param config			settings of new Games
+	 * @param numSearchThreads	the number of searches that can run at once
+	 * @throws IOException		if the port cannot be opened
+	 */
+	public GameServer(int port, GameConfig config, int numSearchThreads) throws IOException {
+		this.serverSocket = new ServerSocket(port);
+		this.config = config;
+		this.connections = Threads.newPerTaskExecutor();
+		this.searches = Executors.newFixedThreadPool(numSearchThreads);
+		this.sockets = ConcurrentHashMap.newKeySet();
+	}
+	
+	/**
+	 * Accepts connections until the server is closed.
+	 * @throws IOException	if accepting fails for any other reason
+	 */
+	public void serve() throws IOException {
+		try {
+			while(true) {
+				Socket socket = serverSocket.accept();
+				sockets.add(socket);
+				connections.execute(() -> handle(socket));
+			}
+		}
+		catch(SocketException e) {
+			if(!serverSocket.isClosed()) {
+				throw e;
+			}
+		}
+	}
+	
+	/**
+	 * Stops accepting connections and stops the threads of the server.  Open connections are closed, which also wakes
+	 * the platform threads that are waiting for their requests, as interrupting them does not.
+	 * @throws IOException
+	 */
+	public void close() throws IOException {
+		serverSocket.close();
+		for(Socket socket : sockets) {
+			socket.close();
+		}
+		connections.shutdownNow();
+		searches.shutdownNow();
+		synchronized(this) {
+			if(recorder != null) {
+				recorder.close();
+			}
+		}
+	}
+	
+	/**
+	 * Writes every Game that ends from now on, finished or not.  The writer is closed with the server.
+	 * @param recorder	writes the Games; null to stop recording
+	 */
+	public synchronized void setRecorder(GameRecordWriter recorder) {
+		this.recorder = recorder;
+	}
+	
+	/**
+	 * @return			the TCP port the server listens on
+	 */
+	public int getPort() {
+		return serverSocket.getLocalPort();
+	}
+	
+	/**
+	 * @return			true if connections are served on virtual threads
+	 */
+	public boolean usesVirtualThreads() {
+		return Threads.isVirtual(connections);
+	}
+	
+	/**
+	 * Answers the requests of one connection until it sends QUIT or is closed, then ends its Games, which belong to it.
+	 * @param socket	the connection
+	 */
+	private void handle(Socket socket) {
+		Map<Integer, Game> games = new HashMap<Integer, Game>();
+		try(Socket s = socket;
+				BufferedReader in = new BufferedReader(new InputStreamReader(s.getInputStream(), StandardCharsets.UTF_8));
+				PrintWriter out = new PrintWriter(s.getOutputStream(), true)) {
+			String line;
+			while((line = in.readLine()) != null) {
+				String reply;
+				try {
+					reply = execute(line.trim().split("\\s+"), games);
+				}
+				catch(IllegalArgumentException e) {
+					reply = "ERROR " + e.getMessage();
+				}
+				out.println(reply);
+				if(reply.equals("BYE")) {
+					break;
+				}
+			}
+		}
+		catch(IOException | InterruptedException e) {
+			// the client went away or the server is closing; either way the connection is over
+		}
+		finally {
+			sockets.remove(socket);
+			for(Game game : games.values()) {
+				end(game);
+			}
+		}
+	}
+	
+	/**
+	 * Carries out one request.  The computer column of MOVE is 0 if the human's drop ended the Game.
+	 * @param request	the words of the request
+	 * @param games		the Games of the connection, by id
+	 * @return			the reply
+	 * @throws InterruptedException	if the server is closed while the computer is searching
+	 * @throws IllegalArgumentException	if the request cannot be carried out
+	 */
+	private String execute(String[] request, Map<Integer, Game> games) throws InterruptedException {
+		switch(request[0].toUpperCase()) {
+		case "NEW":
+			GameConfig gameConfig = config.withArguments(Arrays.copyOfRange(request, 1, request.length));
+			// every search runs on one of the search threads, so that no more run at once than there are processors
+			if(gameConfig.getAlgorithm() == Algorithm.PARALLEL) {
+				throw new IllegalArgumentException("parallel search is not served");
+			}
+			if(gameConfig.isPondering()) {
+				throw new IllegalArgumentException("pondering is not served");
+			}
+			if(gameConfig.getAlgorithm() == Algorithm.MCTS) {
+				gameConfig = gameConfig.withNumThreads(1);
+			}
+			if(gameConfig.getTableSizeMB() > config.getTableSizeMB()) {
+				throw new IllegalArgumentException("tables are at most " + config.getTableSizeMB() + " MB");
+			}
+			if(games.size() >= MAX_GAMES) {
+				throw new IllegalArgumentException("at most " + MAX_GAMES + " games per connection");
+			}
+			int id = games.size() + 1;
+			while(games.containsKey(id)) {
+				id++;
+			}
+			games.put(id, new Game(gameConfig));
+			return "GAME " + id;
+		case "DROP":
+			Game game = game(request, games);
+			int column = request.length > 2 ? parseInt(request[2]) : 0;
+			if(column < 1 || column > game.getCurrentState().getSize().getColumns()
+					|| !game.getCurrentState().columnIsAvailable(column)) {
+				throw new IllegalArgumentException("column " + column + " is not available");
+			}
+			game.takeTurnHuman(game.getHumanPlayer(), column);
+			int computerColumn = 0;
+			if(!game.getCurrentState().isTerminalState()) {
+				try {
+					// the connection's thread only waits here, so it never runs a search itself
+					searches.submit(() -> game.takeTurnComputer(game.getComputerPlayer())).get();
+				}
+				catch(ExecutionException e) {
+					// the computer did not move, so the Game cannot go on
+					System.err.println("A search failed: " + e.getCause());
+					end(game);
+					games.remove(parseInt(request[1]));
+					throw new IllegalArgumentException("search failed, game " + request[1] + " ended: " + e.getCause());
+				}
+				computerColumn = game.getCurrentState().getColumnDropped() + 1;
+			}
+			State state = game.getCurrentState();
+			return "MOVE " + computerColumn + " " + (int)state.score(game.getHumanPlayer().getPiece()) + " "
+					+ (int)state.score(game.getComputerPlayer().getPiece()) + (state.isTerminalState() ? " OVER" : "");
+		case "BOARD":
+			StringBuilder board = new StringBuilder("BOARD ");
+			for(char[] row : game(request, games).getCurrentState().getGrid()) {
+				board.append(row).append('/');
+			}
+			return board.substring(0, board.length() - 1);
+		case "END":
+			end(game(request, games));
+			games.remove(parseInt(request[1]));
+			return "OK";
+		case "QUIT":
+			return "BYE";
+		default:
+			throw new IllegalArgumentException("unknown request " + request[0]);
+		}
+	}
+	
+	/**
+	 * Ends a Game and records it.  Games that ended before a move are not recorded.
+	 * @param game		the Game
+	 */
+	private void end(Game game) {
+		game.shutdown();
+		if(game.getMoves().length == 0) {
+			return;
+		}
+		synchronized(this) {
+			if(recorder != null) {
+				try {
+					recorder.write(game);
+					recorder.flush();
+				}
+				catch(IOException e) {
+					System.err.println("Could not record a game: " + e.getMessage());
+				}
+			}
+		}
+	}
+	
+	/**
+	 * @param request	a request whose second word is the id of a Game
+	 * @param games		the Games of the connection, by id
+	 * @return			the Game
+	 * @throws IllegalArgumentException	if there is no such Game
+	 */
+	private static Game game(String[] request, Map<Integer, Game> games) {
+		Game game = request.length > 1 ? games.get(parseInt(request[1])) : null;
+		if(game == null) {
+			throw new IllegalArgumentException("no such game");
+		}
+		return game;
+	}
+	
+	/**
+	 * @param word		a word of a request
+	 * @return			the number
+	 * @throws IllegalArgumentException	if the word is not a number
+	 */
+	private static int parseInt(String word) {
+		try {
+			return Integer.parseInt(word);
+		}
+		catch(NumberFormatException e) {
+			throw new IllegalArgumentException("not a number: " + word);
+		}
+	}
+	
+	/**
+	 * Runs a GameServer until the JVM is stopped.  With "-record FILE" every Game is added to FILE as a game record when
+	 * it ends, after the Games of earlier runs.  With "-cache FILE" every Game shares one PositionCache, which is kept
+	 * from one run of the server to the next.
+	 * @param args
+	 * @throws IOException
+	 */
+	public static void main(String[] args) throws IOException {
+		int port = DEFAULT_PORT;
+		int numSearchThreads = Runtime.getRuntime().availableProcessors();
+		String record = null;
+		for(int i = 0; i + 1 < args.length; i++) {
+			if(args[i].equals("-port")) {
+				port = Integer.parseInt(args[i+1]);
+			}
+			else if(args[i].equals("-searchThreads")) {
+				numSearchThreads = Integer.parseInt(args[i+1]);
+			}
+			else if(args[i].equals("-record")) {
+				record = args[i+1];
+			}
+		}
+		GameServer server = new GameServer(port, new GameConfig().withTableSizeMB(DEFAULT_TABLE_SIZE_MB).withArguments(args)
+				.withPositionCache(PositionCache.fromArguments(args)), numSearchThreads);
+		if(record != null) {
+			server.setRecorder(GameRecordWriter.append(Paths.get(record)));
+		}
+		System.out.println("Serving on port " + server.getPort() + " with " + numSearchThreads + " search threads, "
+				+ (server.usesVirtualThreads() ? "virtual" : "platform") + " threads per connection");
+		server.serve();
+	}
+}
@@ -0,0 +1,190 @@
+package simacogo;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Plays many sessions against a GameServer at the same time and reports the latency of the moves: the time from
+ * sending a DROP to receiving the computer's reply.  Every session is one connection that plays a number of Games with
+ * random columns, each session on its own thread (a virtual thread when the JVM has them).
+ * With "-local" a GameServer is started in the same JVM on a free port instead of connecting to host and port.
+ * Usage: LoadClient [-host HOST] [-port N] [-local] [-sessions N] [-games N] [-seed S] [options of NEW]
+ * @author Patrick Drucker
+ */
+public class LoadClient {
+	
+	/**
+	 * Runs the sessions and prints the latency percentiles.
+	 * @param args
+	 * @throws IOException
+	 * @throws InterruptedException
+	 * @throws ExecutionException
+	 */
+	public static void main(String[] args) throws IOException, InterruptedException, ExecutionException {
+		String host = "localhost";
+		int port = GameServer.DEFAULT_PORT;
+		boolean local = false;
+		int numSessions = 100;
+		int numGames = 1;
+		long seed = 1;
+		StringBuilder options = new StringBuilder();
+		for(int i = 0; i < args.length; i++) {
+			if(args[i].equals("-local")) {
+				local = true;
+			}
+			else if(i + 1 < args.length && args[i].equals("-host")) {
+				host = args[++i];
+			}
+			else if(i + 1 < args.length && args[i].equals("-port")) {
+				port = Integer.parseInt(args[++i]);
+			}
+			else if(i + 1 < args.length && args[i].equals("-sessions")) {
+				numSessions = Integer.parseInt(args[++i]);
+			}
+			else if(i + 1 < args.length && args[i].equals("-games")) {
+				numGames = Integer.parseInt(args[++i]);
+			}
+			else if(i + 1 < args.length && args[i].equals("-seed")) {
+				seed = Long.parseLong(args[++i]);
+			}
+			else {
+				options.append(' ').append(args[i]);
+			}
+		}
+		GameServer server = null;
+		if(local) {
+			server = new GameServer(0, new GameConfig().withTableSizeMB(1), Runtime.getRuntime().availableProcessors());
+			port = server.getPort();
+			final GameServer localServer = server;
+			new Thread(() -> {
+				try {
+					localServer.serve();
+				}
+				catch(IOException e) {
+					e.printStackTrace();
+				}
+			}).start();
+		}
+	
+		ExecutorService sessions = Threads.newPerTaskExecutor();
+		List<Future<long[]>> futures = new ArrayList<Future<long[]>>();
+		final String finalHost = host;
+		final int finalPort = port;
+		final int games = numGames;
+		final String newRequest = "NEW" + options;
+		final BoardSize size = new GameConfig().withArguments(options.toString().trim().split("\\s+")).getBoardSize();
+		long start = System.nanoTime();
+		for(int session = 0; session < numSessions; session++) {
+			final Random random = new Random(seed * 1000003 + session);
+			futures.add(sessions.submit(() -> play(finalHost, finalPort, newRequest, size, games, random)));
+		}
+		List<long[]> latencies = new ArrayList<long[]>();
+		int numMoves = 0;
+		for(Future<long[]> future : futures) {
+			latencies.add(future.get());
+			numMoves += latencies.get(latencies.size() - 1).length;
+		}
+		long elapsedNanos = System.nanoTime() - start;
+		sessions.shutdown();
+		if(server != null) {
+			server.close();
+		}
+	
+		long[] all = new long[numMoves];
+		int n = 0;
+		for(long[] session : latencies) {
+			System.arraycopy(session, 0, all, n, session.length);
+			n += session.length;
+		}
+		Arrays.sort(all);
+		System.out.printf("%d sessions (%s threads), %d moves in %d ms: %.0f moves/s%n", numSessions,
+				Threads.isVirtual(sessions) ? "virtual" : "platform", numMoves, elapsedNanos / 1000000,
+				numMoves * 1e9 / elapsedNanos);
+		System.out.printf("move latency p50 %.2f ms, p99 %.2f ms, max %.2f ms%n", percentile(all, 0.5) / 1e6,
+				percentile(all, 0.99) / 1e6, (all.length == 0 ? 0 : all[all.length - 1]) / 1e6);
+	}
+	
+	/**
+	 * Plays one session: connects, plays a number of Games with random columns and disconnects.
+	 * @param host			the host of the server
+	 * @param port			the port of the server
+	 * @param newRequest	the NEW request that starts each Game
+	 * @param size			the size of the grid of the Games
+	 * @param numGames		the number of Games to play
+	 * @param random		chooses the columns
+	 * @return				the latency of every move in nanoseconds
+	 * @throws IOException	if the connection fails or the server replies with an error
+	 */
+	private static long[] play(String host, int port, String newRequest, BoardSize size, int numGames, Random random)
+			throws IOException {
+		long[] latencies = new long[numGames * (size.getNumCells() + 1) / 2];
+		int numMoves = 0;
+		try(Socket socket = new Socket(host, port);
+				BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+				PrintWriter out = new PrintWriter(socket.getOutputStream(), true)) {
+			for(int game = 0; game < numGames; game++) {
+				String id = request(in, out, newRequest).split(" ")[1];
+				int[] heights = new int[size.getColumns()];
+				boolean over = false;
+				while(!over) {
+					int col;
+					do {
+						col = random.nextInt(size.getColumns());
+					} while(heights[col] == size.getRows());
+					long start = System.nanoTime();
+					String[] reply = request(in, out, "DROP " + id + " " + (col + 1)).split(" ");
+					latencies[numMoves++] = System.nanoTime() - start;
+					heights[col]++;
+					int computerColumn = Integer.parseInt(reply[1]);
+					if(computerColumn > 0) {
+						heights[computerColumn - 1]++;
+					}
+					over = reply.length > 4;
+				}
+				request(in, out, "END " + id);
+			}
+			request(in, out, "QUIT");
+		}
+		return Arrays.copyOf(latencies, numMoves);
+	}
+	
+	/**
+	 * Sends a request and reads its reply.
+	 * @param in		the connection's input
+	 * @param out		the connection's output
+	 * @param request	the request
+	 * @return			the reply
+	 * @throws IOException	if the connection fails or the server replies with an error
+	 */
+	private static String request(BufferedReader in, PrintWriter out, String request) throws IOException {
+		out.println(request);
+		String reply = in.readLine();
+		if(reply == null || reply.startsWith("ERROR")) {
+			throw new IOException(request + ": " + (reply == null ? "connection closed" : reply));
+		}
+		return reply;
+	}
+	
+	/**
+	 * @param sorted	values in ascending order
+	 * @param share		between 0 and 1
+	 * @return			the smallest value that at least share of the values are not greater than; 0 if there are none
+	 */
+	private static long percentile(long[] sorted, double share) {
+		if(sorted.length == 0) {
+			return 0;
+		}
+		return sorted[Math.max(0, (int)Math.ceil(share * sorted.length) - 1)];
+	}
+}
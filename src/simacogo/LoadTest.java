@@ -0,0 +1,128 @@
+package simacogo;
+
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Plays thousands of Games at the same time in one JVM.  Every Game gets a random human player and a computer player,
+ * and every turn of every Game is a separate task on a shared thread pool, so the turns of all the Games interleave.
+ * Afterwards a sample of the Games is played again on its own, one at a time, and must end on exactly the same board,
+ * which shows that the Games do not share any state.
+ * Usage: LoadTest [numGames] [numPlies] [numThreads] [numReplays]
+ * @author Patrick Drucker
+ */
+public class LoadTest {
+	
+	/**
+	 * One Game being played by the load test.
+	 */
+	private static final class Session implements Runnable {
+		private final Game game;
+		private final Random random;			// chooses the human player's columns
+		private final ExecutorService pool;
+		private final CountDownLatch finished;
+		private final AtomicLong numMoves;
+		private final AtomicLong searchNanos;
+		
+		Session(Game game, long seed, ExecutorService pool, CountDownLatch finished, AtomicLong numMoves, AtomicLong searchNanos) {
+			this.game = game;
+			this.random = new Random(seed);
+			this.pool = pool;
+			this.finished = finished;
+			this.numMoves = numMoves;
+			this.searchNanos = searchNanos;
+		}
+		
+		/**
+		 * Plays one human and one computer turn, then queues the next turn behind the turns of the other Games.
+		 */
+		@Override
+		public void run() {
+			long start = System.nanoTime();
+			boolean over = playTurn(game, random);
+			searchNanos.addAndGet(System.nanoTime() - start);
+			numMoves.addAndGet(2);
+			if(over) {
+				finished.countDown();
+			}
+			else {
+				pool.execute(this);
+			}
+		}
+	}
+	
+	/**
+	 * Runs the load test and prints its throughput.
+	 * @param args
+	 * @throws InterruptedException
+	 */
+	public static void main(String[] args) throws InterruptedException {
+		int numGames = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+		int numPlies = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+		int numThreads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+		int numReplays = args.length > 3 ? Integer.parseInt(args[3]) : 50;
+		// a minimal transposition table per Game, so that thousands of them fit in memory
+		GameConfig config = new GameConfig().withNumPlies(numPlies).withTableSizeMB(0);
+		
+		ExecutorService pool = Executors.newFixedThreadPool(numThreads);
+		CountDownLatch finished = new CountDownLatch(numGames);
+		AtomicLong numMoves = new AtomicLong();
+		AtomicLong searchNanos = new AtomicLong();
+		Game[] games = new Game[numGames];
+		long start = System.nanoTime();
+		for(int i = 0; i < numGames; i++) {
+			games[i] = new Game(config);
+		}
+		for(int i = 0; i < numGames; i++) {
+			pool.execute(new Session(games[i], i, pool, finished, numMoves, searchNanos));
+		}
+		finished.await();
+		long elapsedNanos = System.nanoTime() - start;
+		pool.shutdown();
+		System.out.printf("%d games, %d moves in %d ms on %d threads: %.0f moves/s, %.2f ms per turn%n", numGames, numMoves.get(),
+				elapsedNanos / 1000000, numThreads, numMoves.get() * 1e9 / elapsedNanos, searchNanos.get() / 1e6 / (numMoves.get() / 2));
+		
+		int numFailed = 0;
+		Random random = new Random();
+		for(int replay = 0; replay < Math.min(numReplays, numGames); replay++) {
+			int i = random.nextInt(numGames);
+			Game game = new Game(config);
+			Random moves = new Random(i);
+			while(!playTurn(game, moves)) {
+			}
+			State expected = game.getCurrentState();
+			State actual = games[i].getCurrentState();
+			if(!expected.toString().equals(actual.toString())
+					|| Value.evaluate(game.getComputerPlayer(), expected) != Value.evaluate(games[i].getComputerPlayer(), actual)) {
+				System.out.println("Game " + i + " ended differently when played on its own:\n" + actual + "instead of\n" + expected);
+				numFailed++;
+			}
+		}
+		System.out.println(numFailed == 0 ? "All replayed games match." : numFailed + " replayed games do not match.");
+		if(numFailed > 0) {
+			System.exit(1);
+		}
+	}
+	
+	/**
+	 * Plays a random human move and the computer's reply.
+	 * @param game		the Game
+	 * @param random	chooses the human player's column
+	 * @return			true if the Game is over
+	 */
+	private static boolean playTurn(Game game, Random random) {
+		int col;
+		do {
+			col = random.nextInt(State.COLUMNS) + 1;
+		} while(!game.getCurrentState().columnIsAvailable(col));
+		game.takeTurnHuman(game.getHumanPlayer(), col);
+		if(game.getCurrentState().isTerminalState()) {
+			return true;
+		}
+		game.takeTurnComputer(game.getComputerPlayer());
+		return game.getCurrentState().isTerminalState();
+	}
+}
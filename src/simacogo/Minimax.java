@@ -1,70 +1,212 @@
 package simacogo;
 
+import java.util.Arrays;
+
 /**
- * A final class that utilizes the minimax algorithm to create a tree of States, evaluate the "score" of the leaf nodes, and send up
+ * A class that utilizes the minimax algorithm to create a tree of States, evaluate the "score" of the leaf nodes, and send up
  * the best score and resulting state that the player can choose.
- * Cannot be instantiated.
+ * The leaves below a node one ply above the bottom of the tree are scored together by a BatchEvaluator.
+ * Keeps the result of its last search, so a Minimax should only be used by one thread at a time.
  * @author Patrick Drucker
  */
-public final class Minimax {
-	static State resultingState;			// the resultant "best possible state"
+public class Minimax {
+	private State resultingState;			// the resultant "best possible state"
+	private long nodeCount;					// number of States visited since the count was last reset
+	private long leafCount;					// number of States evaluated since the count was last reset
+	private final long[] plyNodeCounts = new long[BoardSize.MAX_CELLS + 1];	// States visited at each distance from the root
+	private SearchBoard board;				// the board that moves are made on
+	private int bestColumn;					// the best column from the State the search started from
+	private final Evaluation evaluation;	// values the States at the bottom of the tree
+	private final BatchEvaluator batch = BatchEvaluator.create();	// scores the leaves of a frontier node together
+	private final int[] leafMoves = new int[BoardSize.MAX_COLUMNS];	// the columns of a frontier node
+	private final double[] leafValues = new double[BoardSize.MAX_COLUMNS];	// the values of the leaves of a frontier node
+	private volatile boolean cancelled;		// true to stop searching (see setCancelled)
+	
+	/**
+	 * Creates a Minimax that values the States at the bottom of the tree by their score difference.
+	 */
+	public Minimax() {
+		this(Evaluation.SCORE);
+	}
+	
+	/**
+	 * Creates a Minimax.
+	 * @param evaluation	values the States at the bottom of the tree
+	 */
+	public Minimax(Evaluation evaluation) {
+		this.evaluation = evaluation;
+	}
+	
+	/**
+	 * Searches numPlies deep for the best move that player can make from state.
+	 * @param state		the current State (player has the next move)
+	 * @param numPlies	the depth of the tree
+	 * @param player	the Player making use of the minimax algorithm
+	 * @return			the best move and its value
+	 */
+	public SearchResult search(State state, int numPlies, Player player) {
+		long start = System.nanoTime();
+		resetNodeCount();
+		resultingState = null;
+		double value = minimax(state, numPlies, true, player);
+		return new SearchResult(resultingState == null ? -1 : resultingState.getColumnDropped(), value, numPlies, nodeCount,
+				System.nanoTime() - start);
+	}
 	
 	/**
-	 * Private constructor to prevent instantiation.
+	 * Runs the minimax algorithm from a State, and keeps the best State that can be reached from it.
+	 * @param state		the current State that is being evaluated
+	 * @param numPlies	the depth of the tree
+	 * @param isMax		true if this is a maximizing state
+	 * @param player	the Player making use of the minimax algorithm
+	 * @return bestValue
 	 */
-	private Minimax() {
+	public double minimax(State state, int numPlies, boolean isMax, Player player) {
+		if(board == null) {
+			board = new SearchBoard(state);
+		}
+		else {
+			board.set(state);
+		}
+		bestColumn = -1;
+		double bestValue = minimax(numPlies, isMax, 0, player);
+		resultingState = bestColumn == -1 ? null : state.dropPiece(bestColumn);
+		return bestValue;
 	}
 	
 	/**
-	 * Recursive implementation of the minimax algorithm.
+	 * Recursive implementation of the minimax algorithm, on the board.  Each move is made on the board before it is
+	 * searched and unmade afterwards, so no States are created.
 	 * Evaluates the leaf nodes (at numPlies depth), and sends that value up the tree.
 	 * If currently in a maximizing State, will return the highest value(best score for max).
 	 * If currently in a minimizing State, will return the lowest value (best score for min).  
-	 * @param state		the current State that is being evaluated
 	 * @param numPlies	the depth of the tree
 	 * @param isMax		true if this is a maximizing state
+	 * @param ply		the distance from the State the search started from
 	 * @param player	the Player making use of the minimax algorithm
 	 * @return bestValue
 	 */
-	public static double minimax(State state, int numPlies, boolean isMax, Player player) {	
-		State bestState = null;
+	private double minimax(int numPlies, boolean isMax, int ply, Player player) {
+		int bestCol = -1;
+		nodeCount++;
+		plyNodeCounts[ply]++;
+		if(cancelled) {
+			return 0;
+		}
 		
-		if(numPlies == 0 || state.isTerminalState()) {
-			return Value.evaluate(player, state);
+		if(numPlies == 0 || board.isTerminal()) {
+			leafCount++;
+			return evaluation.evaluate(player, board);
+		}
+		if(numPlies == 1 && evaluation == Evaluation.SCORE) {
+			return frontier(isMax, ply, player);
 		}
 		
-		if(isMax) {
-			double current = 0;
-			double bestValue = Double.NEGATIVE_INFINITY;
-			for(State adj : state.successors()) {
-				current = minimax(adj, numPlies-1, false, player);
-				if(current > bestValue) {
-					bestValue = current;
-					bestState = adj;
-				}
+		double bestValue = isMax ? Double.NEGATIVE_INFINITY : Double.POSITIVE_INFINITY;
+		// the right half of a grid that is its own mirror image leads to the mirror images of the left half
+		int columns = board.getSize().getColumns();
+		int lastCol = board.isSymmetric() ? (columns - 1) / 2 : columns - 1;
+		for(int col = 0; col <= lastCol; col++) {
+			if(board.isFull(col)) {
+				continue;
+			}
+			board.makeMove(col);
+			double current = minimax(numPlies-1, !isMax, ply+1, player);
+			board.unmakeMove(col);
+			if(isMax ? current > bestValue : current < bestValue) {
+				bestValue = current;
+				bestCol = col;
 			}
-			resultingState = bestState;
-			return bestValue;
 		}
-		else {
-			double current = 0;
-			double bestValue = Double.POSITIVE_INFINITY;
-			for(State adj : state.successors()) {
-				current = minimax(adj, numPlies-1, true, player);
-				if(current < bestValue) {
-					bestValue = current;
-					bestState = adj;
-				}
+		if(ply == 0) {
+			bestColumn = bestCol;
+		}
+		return bestValue;
+	}
+	
+	/**
+	 * Values a node one ply above the bottom of the tree, whose children are all leaves, by scoring the children
+	 * together with the BatchEvaluator instead of making every move.  Visits and values the same children as minimax.
+	 * @param isMax		true if this is a maximizing state
+	 * @param ply		the distance from the State the search started from
+	 * @param player	the Player making use of the minimax algorithm
+	 * @return bestValue
+	 */
+	private double frontier(boolean isMax, int ply, Player player) {
+		int columns = board.getSize().getColumns();
+		int lastCol = board.isSymmetric() ? (columns - 1) / 2 : columns - 1;
+		int numMoves = 0;
+		for(int col = 0; col <= lastCol; col++) {
+			if(!board.isFull(col)) {
+				leafMoves[numMoves++] = col;
+			}
+		}
+		batch.evaluateMoves(board, leafMoves, numMoves, player.getPiece(), leafValues);
+		nodeCount += numMoves;
+		leafCount += numMoves;
+		plyNodeCounts[ply+1] += numMoves;
+		double bestValue = isMax ? Double.NEGATIVE_INFINITY : Double.POSITIVE_INFINITY;
+		int bestCol = -1;
+		for(int i = 0; i < numMoves; i++) {
+			double current = leafValues[i];
+			if(isMax ? current > bestValue : current < bestValue) {
+				bestValue = current;
+				bestCol = leafMoves[i];
 			}
-			resultingState = bestState;
-			return bestValue;
 		}
+		if(ply == 0) {
+			bestColumn = bestCol;
+		}
+		return bestValue;
+	}
+	
+	/**
+	 * Stops the running search, and every search started until this is called again with false.  The result of a
+	 * cancelled search is meaningless.  Can be called from any thread.
+	 * @param cancelled	true to stop searching; false to search normally again
+	 */
+	void setCancelled(boolean cancelled) {
+		this.cancelled = cancelled;
+	}
+	
+	/**
+	 * @return nodeCount	the number of States visited since the count was last reset
+	 */
+	public long getNodeCount() {
+		return nodeCount;
+	}
+	
+	/**
+	 * @return leafCount	the number of States evaluated since the count was last reset
+	 */
+	public long getLeafCount() {
+		return leafCount;
+	}
+	
+	/**
+	 * @return			the number of States visited at each distance from the root since the count was last reset
+	 */
+	public long[] getPlyNodeCounts() {
+		int length = plyNodeCounts.length;
+		while(length > 0 && plyNodeCounts[length - 1] == 0) {
+			length--;
+		}
+		return Arrays.copyOf(plyNodeCounts, length);
+	}
+	
+	/**
+	 * Resets the number of States visited and evaluated to zero.
+	 */
+	public void resetNodeCount() {
+		nodeCount = 0;
+		leafCount = 0;
+		Arrays.fill(plyNodeCounts, 0);
 	}
 	
 	/**
 	 * @return resultingState
 	 */
-	public static State getResultingState() {
+	public State getResultingState() {
 		return resultingState;
 	}
 }
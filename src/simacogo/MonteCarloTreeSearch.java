@@ -0,0 +1,414 @@
+package simacogo;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * A class that chooses a move with Monte Carlo tree search instead of a fixed-depth evaluation: it plays thousands of
+ * quick games (playouts) to the full grid and grows a tree towards the columns that win them most often.
+ * Every playout selects a path down the tree with UCT (the win rate of a column plus a bonus for columns that have been
+ * tried less), adds the children of the node it ends at, and plays the rest of the Game with light random moves: of
+ * two random columns, the one whose drop scores more.  The result (a win, draw or loss) is added to every node on the
+ * path.  The column played is the most visited child of the root.
+ * The search is parallel at the root: every thread grows a tree of its own from the same State, and the visits of the
+ * children of the roots are added up at the end, so the threads never wait for each other.  Each tree is kept between
+ * searches: when the next search starts from a State reached from the old root by one or two moves, that subtree
+ * becomes the new root and its playouts count again.  A tree stops adding nodes once it reaches its share of the
+ * memory it was given.
+ * Keeps its trees between searches, so a MonteCarloTreeSearch should only be used by one thread at a time.
+ * @author Patrick Drucker
+ */
+public class MonteCarloTreeSearch {
+	public static final int DEFAULT_PLAYOUTS = 20000;		// default number of playouts per move
+	private static final double EXPLORATION = Math.sqrt(2);	// weight of the UCT bonus of columns tried less often
+	private static final int NODE_BYTES = 64;				// memory a node takes, including its place in its parent
+	private static final int CHECK_TIME_PLAYOUTS = 64;		// playouts between checks of the clock
+	private final Tree[] trees;							// one tree per thread
+	private final ExecutorService pool;					// runs the trees after the first; null for one thread
+	private volatile boolean cancelled;					// true to stop searching (see setCancelled)
+	
+	/**
+	 * A node of a tree: the State reached by dropping a piece in column from the parent.
+	 */
+	private static final class Node {
+		Node parent;			// null for the root
+		final int column;		// the column dropped to reach this node; -1 for a new root
+		Node[] children;		// one per column that is not full, centre first; null until the node is expanded
+		int visits;				// playouts through this node
+		double points;			// 1 per playout won, 0.5 per draw, for the piece that dropped column
+		double scoreSum;		// final score differences of the playouts, for the piece that dropped column
+		
+		Node(Node parent, int column) {
+			this.parent = parent;
+			this.column = column;
+		}
+	}
+	
+	/**
+	 * The tree of one thread and everything it needs to grow it.
+	 */
+	private final class Tree {
+		final int maxNodes;				// the most nodes the tree may have
+		final SplittableRandom random;	// chooses the columns of the playouts
+		final int[] moves = new int[BoardSize.MAX_COLUMNS];		// buffer of the columns of a playout position
+		final int[] playout = new int[BoardSize.MAX_CELLS];		// columns dropped by the current playout
+		final long[] plyNodeCounts = new long[BoardSize.MAX_CELLS + 1];	// tree nodes visited at each distance from the root
+		SearchBoard board;				// the board that moves are made on, at the root between playouts
+		State rootState;				// the State of the root
+		Node root;
+		int numNodes;					// nodes in the tree
+		int maxDepth;					// deepest node reached by the last search
+		long nodeCount;					// States visited by the last search, in the tree and in the playouts
+		long leafCount;					// playouts of the last search
+		
+		Tree(int maxNodes, long seed) {
+			this.maxNodes = maxNodes;
+			this.random = new SplittableRandom(seed);
+		}
+		
+		/**
+		 * Makes state the root, reusing the subtree of the old root that leads to it if there is one.
+		 * @param state		the State to search from
+		 */
+		void setRoot(State state) {
+			Node reused = rootState == null ? null : find(root, rootState, state, 2);
+			if(reused == null) {
+				root = new Node(null, -1);
+				numNodes = 1;
+			}
+			else {
+				root = reused;
+				root.parent = null;
+				numNodes = count(root);
+			}
+			rootState = state;
+			if(board == null) {
+				board = new SearchBoard(state);
+			}
+			else {
+				board.set(state);
+			}
+			maxDepth = 0;
+			nodeCount = 0;
+			leafCount = 0;
+			Arrays.fill(plyNodeCounts, 0);
+		}
+		
+		/**
+		 * Plays playouts until there have been numPlayouts, the deadline has passed or the search is cancelled.
+		 * @param numPlayouts	the most playouts to play
+		 * @param deadline		System.nanoTime() at which the search has to stop
+		 */
+		void run(long numPlayouts, long deadline) {
+			char piece = rootState.getNextMovePiece();
+			for(long i = 0; i < numPlayouts && !cancelled; i++) {
+				if(i % CHECK_TIME_PLAYOUTS == 0 && System.nanoTime() > deadline) {
+					break;
+				}
+				playout(piece);
+			}
+		}
+		
+		/**
+		 * Selects a path down the tree, expands its last node, plays the rest of the Game at random and adds the result
+		 * to the path.  The board is back at the root afterwards.
+		 * @param piece		the piece with the next move at the root
+		 */
+		void playout(char piece) {
+			Node node = root;
+			int depth = 0;
+			nodeCount++;
+			plyNodeCounts[0]++;
+			while(node.children != null && node.children.length > 0) {
+				node = select(node);
+				board.makeMove(node.column);
+				depth++;
+				nodeCount++;
+				plyNodeCounts[depth]++;
+			}
+			if(!board.isTerminal() && (node == root || node.visits > 0) && numNodes < maxNodes) {
+				expand(node);
+				node = select(node);
+				board.makeMove(node.column);
+				depth++;
+				nodeCount++;
+				plyNodeCounts[depth]++;
+			}
+			maxDepth = Math.max(maxDepth, depth);
+			
+			// play to the full grid, then take the moves back
+			int numDropped = 0;
+			while(!board.isTerminal()) {
+				int numMoves = board.generateMoves(moves);
+				int col = moves[random.nextInt(numMoves)];
+				int other = moves[random.nextInt(numMoves)];
+				if(board.dropScore(other) > board.dropScore(col)) {
+					col = other;
+				}
+				board.makeMove(col);
+				playout[numDropped++] = col;
+			}
+			nodeCount += numDropped;
+			leafCount++;
+			double difference = board.score(piece) - board.score(piece == 'X' ? 'O' : 'X');
+			for(int i = numDropped - 1; i >= 0; i--) {
+				board.unmakeMove(playout[i]);
+			}
+			
+			// the result counts for the piece that dropped the column of each node: the root's piece at odd depths
+			double points = difference > 0 ? 1 : difference == 0 ? 0.5 : 0;
+			while(node != root) {
+				boolean rootPiece = depth % 2 == 1;
+				node.visits++;
+				node.points += rootPiece ? points : 1 - points;
+				node.scoreSum += rootPiece ? difference : -difference;
+				board.unmakeMove(node.column);
+				node = node.parent;
+				depth--;
+			}
+			root.visits++;
+		}
+		
+		/**
+		 * Gives a node a child for every column of the board that is not full, but only one for a column and its mirror
+		 * column when the board is its own mirror image.  The board is at the node.
+		 * @param node		a node without children
+		 */
+		void expand(Node node) {
+			int numMoves = board.generateDistinctMoves(moves);
+			Node[] children = new Node[numMoves];
+			for(int i = 0; i < numMoves; i++) {
+				children[i] = new Node(node, moves[i]);
+			}
+			node.children = children;
+			numNodes += numMoves;
+		}
+	}
+	
+	/**
+	 * Creates a MonteCarloTreeSearch.
+	 * @param numThreads	the number of threads, each of which grows a tree of its own
+	 * @param memoryMB		the memory all the trees together may use, in megabytes (0 for a minimal tree)
+	 */
+	public MonteCarloTreeSearch(int numThreads, int memoryMB) {
+		int maxNodes = (int)Math.min(Integer.MAX_VALUE, Math.max(1024, ((long)memoryMB << 20) / NODE_BYTES / numThreads));
+		trees = new Tree[numThreads];
+		for(int i = 0; i < numThreads; i++) {
+			trees[i] = new Tree(maxNodes, i + 1);
+		}
+		pool = numThreads > 1 ? Executors.newFixedThreadPool(numThreads - 1) : null;
+	}
+	
+	/**
+	 * Plays numPlayouts playouts from state, shared between the threads, and chooses the column played most.
+	 * @param state			the current State (player has the next move)
+	 * @param numPlayouts	the number of playouts
+	 * @param player		the Player making use of the search
+	 * @return				the best move and the average final score difference of its playouts
+	 */
+	public SearchResult search(State state, long numPlayouts, Player player) {
+		return run(state, numPlayouts, Long.MAX_VALUE);
+	}
+	
+	/**
+	 * Plays playouts from state on every thread until the time budget runs out, and chooses the column played most.
+	 * @param state			the current State (player has the next move)
+	 * @param budgetMillis	the time budget in milliseconds
+	 * @param player		the Player making use of the search
+	 * @return				the best move and the average final score difference of its playouts
+	 */
+	public SearchResult searchTimed(State state, long budgetMillis, Player player) {
+		return run(state, Long.MAX_VALUE, System.nanoTime() + budgetMillis * 1000000);
+	}
+	
+	/**
+	 * Runs every tree from state on its own thread, the first one on the calling thread, and adds up their roots.
+	 * @param state			the current State
+	 * @param numPlayouts	the number of playouts of all the trees together
+	 * @param deadline		System.nanoTime() at which the search has to stop
+	 * @return				the best move and the average final score difference of its playouts
+	 */
+	private SearchResult run(State state, final long numPlayouts, final long deadline) {
+		long start = System.nanoTime();
+		List<Future<?>> futures = new ArrayList<Future<?>>();
+		for(int i = trees.length - 1; i >= 0; i--) {
+			final Tree tree = trees[i];
+			final long share = numPlayouts == Long.MAX_VALUE ? numPlayouts
+					: numPlayouts / trees.length + (i < numPlayouts % trees.length ? 1 : 0);
+			tree.setRoot(state);
+			if(i > 0) {
+				futures.add(pool.submit((Callable<Void>)() -> {
+					tree.run(share, deadline);
+					return null;
+				}));
+			}
+			else {
+				tree.run(share, deadline);
+			}
+		}
+		for(Future<?> future : futures) {
+			try {
+				future.get();
+			}
+			catch(InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			catch(ExecutionException e) {
+				throw new IllegalStateException("a playout failed", e.getCause());
+			}
+		}
+		
+		// the column played most by all the trees together; the lower column wins a tie
+		int columns = state.getSize().getColumns();
+		long[] visits = new long[columns];
+		double[] scoreSums = new double[columns];
+		for(Tree tree : trees) {
+			if(tree.root.children != null) {
+				for(Node child : tree.root.children) {
+					visits[child.column] += child.visits;
+					scoreSums[child.column] += child.scoreSum;
+				}
+			}
+		}
+		int bestCol = -1;
+		for(int col = 0; col < columns; col++) {
+			if(state.numAvailableSpaces(col) > 0 && (bestCol == -1 || visits[col] > visits[bestCol])) {
+				bestCol = col;
+			}
+		}
+		double value = bestCol == -1 || visits[bestCol] == 0 ? 0 : scoreSums[bestCol] / visits[bestCol];
+		return new SearchResult(bestCol, value, getDepth(), getNodeCount(), System.nanoTime() - start);
+	}
+	
+	/**
+	 * Returns the child of UCT: the child with no visits that comes first, or else the one with the highest win rate
+	 * plus exploration bonus.
+	 * @param node		a node with children
+	 * @return			the child to visit next
+	 */
+	private static Node select(Node node) {
+		double logVisits = Math.log(node.visits);
+		Node best = null;
+		double bestValue = Double.NEGATIVE_INFINITY;
+		for(Node child : node.children) {
+			if(child.visits == 0) {
+				return child;
+			}
+			double value = child.points / child.visits + EXPLORATION * Math.sqrt(logVisits / child.visits);
+			if(value > bestValue) {
+				bestValue = value;
+				best = child;
+			}
+		}
+		return best;
+	}
+	
+	/**
+	 * Looks for the node of a State up to some moves below a node.
+	 * @param node		a node
+	 * @param nodeState	the State of node
+	 * @param state		the State looked for
+	 * @param plies		how many moves below node to look
+	 * @return			the node of state; null if it is not in the tree that deep
+	 */
+	private static Node find(Node node, State nodeState, State state, int plies) {
+		if(nodeState.turnNumber == state.turnNumber) {
+			return nodeState.getHash() == state.getHash() && nodeState.getSize() == state.getSize() ? node : null;
+		}
+		if(plies == 0 || node.children == null || nodeState.turnNumber > state.turnNumber) {
+			return null;
+		}
+		for(Node child : node.children) {
+			Node found = find(child, nodeState.dropPiece(child.column), state, plies - 1);
+			if(found != null) {
+				return found;
+			}
+		}
+		return null;
+	}
+	
+	/**
+	 * @param node		a node
+	 * @return			the number of nodes of the subtree of node
+	 */
+	private static int count(Node node) {
+		int count = 1;
+		if(node.children != null) {
+			for(Node child : node.children) {
+				count += count(child);
+			}
+		}
+		return count;
+	}
+	
+	/**
+	 * Stops the running search, and every search started until this is called again with false.  A cancelled search
+	 * returns the best column of the playouts played so far.  Can be called from any thread.
+	 * @param cancelled	true to stop searching; false to search normally again
+	 */
+	void setCancelled(boolean cancelled) {
+		this.cancelled = cancelled;
+	}
+	
+	/**
+	 * Stops the threads of the pool.  The MonteCarloTreeSearch cannot be used afterwards.
+	 */
+	public void shutdown() {
+		if(pool != null) {
+			pool.shutdown();
+		}
+	}
+	
+	/**
+	 * @return			the number of States visited by the last search, in the trees and in the playouts
+	 */
+	public long getNodeCount() {
+		long nodeCount = 0;
+		for(Tree tree : trees) {
+			nodeCount += tree.nodeCount;
+		}
+		return nodeCount;
+	}
+	
+	/**
+	 * @return			the number of playouts of the last search
+	 */
+	public long getLeafCount() {
+		long leafCount = 0;
+		for(Tree tree : trees) {
+			leafCount += tree.leafCount;
+		}
+		return leafCount;
+	}
+	
+	/**
+	 * @return			the distance from the root of the deepest tree node visited by the last search
+	 */
+	public int getDepth() {
+		int depth = 0;
+		for(Tree tree : trees) {
+			depth = Math.max(depth, tree.maxDepth);
+		}
+		return depth;
+	}
+	
+	/**
+	 * @return			the number of tree nodes visited by the last search at each distance from the root
+	 */
+	public long[] getPlyNodeCounts() {
+		long[] plyNodeCounts = new long[getDepth() + 1];
+		for(Tree tree : trees) {
+			for(int ply = 0; ply < plyNodeCounts.length; ply++) {
+				plyNodeCounts[ply] += tree.plyNodeCounts[ply];
+			}
+		}
+		return plyNodeCounts;
+	}
+}
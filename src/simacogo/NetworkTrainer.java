@@ -0,0 +1,455 @@
+package simacogo;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Trains the network of the NEURAL Evaluation offline, on positions of self-play Games, and writes it quantised for
+ * NeuralNetwork.  Plays Games of the computer against itself from random openings, as EvaluationTuner does, and keeps
+ * every position after the opening with how the score difference of the piece that has the next move changes: to the
+ * final score difference of the Game and to the value of the search of the move, mixed by "-result" (0.5 unless
+ * given), since the value of the search is the less noisy of the two.  The network is trained in floating point to
+ * predict that change, by mini-batch gradient descent with Adam on the squared error, keeping the output weights within
+ * what fits in 8 bits.  The weights that NeuralNetwork ties, so that a board and its mirror image are valued alike,
+ * start equal and are moved by the sum of their gradients, so they stay equal; the mirror image of a position would
+ * teach the network nothing the position does not, so none are added.  Every HOLDOUT-th Game is kept out of the
+ * training, and the error on its positions against the final score difference is printed for the score difference
+ * alone (SCORE), the network before quantisation and the network as it is written.  The built-in network was trained
+ * with the defaults.
+ * Usage: NetworkTrainer -out FILE [-games N] [-hidden N] [-epochs N] [-threads N] [-opening PLIES] [-result WEIGHT]
+ * [-seed S] [options]
+ * where options are the options of Simacogo that choose the search of the self-play; "-plies 4 -eval features" unless
+ * given.  Play with the network with "java -Dsimacogo.network=FILE" and "-eval neural".
+ * @author Patrick Drucker
+ */
+public class NetworkTrainer {
+	private static final int HOLDOUT = 5;				// every HOLDOUT-th Game is used to test the network, not to train it
+	private static final int TABLE_SIZE_MB = 1;			// table size of each side, as many Games are played at once
+	private static final int BATCH_SIZE = 256;			// positions per step of gradient descent
+	private static final double LEARNING_RATE = 0.002;	// step size of Adam
+	private static final double BETA1 = 0.9;			// decay of the mean of the gradients, for Adam
+	private static final double BETA2 = 0.999;			// decay of the mean of the squared gradients, for Adam
+	private static final double EPSILON = 1e-8;
+	private static final double MAX_OUTPUT_WEIGHT = 127.0 / NeuralNetwork.OUTPUT_SCALE;	// the largest 8-bit weight
+	private final BoardSize size;						// the size of the grid
+	private final int numInputs;						// inputs per side: two per cell
+	private final int numHidden;						// hidden values per side
+	private final double[] params;						// input weights, direct weights, hidden biases, output weights, output
+														// bias, score weight
+	private final int directWeights;					// offset of the direct weights in params
+	private final int hiddenBiases;						// offset of the hidden biases in params
+	private final int outputWeights;					// offset of the output weights in params
+	private final int outputBias;						// offset of the output bias in params
+	private final int scoreWeight;						// offset of the score weight in params
+	private final int[] tied;							// the parameter that each parameter is tied to; itself if none
+	private final double[] gradient;					// gradient of the batch, like params
+	private final double[] mean;						// Adam's running mean of the gradients
+	private final double[] meanSquare;					// Adam's running mean of the squared gradients
+	private final double[] ownHidden;					// hidden values of the side to move, before clipping
+	private final double[] otherHidden;					// hidden values of the other side, before clipping
+	private int step;									// steps taken
+	
+	/**
+	 * A position to learn from: the inputs of the side that has the next move, and the change of its score difference.
+	 */
+	private static final class Sample {
+		final int[] inputs;				// the inputs that are on for the side to move: a cell of its own, or cells + a cell of the other's
+		final double scoreDifference;	// its score difference
+		final double target;			// how much its score difference changed by the end of the Game
+		
+		Sample(int[] inputs, double scoreDifference, double target) {
+			this.inputs = inputs;
+			this.scoreDifference = scoreDifference;
+			this.target = target;
+		}
+	}
+	
+	/**
+	 * Creates a NetworkTrainer with small random weights.
+	 * @param size			the size of the grid
+	 * @param numHidden		hidden values per side; even, as they come in twins
+	 * @param random		source of the initial weights
+	 * @throws IllegalArgumentException	if numHidden is odd
+	 */
+	NetworkTrainer(BoardSize size, int numHidden, Random random) {
+		if(numHidden < 2 || numHidden % 2 != 0) {
+			throw new IllegalArgumentException("An odd number of hidden values: " + numHidden);
+		}
+		this.size = size;
+		this.numInputs = 2 * size.getNumCells();
+		this.numHidden = numHidden;
+		this.directWeights = numInputs * numHidden;
+		this.hiddenBiases = directWeights + numInputs;
+		this.outputWeights = hiddenBiases + numHidden;
+		this.outputBias = outputWeights + 2 * numHidden;
+		this.scoreWeight = outputBias + 1;
+		this.params = new double[scoreWeight + 1];
+		this.gradient = new double[params.length];
+		this.mean = new double[params.length];
+		this.meanSquare = new double[params.length];
+		this.ownHidden = new double[numHidden];
+		this.otherHidden = new double[numHidden];
+		for(int i = 0; i < directWeights; i++) {
+			params[i] = (random.nextDouble() - 0.5) * 0.2;
+		}
+		for(int h = 0; h < numHidden; h++) {
+			params[hiddenBiases + h] = 0.5;
+		}
+		for(int i = outputWeights; i < outputBias; i++) {
+			params[i] = (random.nextDouble() - 0.5) * 0.2;
+		}
+		this.tied = new int[params.length];
+		for(int i = 0; i < params.length; i++) {
+			tied[i] = i;
+		}
+		for(int input = 0; input < numInputs; input++) {
+			int mirrored = NeuralNetwork.mirrorInput(size, input);
+			for(int h = 0; h < numHidden; h++) {
+				tied[input * numHidden + h] = mirrored * numHidden + NeuralNetwork.twin(numHidden, h);
+			}
+			tied[directWeights + input] = directWeights + mirrored;
+		}
+		for(int h = 0; h < numHidden; h++) {
+			int twin = NeuralNetwork.twin(numHidden, h);
+			tied[hiddenBiases + h] = hiddenBiases + twin;
+			tied[outputWeights + h] = outputWeights + twin;
+			tied[outputWeights + numHidden + h] = outputWeights + numHidden + twin;
+		}
+		for(int i = 0; i < params.length; i++) {
+			params[i] = params[Math.min(i, tied[i])];
+		}
+	}
+	
+	/**
+	 * Plays the Games, trains the network and writes it.
+	 * @param args
+	 * @throws IOException
+	 * @throws InterruptedException
+	 * @throws ExecutionException
+	 */
+	public static void main(String[] args) throws IOException, InterruptedException, ExecutionException {
+		int numGames = 12000;
+		int numHidden = 64;
+		int numEpochs = 16;
+		int numThreads = Runtime.getRuntime().availableProcessors();
+		int openingPlies = 8;
+		double resultWeight = 0.5;
+		long seed = 1;
+		String out = null;
+		for(int i = 0; i + 1 < args.length; i++) {
+			if(args[i].equals("-games")) {
+				numGames = Integer.parseInt(args[i+1]);
+			}
+			else if(args[i].equals("-hidden")) {
+				numHidden = Integer.parseInt(args[i+1]);
+			}
+			else if(args[i].equals("-epochs")) {
+				numEpochs = Integer.parseInt(args[i+1]);
+			}
+			else if(args[i].equals("-threads")) {
+				numThreads = Integer.parseInt(args[i+1]);
+			}
+			else if(args[i].equals("-opening")) {
+				openingPlies = Integer.parseInt(args[i+1]);
+			}
+			else if(args[i].equals("-result")) {
+				resultWeight = Double.parseDouble(args[i+1]);
+			}
+			else if(args[i].equals("-seed")) {
+				seed = Long.parseLong(args[i+1]);
+			}
+			else if(args[i].equals("-out")) {
+				out = args[i+1];
+			}
+		}
+		if(out == null) {
+			System.out.println("Usage: NetworkTrainer -out FILE [-games N] [-hidden N] [-epochs N] [-threads N] "
+					+ "[-opening PLIES] [-result WEIGHT] [-seed S] [options]");
+			return;
+		}
+		final GameConfig config = new GameConfig().withTableSizeMB(TABLE_SIZE_MB).withNumThreads(1)
+				.withEvaluation(Evaluation.FEATURES).withArguments(args);
+		System.out.println("Self-play: " + config + ", " + numGames + " games from " + openingPlies
+				+ "-ply random openings on " + numThreads + " threads");
+		
+		ExecutorService pool = Executors.newFixedThreadPool(numThreads);
+		List<Future<List<Sample>>> futures = new ArrayList<Future<List<Sample>>>();
+		long start = System.nanoTime();
+		for(int game = 0; game < numGames; game++) {
+			final Random random = new Random(seed * 1000003 + game);
+			final int plies = openingPlies;
+			// the test positions are valued by the final score alone, like those of EvaluationTuner
+			final double weight = game % HOLDOUT == HOLDOUT - 1 ? 1 : resultWeight;
+			futures.add(pool.submit(() -> play(State.randomOpening(random, config.getBoardSize(), plies), config,
+					weight)));
+		}
+		List<Sample> training = new ArrayList<Sample>();
+		List<Sample> test = new ArrayList<Sample>();
+		for(int game = 0; game < numGames; game++) {
+			(game % HOLDOUT == HOLDOUT - 1 ? test : training).addAll(futures.get(game).get());
+		}
+		pool.shutdown();
+		System.out.printf("%d training and %d test positions in %d s%n", training.size(), test.size(),
+				(System.nanoTime() - start) / 1000000000);
+		
+		Random random = new Random(seed);
+		NetworkTrainer trainer = new NetworkTrainer(config.getBoardSize(), numHidden, random);
+		start = System.nanoTime();
+		for(int epoch = 1; epoch <= numEpochs; epoch++) {
+			double trainingError = trainer.train(training, random);
+			System.out.printf("epoch %d: RMS error %.3f training, %.3f test%n", epoch, trainingError, trainer.rmsError(test));
+		}
+		NeuralNetwork network = trainer.quantise();
+		System.out.printf("Trained in %d s.  RMS error on the test positions: score %.3f, network %.3f, quantised %.3f%n",
+				(System.nanoTime() - start) / 1000000000, rmsError(null, test), trainer.rmsError(test),
+				rmsError(network, test));
+		try(OutputStream stream = Files.newOutputStream(Paths.get(out))) {
+			network.write(stream);
+		}
+		System.out.println("Wrote the network to " + out);
+	}
+	
+	/**
+	 * Plays one Game of the computer against itself and keeps its positions as samples.
+	 * @param opening		the State after the opening
+	 * @param config		settings of the search of both sides
+	 * @param resultWeight	the weight of the final score difference in the target, against the value of the search
+	 * @return				the samples
+	 */
+	private static List<Sample> play(State opening, GameConfig config, double resultWeight) {
+		List<SearchResult> results = new ArrayList<SearchResult>();
+		List<State> states = EvaluationTuner.selfPlay(opening, config, results);
+		State end = states.get(states.size() - 1);
+		BoardSize size = end.getSize();
+		List<Sample> samples = new ArrayList<Sample>();
+		for(int i = 0; i < states.size() - 1; i++) {
+			State state = states.get(i);
+			char piece = state.getNextMovePiece();
+			char other = piece == 'X' ? 'O' : 'X';
+			double scoreDifference = state.score(piece) - state.score(other);
+			double finalDifference = end.score(piece) - end.score(other);
+			double target = resultWeight * finalDifference + (1 - resultWeight) * results.get(i).getValue() - scoreDifference;
+			int[] inputs = new int[state.turnNumber];
+			int numInputs = 0;
+			char[][] grid = state.getGrid();
+			for(int col = 0; col < size.getColumns(); col++) {
+				for(int row = 0; row < size.getRows(); row++) {
+					char cell = grid[size.getRows() - 1 - row][col];
+					if(cell != '.') {
+						int offset = cell == piece ? 0 : size.getNumCells();
+						inputs[numInputs++] = offset + col * size.getRows() + row;
+					}
+				}
+			}
+			samples.add(new Sample(inputs, scoreDifference, target));
+		}
+		return samples;
+	}
+	
+	/**
+	 * Trains the network on every sample once, in a random order.
+	 * @param samples	the samples
+	 * @param random	source of the order
+	 * @return			the RMS error of the samples before each step
+	 */
+	double train(List<Sample> samples, Random random) {
+		int[] order = new int[samples.size()];
+		for(int i = 0; i < order.length; i++) {
+			order[i] = i;
+		}
+		for(int i = order.length - 1; i > 0; i--) {
+			int j = random.nextInt(i + 1);
+			int swap = order[i];
+			order[i] = order[j];
+			order[j] = swap;
+		}
+		double squaredError = 0;
+		for(int first = 0; first < order.length; first += BATCH_SIZE) {
+			Arrays.fill(gradient, 0);
+			int last = Math.min(order.length, first + BATCH_SIZE);
+			for(int i = first; i < last; i++) {
+				Sample sample = samples.get(order[i]);
+				double error = predict(sample) - sample.target;
+				squaredError += error * error;
+				backPropagate(sample, error / (last - first));
+			}
+			adam();
+		}
+		return Math.sqrt(squaredError / Math.max(1, samples.size()));
+	}
+	
+	/**
+	 * Computes the output of the network, leaving the hidden values in ownHidden and otherHidden.
+	 * @param sample	the position
+	 * @return			the predicted change of the score difference
+	 */
+	private double predict(Sample sample) {
+		for(int h = 0; h < numHidden; h++) {
+			ownHidden[h] = params[hiddenBiases + h];
+			otherHidden[h] = params[hiddenBiases + h];
+		}
+		double output = params[outputBias];
+		int half = numInputs / 2;
+		for(int input : sample.inputs) {
+			int otherInput = input < half ? input + half : input - half;
+			int own = input * numHidden;
+			int other = otherInput * numHidden;
+			for(int h = 0; h < numHidden; h++) {
+				ownHidden[h] += params[own + h];
+				otherHidden[h] += params[other + h];
+			}
+			output += params[directWeights + input] - params[directWeights + otherInput];
+		}
+		for(int h = 0; h < numHidden; h++) {
+			output += clip(ownHidden[h]) * params[outputWeights + h] + clip(otherHidden[h]) * params[outputWeights + numHidden + h];
+		}
+		return output * NeuralNetwork.VALUE_SCALE + params[scoreWeight] * sample.scoreDifference;
+	}
+	
+	/**
+	 * Adds the gradient of the squared error of the last prediction to gradient.
+	 * @param sample	the position of the last prediction
+	 * @param error		the error of the last prediction, divided by the size of the batch
+	 */
+	private void backPropagate(Sample sample, double error) {
+		gradient[scoreWeight] += error * sample.scoreDifference;
+		error *= NeuralNetwork.VALUE_SCALE;				// the error of the output
+		gradient[outputBias] += error;
+		int half = numInputs / 2;
+		for(int h = 0; h < numHidden; h++) {
+			gradient[outputWeights + h] += error * clip(ownHidden[h]);
+			gradient[outputWeights + numHidden + h] += error * clip(otherHidden[h]);
+			double own = ownHidden[h] > 0 && ownHidden[h] < 1 ? error * params[outputWeights + h] : 0;
+			double other = otherHidden[h] > 0 && otherHidden[h] < 1 ? error * params[outputWeights + numHidden + h] : 0;
+			gradient[hiddenBiases + h] += own + other;
+			ownHidden[h] = own;					// reused for the gradient of the hidden values
+			otherHidden[h] = other;
+		}
+		for(int input : sample.inputs) {
+			int otherInput = input < half ? input + half : input - half;
+			int own = input * numHidden;
+			int other = otherInput * numHidden;
+			for(int h = 0; h < numHidden; h++) {
+				gradient[own + h] += ownHidden[h];
+				gradient[other + h] += otherHidden[h];
+			}
+			gradient[directWeights + input] += error;
+			gradient[directWeights + otherInput] -= error;
+		}
+	}
+	
+	/**
+	 * Takes a step of Adam along gradient, then keeps the output weights within 8 bits.  Tied parameters are moved by
+	 * the sum of their gradients, so they stay equal.
+	 */
+	private void adam() {
+		for(int i = 0; i < params.length; i++) {
+			if(tied[i] > i) {
+				gradient[i] += gradient[tied[i]];
+				gradient[tied[i]] = gradient[i];
+			}
+		}
+		step++;
+		double rate = LEARNING_RATE * Math.sqrt(1 - Math.pow(BETA2, step)) / (1 - Math.pow(BETA1, step));
+		for(int i = 0; i < params.length; i++) {
+			if(gradient[i] == 0 && mean[i] == 0) {
+				continue;
+			}
+			mean[i] = BETA1 * mean[i] + (1 - BETA1) * gradient[i];
+			meanSquare[i] = BETA2 * meanSquare[i] + (1 - BETA2) * gradient[i] * gradient[i];
+			params[i] -= rate * mean[i] / (Math.sqrt(meanSquare[i]) + EPSILON);
+		}
+		for(int i = outputWeights; i < outputBias; i++) {
+			params[i] = Math.max(-MAX_OUTPUT_WEIGHT, Math.min(MAX_OUTPUT_WEIGHT, params[i]));
+		}
+	}
+	
+	/**
+	 * @param samples	the samples
+	 * @return			the RMS error of the network in floating point
+	 */
+	double rmsError(List<Sample> samples) {
+		double squaredError = 0;
+		for(Sample sample : samples) {
+			double error = predict(sample) - sample.target;
+			squaredError += error * error;
+		}
+		return Math.sqrt(squaredError / Math.max(1, samples.size()));
+	}
+	
+	/**
+	 * @param network	a quantised network; null to predict no change, as SCORE does
+	 * @param samples	the samples
+	 * @return			the RMS error of the network
+	 */
+	private static double rmsError(NeuralNetwork network, List<Sample> samples) {
+		double squaredError = 0;
+		for(Sample sample : samples) {
+			double prediction = 0;
+			if(network != null) {
+				BoardSize size = network.getSize();
+				NeuralNetwork.Accumulator accumulator = network.newAccumulator();
+				for(int input : sample.inputs) {
+					int cell = input % size.getNumCells();
+					accumulator.add(input < size.getNumCells() ? 'O' : 'X', cell / size.getRows(), cell % size.getRows());
+				}
+				prediction = accumulator.evaluate('O', sample.scoreDifference);
+			}
+			double error = prediction - sample.target;
+			squaredError += error * error;
+		}
+		return Math.sqrt(squaredError / Math.max(1, samples.size()));
+	}
+	
+	/**
+	 * @return			the network with its weights quantised
+	 */
+	NeuralNetwork quantise() {
+		short[] inputWeightsQ = new short[directWeights];
+		for(int i = 0; i < inputWeightsQ.length; i++) {
+			inputWeightsQ[i] = toShort(params[i] * NeuralNetwork.HIDDEN_SCALE);
+		}
+		short[] directWeightsQ = new short[numInputs];
+		for(int i = 0; i < numInputs; i++) {
+			directWeightsQ[i] = toShort(params[directWeights + i] * NeuralNetwork.HIDDEN_SCALE * NeuralNetwork.OUTPUT_SCALE);
+		}
+		short[] hiddenBiasesQ = new short[numHidden];
+		for(int h = 0; h < numHidden; h++) {
+			hiddenBiasesQ[h] = toShort(params[hiddenBiases + h] * NeuralNetwork.HIDDEN_SCALE);
+		}
+		byte[] outputWeightsQ = new byte[2 * numHidden];
+		for(int h = 0; h < outputWeightsQ.length; h++) {
+			outputWeightsQ[h] = (byte)Math.max(-127, Math.min(127, Math.round(params[outputWeights + h] * NeuralNetwork.OUTPUT_SCALE)));
+		}
+		int outputBiasQ = (int)Math.round(params[outputBias] * NeuralNetwork.HIDDEN_SCALE * NeuralNetwork.OUTPUT_SCALE);
+		int scoreWeightQ = (int)Math.round(params[scoreWeight] * NeuralNetwork.OUTPUT_SCALE);
+		return new NeuralNetwork(size, numHidden, inputWeightsQ, directWeightsQ, hiddenBiasesQ, outputWeightsQ, outputBiasQ,
+				scoreWeightQ);
+	}
+	
+	/**
+	 * @param value		a weight times its scale
+	 * @return			the weight rounded to 16 bits
+	 */
+	private static short toShort(double value) {
+		return (short)Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, Math.round(value)));
+	}
+	
+	/**
+	 * @param value		a hidden value
+	 * @return			the value clipped to 0..1
+	 */
+	private static double clip(double value) {
+		return Math.min(Math.max(value, 0), 1);
+	}
+}
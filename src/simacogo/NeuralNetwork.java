@@ -0,0 +1,384 @@
+package simacogo;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * A small neural network that values a board for the NEURAL Evaluation.  Its first layer is kept up to date move by
+ * move, as in the networks of chess engines, and its weights are integers, read from a file written by NetworkTrainer.
+ * A NeuralNetwork never changes, so one is shared by every search.
+ * @author Patrick Drucker
+ */
+public final class NeuralNetwork {
+	static final int MAGIC = 0x534D434E;			// "SMCN", the first four bytes of a network file
+	static final int VERSION = 1;					// version of the file format
+	static final int HIDDEN_SCALE = 127;			// the accumulator value of a hidden value of 1; clipped to 0..HIDDEN_SCALE
+	static final int OUTPUT_SCALE = 64;				// the output weight of a weight of 1
+	static final int VALUE_SCALE = 8;				// points of score difference per unit of output
+	private static final String DEFAULT_RESOURCE = "network-9x9.nnue";	// the network built into the jar
+	private final BoardSize size;					// the size of the grid the network values
+	private final int numHidden;					// hidden values per side
+	private final short[] inputWeights;				// weights of the first layer, numHidden per input
+	private final short[] directWeights;			// weights from each input straight to the output
+	private final short[] hiddenBiases;				// biases of the first layer
+	private final byte[] outputWeights;				// weights of the output layer: side to move, then the other side
+	private final int outputBias;					// bias of the output layer
+	private final int scoreWeight;					// weight of the score difference of the side to move
+	
+	/**
+	 * Holds the network of the NEURAL Evaluation, which is read the first time it is needed.
+	 */
+	private static final class Default {
+		static final NeuralNetwork NETWORK = readDefault();
+	}
+	
+	/**
+	 * Creates a NeuralNetwork from quantised weights.
+	 * @param size			the size of the grid the network values
+	 * @param numHidden		hidden values per side
+	 * @param inputWeights	weights of the first layer, numHidden per input
+	 * @param directWeights	weights from each input straight to the output
+	 * @param hiddenBiases	biases of the first layer
+	 * @param outputWeights	weights of the output layer: side to move, then the other side
+	 * @param outputBias	bias of the output layer
+	 * @param scoreWeight	weight of the score difference of the side to move
+	 */
+	NeuralNetwork(BoardSize size, int numHidden, short[] inputWeights, short[] directWeights, short[] hiddenBiases,
+			byte[] outputWeights, int outputBias, int scoreWeight) {
+		if(inputWeights.length != 2 * size.getNumCells() * numHidden || directWeights.length != 2 * size.getNumCells()
+				|| hiddenBiases.length != numHidden || outputWeights.length != 2 * numHidden) {
+			throw new IllegalArgumentException("Weights do not fit a network of " + numHidden + " hidden values on " + size);
+		}
+		if(numHidden % 2 != 0) {
+			throw new IllegalArgumentException("An odd number of hidden values: " + numHidden);
+		}
+		this.size = size;
+		this.numHidden = numHidden;
+		this.inputWeights = inputWeights;
+		this.directWeights = directWeights;
+		this.hiddenBiases = hiddenBiases;
+		this.outputWeights = outputWeights;
+		this.outputBias = outputBias;
+		this.scoreWeight = scoreWeight;
+	}
+	
+	/**
+	 * Reads a network.  A file holds a network for one size of grid, with cells numbered column by column from the
+	 * bottom:
+	 * <pre>
+	 * magic, version, rows, columns, hidden		ints
+	 * input weights		short per input and hidden value: my pieces cell by cell, then the opponent's
+	 * direct weights		short per input, HIDDEN_SCALE * OUTPUT_SCALE to 1
+	 * hidden biases		short per hidden value
+	 * output weights		byte per hidden value of the side to move, then of the other side
+	 * output bias			int, HIDDEN_SCALE * OUTPUT_SCALE to 1
+	 * score weight			int, OUTPUT_SCALE to 1
+	 * </pre>
+	 * @param in			the stream, which is not closed
+	 * @return				the NeuralNetwork
+	 * @throws IOException	if the stream cannot be read or does not hold a network that values mirror images alike
+	 */
+	public static NeuralNetwork read(InputStream in) throws IOException {
+		DataInputStream data = new DataInputStream(new BufferedInputStream(in));
+		if(data.readInt() != MAGIC) {
+			throw new IOException("Not a network");
+		}
+		int version = data.readInt();
+		if(version != VERSION) {
+			throw new IOException("Unsupported network version: " + version);
+		}
+		BoardSize size;
+		int numHidden;
+		try {
+			size = BoardSize.of(data.readInt(), data.readInt());
+			numHidden = data.readInt();
+		}
+		catch(IllegalArgumentException e) {
+			throw new IOException("Not a network", e);
+		}
+		if(numHidden < 2 || numHidden > 1024 || numHidden % 2 != 0) {
+			throw new IOException("Not a network of " + numHidden + " hidden values");
+		}
+		short[] inputWeights = new short[2 * size.getNumCells() * numHidden];
+		for(int i = 0; i < inputWeights.length; i++) {
+			inputWeights[i] = data.readShort();
+		}
+		short[] directWeights = new short[2 * size.getNumCells()];
+		for(int i = 0; i < directWeights.length; i++) {
+			directWeights[i] = data.readShort();
+		}
+		short[] hiddenBiases = new short[numHidden];
+		for(int i = 0; i < hiddenBiases.length; i++) {
+			hiddenBiases[i] = data.readShort();
+		}
+		byte[] outputWeights = new byte[2 * numHidden];
+		data.readFully(outputWeights);
+		int outputBias = data.readInt();
+		NeuralNetwork network = new NeuralNetwork(size, numHidden, inputWeights, directWeights, hiddenBiases,
+				outputWeights, outputBias, data.readInt());
+		if(!network.isSymmetric()) {
+			throw new IOException("Not a network that values mirror images alike: train it again with NetworkTrainer");
+		}
+		return network;
+	}
+	
+	/**
+	 * The searches share the results of a board and its mirror image (see State.getCanonicalHash), so the network has
+	 * to value them alike: the weight of a cell to a hidden value is the weight of the mirrored cell to its twin, twins
+	 * have the same bias and output weights, and mirrored cells have the same direct weight.  Mirroring the board then
+	 * only swaps the twins, and the sums of the output layer stay the same to the last bit.
+	 * @return			true if the weights are tied so that the network values a board and its mirror image alike
+	 */
+	boolean isSymmetric() {
+		for(int input = 0; input < directWeights.length; input++) {
+			int mirrored = mirrorInput(size, input);
+			if(directWeights[input] != directWeights[mirrored]) {
+				return false;
+			}
+			for(int h = 0; h < numHidden; h++) {
+				if(inputWeights[input * numHidden + h] != inputWeights[mirrored * numHidden + twin(numHidden, h)]) {
+					return false;
+				}
+			}
+		}
+		for(int h = 0; h < numHidden; h++) {
+			int twin = twin(numHidden, h);
+			if(hiddenBiases[h] != hiddenBiases[twin] || outputWeights[h] != outputWeights[twin]
+					|| outputWeights[numHidden + h] != outputWeights[numHidden + twin]) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * @param size		the size of the grid
+	 * @param input		an input: a cell of my pieces, or the number of cells plus a cell of the opponent's
+	 * @return			the input of the same piece in the mirrored cell
+	 */
+	static int mirrorInput(BoardSize size, int input) {
+		int cell = input % size.getNumCells();
+		return input - cell + size.mirror(cell / size.getRows()) * size.getRows() + cell % size.getRows();
+	}
+	
+	/**
+	 * @param numHidden	hidden values per side
+	 * @param h			a hidden value
+	 * @return			the hidden value that sees the mirror image of what h sees (h + numHidden / 2 in the first half)
+	 */
+	static int twin(int numHidden, int h) {
+		return h < numHidden / 2 ? h + numHidden / 2 : h - numHidden / 2;
+	}
+	
+	/**
+	 * Reads a network file.
+	 * @param file			the file
+	 * @return				the NeuralNetwork
+	 * @throws IOException	if the file cannot be read or does not hold a network
+	 */
+	public static NeuralNetwork read(Path file) throws IOException {
+		try(InputStream in = Files.newInputStream(file)) {
+			return read(in);
+		}
+	}
+	
+	/**
+	 * Writes the network, to be read by read.
+	 * @param out			the stream, which is flushed but not closed
+	 * @throws IOException	if the stream cannot be written
+	 */
+	public void write(OutputStream out) throws IOException {
+		DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out));
+		data.writeInt(MAGIC);
+		data.writeInt(VERSION);
+		data.writeInt(size.getRows());
+		data.writeInt(size.getColumns());
+		data.writeInt(numHidden);
+		for(short weight : inputWeights) {
+			data.writeShort(weight);
+		}
+		for(short weight : directWeights) {
+			data.writeShort(weight);
+		}
+		for(short bias : hiddenBiases) {
+			data.writeShort(bias);
+		}
+		data.write(outputWeights);
+		data.writeInt(outputBias);
+		data.writeInt(scoreWeight);
+		data.flush();
+	}
+	
+	/**
+	 * @return			the network of "-Dsimacogo.network=FILE", or else the network built into the jar; null if neither
+	 * @throws IllegalStateException	if the network cannot be read
+	 */
+	private static NeuralNetwork readDefault() {
+		String file = System.getProperty("simacogo.network");
+		try {
+			if(file != null) {
+				return read(Paths.get(file));
+			}
+			try(InputStream in = NeuralNetwork.class.getResourceAsStream(DEFAULT_RESOURCE)) {
+				return in == null ? null : read(in);
+			}
+		}
+		catch(IOException e) {
+			throw new IllegalStateException("Cannot read the network " + (file != null ? file : DEFAULT_RESOURCE), e);
+		}
+	}
+	
+	/**
+	 * @param size		the size of the grid
+	 * @return			the network of the NEURAL Evaluation
+	 * @throws IllegalStateException	if there is no network for grids of that size
+	 */
+	static NeuralNetwork getDefault(BoardSize size) {
+		if(!hasDefault(size)) {
+			throw new IllegalStateException(noNetwork(size));
+		}
+		return Default.NETWORK;
+	}
+	
+	/**
+	 * @param size		the size of the grid
+	 * @return			true if the NEURAL Evaluation has a network for grids of that size
+	 * @throws IllegalStateException	if the network cannot be read
+	 */
+	static boolean hasDefault(BoardSize size) {
+		return Default.NETWORK != null && Default.NETWORK.size == size;
+	}
+	
+	/**
+	 * @param size		the size of the grid
+	 * @return			the message for a grid without a network
+	 */
+	static String noNetwork(BoardSize size) {
+		return "No network for " + size + ": train one with NetworkTrainer and run with -Dsimacogo.network=FILE";
+	}
+	
+	/**
+	 * @return			a new Accumulator of the empty grid
+	 */
+	Accumulator newAccumulator() {
+		return new Accumulator();
+	}
+	
+	/**
+	 * @return size		the size of the grid the network values
+	 */
+	public BoardSize getSize() {
+		return size;
+	}
+	
+	/**
+	 * @return numHidden	hidden values per side
+	 */
+	public int getNumHidden() {
+		return numHidden;
+	}
+	
+	/**
+	 * The first layer of the network for one board, from each side, kept up to date by the moves of the board.
+	 */
+	final class Accumulator {
+		private final int[] sideX = new int[numHidden];	// the hidden values of 'X', before clipping
+		private final int[] sideO = new int[numHidden];	// the hidden values of 'O', before clipping
+		private int directX;							// the direct sum of 'X'
+		private int directO;							// the direct sum of 'O'
+		
+		private Accumulator() {
+			clear();
+		}
+		
+		/**
+		 * Resets the accumulator to the empty grid.
+		 */
+		void clear() {
+			for(int h = 0; h < numHidden; h++) {
+				sideX[h] = hiddenBiases[h];
+				sideO[h] = hiddenBiases[h];
+			}
+			directX = 0;
+			directO = 0;
+		}
+		
+		/**
+		 * Adds a piece.
+		 * @param piece		'X' or 'O'
+		 * @param col		its column (0 is the leftmost)
+		 * @param row		its row (0 is the bottom)
+		 */
+		void add(char piece, int col, int row) {
+			int cell = col * size.getRows() + row;
+			int own = cell * numHidden;
+			int other = (size.getNumCells() + cell) * numHidden;
+			int[] ownSide = piece == 'X' ? sideX : sideO;
+			int[] otherSide = piece == 'X' ? sideO : sideX;
+			for(int h = 0; h < numHidden; h++) {
+				ownSide[h] += inputWeights[own + h];
+				otherSide[h] += inputWeights[other + h];
+			}
+			int ownDirect = directWeights[cell];
+			int otherDirect = directWeights[size.getNumCells() + cell];
+			directX += piece == 'X' ? ownDirect : otherDirect;
+			directO += piece == 'X' ? otherDirect : ownDirect;
+		}
+		
+		/**
+		 * Takes away a piece.
+		 * @param piece		'X' or 'O'
+		 * @param col		its column (0 is the leftmost)
+		 * @param row		its row (0 is the bottom)
+		 */
+		void remove(char piece, int col, int row) {
+			int cell = col * size.getRows() + row;
+			int own = cell * numHidden;
+			int other = (size.getNumCells() + cell) * numHidden;
+			int[] ownSide = piece == 'X' ? sideX : sideO;
+			int[] otherSide = piece == 'X' ? sideO : sideX;
+			for(int h = 0; h < numHidden; h++) {
+				ownSide[h] -= inputWeights[own + h];
+				otherSide[h] -= inputWeights[other + h];
+			}
+			int ownDirect = directWeights[cell];
+			int otherDirect = directWeights[size.getNumCells() + cell];
+			directX -= piece == 'X' ? ownDirect : otherDirect;
+			directO -= piece == 'X' ? otherDirect : ownDirect;
+		}
+		
+		/**
+		 * Applies the output layer to the accumulators of both sides, clipped to 0..HIDDEN_SCALE, and adds the direct
+		 * sum of piece minus the other side's and the weighted score difference.  The result is rounded to multiples of
+		 * VALUE_SCALE / OUTPUT_SCALE, a power of two (see TranspositionTable).
+		 * @param piece				the piece that has the next move
+		 * @param scoreDifference	its score minus the other piece's
+		 * @return					how the score difference will change by the end of the Game, for piece
+		 */
+		double evaluate(char piece, double scoreDifference) {
+			int[] ownSide = piece == 'X' ? sideX : sideO;
+			int[] otherSide = piece == 'X' ? sideO : sideX;
+			int output = outputBias + (piece == 'X' ? directX - directO : directO - directX);
+			for(int h = 0; h < numHidden; h++) {
+				output += clip(ownSide[h]) * outputWeights[h] + clip(otherSide[h]) * outputWeights[numHidden + h];
+			}
+			return (Math.round((double)output / HIDDEN_SCALE) * VALUE_SCALE + scoreWeight * scoreDifference) / OUTPUT_SCALE;
+		}
+	}
+	
+	/**
+	 * @param value		a hidden value
+	 * @return			the value clipped to 0..HIDDEN_SCALE
+	 */
+	private static int clip(int value) {
+		return Math.min(Math.max(value, 0), HIDDEN_SCALE);
+	}
+}
@@ -0,0 +1,57 @@
+package simacogo;
+
+import java.util.Random;
+
+/**
+ * Compares the number of States visited by Minimax and AlphaBeta at the same depth, on the empty board and on
+ * positions reached by random play.  Also checks that both algorithms choose the same column, and prints the
+ * transposition table hit rate of each alpha-beta search.
+ * Usage: NodeCountBenchmark [maxPlies] [numPositions] [seed]
+ * @author Patrick Drucker
+ */
+public class NodeCountBenchmark {
+	
+	/**
+	 * Runs the benchmark and prints one line per position and depth.
+	 * @param args
+	 */
+	public static void main(String[] args) {
+		int maxPlies = args.length > 0 ? Integer.parseInt(args[0]) : 6;
+		int numPositions = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+		Random random = new Random(args.length > 2 ? Long.parseLong(args[2]) : 1);
+		Game game = new Game(maxPlies);
+		Player computer = game.getComputerPlayer();
+		Minimax minimax = new Minimax();
+		AlphaBeta alphaBeta;
+		
+		System.out.println("position\tplies\tminimax nodes\tms\talpha-beta nodes\tms\tratio\ttable hits\tsame move");
+		State state = game.getCurrentState();
+		for(int position = 0; position < numPositions; position++) {
+			for(int numPlies = 1; numPlies <= maxPlies; numPlies++) {
+				minimax.resetNodeCount();
+				long start = System.nanoTime();
+				minimax.minimax(state, numPlies, true, computer);
+				long minimaxMillis = (System.nanoTime() - start) / 1000000;
+				int minimaxColumn = minimax.getResultingState().getColumnDropped();
+				
+				alphaBeta = new AlphaBeta();		// a fresh table, so that earlier searches do not help
+				start = System.nanoTime();
+				alphaBeta.search(state, numPlies, computer);
+				long alphaBetaMillis = (System.nanoTime() - start) / 1000000;
+				int alphaBetaColumn = alphaBeta.getResultingState().getColumnDropped();
+				
+				System.out.printf("%d\t%d\t%d\t%d\t%d\t%d\t%.3f\t%.1f%%\t%b%n", position, numPlies, minimax.getNodeCount(), minimaxMillis,
+						alphaBeta.getNodeCount(), alphaBetaMillis, (double)alphaBeta.getNodeCount() / minimax.getNodeCount(),
+						100 * alphaBeta.getTableHitRate(), minimaxColumn == alphaBetaColumn);
+			}
+			// play a few random moves to reach the next position
+			for(int move = 0; move < 10 && !state.isTerminalState(); move++) {
+				int col;
+				do {
+					col = random.nextInt(State.COLUMNS);
+				} while(state.numAvailableSpaces(col) == 0);
+				state = state.dropPiece(col);
+			}
+		}
+	}
+}
@@ -0,0 +1,154 @@
+package simacogo;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * A read-only book of opening moves, stored in a binary file that is memory-mapped rather than read, so opening even
+ * a large book takes no time and the pages of the file are only loaded when they are looked up.  The file is written
+ * by OpeningBookGenerator.
+ * The file is a header followed by a hash table of fixed-size entries, indexed by the canonical Zobrist hash of a State
+ * with linear probing, so a position and its mirror image share one entry.  Every entry holds the hash, the piece that
+ * has the next move, the best column of the canonical position and its value for that piece.  An OpeningBook never
+ * changes after it is opened, so one can be shared by any number of Games.
+ * @author Patrick Drucker
+ */
+public final class OpeningBook {
+	private static final int MAGIC = 0x534D4342;	// "SMCB", the first four bytes of a book file
+	private static final int VERSION = 2;			// version of the file format (2: canonical hashes and columns)
+	private static final int HEADER_BYTES = 24;		// magic, version, number of slots, number of positions, plies, depth
+	private static final int ENTRY_BYTES = 12;		// hash (8), value (2), best column + 1 (1), piece (1)
+	private static final int VALUE_OFFSET = 8;
+	private static final int COLUMN_OFFSET = 10;
+	private static final int PIECE_OFFSET = 11;
+	private final MappedByteBuffer buffer;		// the mapped file
+	private final int slotMask;					// number of slots - 1 (the number of slots is a power of two)
+	private final int numPositions;				// number of positions in the book
+	private final int plies;					// the book holds every position up to this many plies from the start
+	private final int searchDepth;				// depth of the search that found each move
+	
+	private OpeningBook(MappedByteBuffer buffer) throws IOException {
+		this.buffer = buffer;
+		if(buffer.capacity() < HEADER_BYTES || buffer.getInt(0) != MAGIC) {
+			throw new IOException("Not an opening book");
+		}
+		if(buffer.getInt(4) != VERSION) {
+			throw new IOException("Unsupported opening book version: " + buffer.getInt(4));
+		}
+		int numSlots = buffer.getInt(8);
+		if(Integer.bitCount(numSlots) != 1 || buffer.capacity() != HEADER_BYTES + (long)numSlots * ENTRY_BYTES) {
+			throw new IOException("Opening book is truncated or corrupt");
+		}
+		this.slotMask = numSlots - 1;
+		this.numPositions = buffer.getInt(12);
+		this.plies = buffer.getInt(16);
+		this.searchDepth = buffer.getInt(20);
+	}
+	
+	/**
+	 * Opens a book file by mapping it into memory.
+	 * @param file			the book file
+	 * @return				the OpeningBook
+	 * @throws IOException	if the file cannot be read or is not an opening book
+	 */
+	public static OpeningBook open(Path file) throws IOException {
+		try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			return new OpeningBook(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+		}
+	}
+	
+	/**
+	 * Writes a book file.  The mapping stays valid after the channel is closed.
+	 * @param file			the book file, replaced if it exists
+	 * @param plies			the number of plies from the start that the book covers
+	 * @param searchDepth	the depth of the search that found each move
+	 * @param states		the positions of the book, without mirror images of each other
+	 * @param results		the result of the search of each position, for the piece that has the next move
+	 * @throws IOException	if the file cannot be written
+	 */
+	static void write(Path file, int plies, int searchDepth, List<State> states, List<SearchResult> results)
+			throws IOException {
+		int numSlots = Integer.highestOneBit(Math.max(1, states.size() * 2 - 1)) * 2;	// at most half full
+		try(FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+				StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			MappedByteBuffer out = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES + (long)numSlots * ENTRY_BYTES);
+			out.putInt(0, MAGIC);
+			out.putInt(4, VERSION);
+			out.putInt(8, numSlots);
+			out.putInt(12, states.size());
+			out.putInt(16, plies);
+			out.putInt(20, searchDepth);
+			for(int i = 0; i < states.size(); i++) {
+				State state = states.get(i);
+				int offset = find(out, numSlots - 1, state.getCanonicalHash(), state.getNextMovePiece());
+				out.putLong(offset, state.getCanonicalHash());
+				out.putShort(offset + VALUE_OFFSET, (short)Math.round(results.get(i).getValue()));
+				out.put(offset + COLUMN_OFFSET, (byte)(state.canonicalColumn(results.get(i).getBestColumn()) + 1));
+				out.put(offset + PIECE_OFFSET, (byte)state.getNextMovePiece());
+			}
+			out.force();
+		}
+	}
+	
+	/**
+	 * Finds the slot of a position, or the empty slot where it would go.
+	 * @param buffer	the mapped file
+	 * @param slotMask	number of slots - 1
+	 * @param hash		canonical Zobrist hash of the position
+	 * @param piece		the piece that has the next move
+	 * @return			the byte offset of the slot
+	 */
+	private static int find(ByteBuffer buffer, int slotMask, long hash, char piece) {
+		int slot = (int)hash & slotMask;
+		while(true) {
+			int offset = HEADER_BYTES + slot * ENTRY_BYTES;
+			if(buffer.get(offset + COLUMN_OFFSET) == 0
+					|| (buffer.getLong(offset) == hash && buffer.get(offset + PIECE_OFFSET) == (byte)piece)) {
+				return offset;
+			}
+			slot = (slot + 1) & slotMask;
+		}
+	}
+	
+	/**
+	 * Looks up the move of a State.
+	 * @param state		the current State
+	 * @return			the best column and its value for the piece that has the next move; null if state is not in the book
+	 */
+	public SearchResult lookup(State state) {
+		long start = System.nanoTime();
+		int offset = find(buffer, slotMask, state.getCanonicalHash(), state.getNextMovePiece());
+		int column = buffer.get(offset + COLUMN_OFFSET) - 1;
+		if(column < 0) {
+			return null;
+		}
+		return new SearchResult(state.canonicalColumn(column), buffer.getShort(offset + VALUE_OFFSET), searchDepth, 0,
+				System.nanoTime() - start);
+	}
+	
+	/**
+	 * @return numPositions	the number of positions in the book
+	 */
+	public int getNumPositions() {
+		return numPositions;
+	}
+	
+	/**
+	 * @return plies	the book holds every position up to this many plies from the start
+	 */
+	public int getPlies() {
+		return plies;
+	}
+	
+	/**
+	 * @return searchDepth	the depth of the search that found each move
+	 */
+	public int getSearchDepth() {
+		return searchDepth;
+	}
+}
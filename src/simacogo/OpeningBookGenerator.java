@@ -0,0 +1,84 @@
+package simacogo;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Writes an OpeningBook: searches every position up to a number of plies from the initial State, with either piece
+ * moving first, and stores the best column of each.  The positions from each initial State are searched with two
+ * AlphaBetas, one per piece, with half of tableSizeMB each.
+ * Usage: OpeningBookGenerator file [plies] [searchDepth] [tableSizeMB]
+ * @author Patrick Drucker
+ */
+public class OpeningBookGenerator {
+	
+	/**
+	 * Generates the book and prints its progress.
+	 * @param args
+	 * @throws IOException
+	 */
+	public static void main(String[] args) throws IOException {
+		if(args.length < 1) {
+			System.out.println("Usage: OpeningBookGenerator file [plies] [searchDepth] [tableSizeMB]");
+			return;
+		}
+		int plies = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+		int searchDepth = args.length > 2 ? Integer.parseInt(args[2]) : 8;
+		int tableSizeMB = args.length > 3 ? Integer.parseInt(args[3]) : 256;
+		
+		List<State> states = new ArrayList<State>();
+		List<SearchResult> results = new ArrayList<SearchResult>();
+		Player[] players = new Game(new GameConfig().withTableSizeMB(0)).getPlayers();
+		long start = System.nanoTime();
+		for(State initial : new State[] {new State('O', 'X'), new State('X', 'O')}) {
+			List<State> initialStates = new ArrayList<State>();
+			positions(initial, plies, initialStates, new HashSet<Long>());
+			System.out.println(initialStates.size() + " positions up to " + plies + " plies with " + initial.getNextMovePiece()
+					+ " first, searching " + searchDepth + " plies deep");
+			// one table per searching piece, so that later positions reuse the results of earlier ones: the Zobrist hash
+			// has no side to move, which the grid only fixes within the Games from one initial State, and an AlphaBeta
+			// clears its table whenever the piece it searches for changes
+			AlphaBeta[] alphaBetas = {new AlphaBeta(Math.max(1, tableSizeMB / 2)), new AlphaBeta(Math.max(1, tableSizeMB / 2))};
+			for(State state : initialStates) {
+				int side = players[0].getPiece() == state.getNextMovePiece() ? 0 : 1;
+				AlphaBeta alphaBeta = alphaBetas[side];
+				long searchStart = System.nanoTime();
+				double value = alphaBeta.search(state, searchDepth, players[side]);
+				results.add(new SearchResult(alphaBeta.getResultingState().getColumnDropped(), value, searchDepth,
+						alphaBeta.getNodeCount(), System.nanoTime() - searchStart));
+				if(results.size() % 1000 == 0) {
+					System.out.println(results.size() + " positions searched in " + (System.nanoTime() - start) / 1000000000 + " s");
+				}
+			}
+			states.addAll(initialStates);
+		}
+		
+		OpeningBook.write(Paths.get(args[0]), plies, searchDepth, states, results);
+		System.out.println("Wrote " + states.size() + " positions to " + args[0] + " in "
+				+ (System.nanoTime() - start) / 1000000000 + " s");
+	}
+	
+	/**
+	 * Adds every position up to a number of plies from state that is not yet in the book, itself or as its mirror image.
+	 * @param state		the position to start from
+	 * @param plies		the number of plies to go down
+	 * @param states	the positions of the book
+	 * @param hashes	the canonical hashes of the positions already added from the same initial State
+	 */
+	private static void positions(State state, int plies, List<State> states, Set<Long> hashes) {
+		// a mirror image is answered by the entry of its twin
+		if(state.isTerminalState() || !hashes.add(state.getCanonicalHash())) {
+			return;
+		}
+		states.add(state);
+		if(plies > 0) {
+			for(State adj : state.successors()) {
+				positions(adj, plies - 1, states, hashes);
+			}
+		}
+	}
+}
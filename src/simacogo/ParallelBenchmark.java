@@ -0,0 +1,83 @@
+package simacogo;
+
+import java.util.Random;
+
+/**
+ * Measures how the parallel search speeds up with the number of threads.  Searches the same positions at the same
+ * depth with AlphaBeta and with ParallelSearch on 1, 2, 4... threads (up to the number of processors), each with a fresh
+ * transposition table, and prints the time, nodes per second and speedup over AlphaBeta.
+ * Usage: ParallelBenchmark [numPlies] [numPositions] [maxThreads]
+ * @author Patrick Drucker
+ */
+public class ParallelBenchmark {
+	
+	/**
+	 * Runs the benchmark and prints one line per thread count.
+	 * @param args
+	 */
+	public static void main(String[] args) {
+		int numPlies = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+		int numPositions = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+		int maxThreads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+		Player computer = new Game(numPlies).getComputerPlayer();
+		State[] positions = positions(numPositions, new Random(1));
+		
+		// warm up the JIT before timing anything
+		for(State state : positions) {
+			new AlphaBeta().search(state, Math.min(numPlies, 6), computer);
+		}
+		
+		long sequentialNanos = 0;
+		int[] sequentialColumns = new int[numPositions];
+		for(int i = 0; i < numPositions; i++) {
+			AlphaBeta alphaBeta = new AlphaBeta();
+			long start = System.nanoTime();
+			alphaBeta.search(positions[i], numPlies, computer);
+			sequentialNanos += System.nanoTime() - start;
+			sequentialColumns[i] = alphaBeta.getResultingState().getColumnDropped();
+		}
+		System.out.printf("alpha-beta\t%d ms%n", sequentialNanos / 1000000);
+		
+		System.out.println("threads\tms\tnodes/s\tspeedup\tsame moves");
+		for(int numThreads = 1; numThreads <= maxThreads; numThreads = numThreads < maxThreads && numThreads * 2 > maxThreads ? maxThreads : numThreads * 2) {
+			long nanos = 0;
+			long nodes = 0;
+			boolean sameMoves = true;
+			for(int i = 0; i < numPositions; i++) {
+				ParallelSearch search = new ParallelSearch(numThreads, AlphaBeta.DEFAULT_TABLE_SIZE_MB);
+				SearchResult result = search.search(positions[i], numPlies, computer);
+				search.shutdown();
+				nanos += result.getElapsedNanos();
+				nodes += result.getNodeCount();
+				sameMoves &= result.getBestColumn() == sequentialColumns[i];
+			}
+			System.out.printf("%d\t%d\t%.0f\t%.2f\t%b%n", numThreads, nanos / 1000000, nodes * 1e9 / nanos,
+					(double)sequentialNanos / nanos, sameMoves);
+			if(numThreads == maxThreads) {
+				break;
+			}
+		}
+	}
+	
+	/**
+	 * Creates the positions to search: the empty board and positions reached by random play.
+	 * @param numPositions	the number of positions
+	 * @param random		source of the random columns
+	 * @return				the positions
+	 */
+	private static State[] positions(int numPositions, Random random) {
+		State[] positions = new State[numPositions];
+		State state = new State();
+		for(int i = 0; i < numPositions; i++) {
+			positions[i] = state;
+			for(int move = 0; move < 8; move++) {
+				int col;
+				do {
+					col = random.nextInt(State.COLUMNS);
+				} while(state.numAvailableSpaces(col) == 0);
+				state = state.dropPiece(col);
+			}
+		}
+		return positions;
+	}
+}
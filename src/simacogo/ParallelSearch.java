@@ -0,0 +1,569 @@
+package simacogo;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A class that runs the alpha-beta search on several threads of a ForkJoinPool.
+ * Uses Young Brothers Wait: at the root and at every node with at least SPLIT_PLIES plies left, the first (most
+ * promising) column is searched on its own to get a bound, and then the other columns are searched in parallel with
+ * that bound.  A column that starts after others have finished uses the bound they found, and the columns that have
+ * not started yet are skipped as soon as the node (or a node above it) has a cutoff.  A node that is left unfinished
+ * because a node above it had a cutoff is abandoned: its value is neither stored nor passed up.  Nodes closer to the
+ * leaves are searched by an AlphaBeta worker owned by the thread.  All workers share one transposition table, so every
+ * thread also profits from what the others have already searched.
+ * Chooses the same move as AlphaBeta: the lowest column among the moves with the best value.
+ * The result is returned as a SearchResult; a ParallelSearch can be used by one search at a time.
+ * @author Patrick Drucker
+ */
+public class ParallelSearch {
+	static final int SPLIT_PLIES = 6;					// nodes with fewer plies left are searched by one thread
+	private final ForkJoinPool pool;					// threads that run the search
+	private final TranspositionTable table;				// transposition table shared by all workers
+	private final Evaluation evaluation;				// values the States at the bottom of the tree
+	private final ThreadLocal<Worker> workers;			// the worker of each thread of the pool
+	private final Queue<Worker> allWorkers = new ConcurrentLinkedQueue<Worker>();	// every worker that has been created
+	private final AtomicLongArray splitNodeCounts = new AtomicLongArray(BoardSize.MAX_CELLS + 1);	// per ply
+	private char tablePiece;							// the piece whose values are stored in the table
+	private volatile int searchNumber;					// incremented for every iteration, so workers know to reset
+	private volatile int maxPlies;						// depth of the current iteration
+	private volatile long deadline;						// System.nanoTime() at which the current iteration has to stop
+	private volatile boolean stopped;					// true once a worker has run out of time in this iteration
+	private volatile boolean cancelled;					// true to stop searching as if the time had run out (see setCancelled)
+	private Player player;								// the Player making use of the current search
+	
+	/**
+	 * An AlphaBeta that belongs to one thread of the pool, and the iteration it was last prepared for.
+	 */
+	private static final class Worker {
+		final AlphaBeta alphaBeta;
+		int searchNumber = -1;
+		long nodeCount;				// nodes counted over all the iterations of the current search
+		long tableProbes;
+		long tableHits;
+		long leafCount;
+		long cutoffCount;
+		final long[] plyNodeCounts = new long[BoardSize.MAX_CELLS + 1];
+		
+		Worker(TranspositionTable table, Evaluation evaluation) {
+			alphaBeta = new AlphaBeta(table, evaluation);
+		}
+	}
+	
+	/**
+	 * A node whose columns after the first are being searched in parallel.  Keeps the window and the best column found
+	 * so far, so that a column that starts late is searched with the bounds found by the columns that finished before it.
+	 */
+	private static final class SplitPoint {
+		private final SplitPoint parent;		// the split point above this one; null at the root
+		private final boolean isMax;			// true if this is a maximizing state
+		private final boolean isRoot;			// true if this is the root (a lower column wins a tie)
+		private double alpha;
+		private double beta;
+		private double bestValue;
+		private int bestCol;
+		
+		SplitPoint(SplitPoint parent, boolean isMax, boolean isRoot, double alpha, double beta, double firstValue, int firstCol) {
+			this.parent = parent;
+			this.isMax = isMax;
+			this.isRoot = isRoot;
+			this.alpha = alpha;
+			this.beta = beta;
+			this.bestValue = firstValue;
+			this.bestCol = firstCol;
+			if(isMax) {
+				this.alpha = Math.max(alpha, firstValue);
+			}
+			else {
+				this.beta = Math.min(beta, firstValue);
+			}
+		}
+		
+		/**
+		 * @param col	the column about to be searched
+		 * @return		the alpha to search it with
+		 */
+		synchronized double alpha(int col) {
+			// at the root a lower column wins a tie, so its window has to include the best value so far
+			return isRoot && col < bestCol ? Math.nextDown(alpha) : alpha;
+		}
+		
+		synchronized double beta() {
+			return beta;
+		}
+		
+		/**
+		 * Adds the value of a column that has been searched.
+		 * @param col		the column
+		 * @param value		the value returned by its search
+		 * @param alphaUsed	the alpha it was searched with (a value above it is exact, anything else an upper bound)
+		 * @return			true if the column caused a cutoff
+		 */
+		synchronized boolean update(int col, double value, double alphaUsed) {
+			boolean wasCutoff = alpha >= beta;
+			if(isMax) {
+				if(value > bestValue || isRoot && value == bestValue && value > alphaUsed && col < bestCol) {
+					bestValue = value;
+					bestCol = col;
+				}
+				alpha = Math.max(alpha, value);
+			}
+			else {
+				if(value < bestValue) {
+					bestValue = value;
+					bestCol = col;
+				}
+				beta = Math.min(beta, value);
+			}
+			return !wasCutoff && alpha >= beta;
+		}
+		
+		synchronized double bestValue() {
+			return bestValue;
+		}
+		
+		synchronized int bestCol() {
+			return bestCol;
+		}
+		
+		/**
+		 * @return		true if this node has had a cutoff
+		 */
+		synchronized boolean isCutoff() {
+			return alpha >= beta;
+		}
+		
+		/**
+		 * @return		true if a node above this one has had a cutoff but this one has not, so the columns it skipped
+		 * 				leave its best value short of a bound on its value
+		 */
+		boolean isAbandoned() {
+			return !isCutoff() && parent != null && parent.isCancelled();
+		}
+		
+		/**
+		 * @return		true if this node or a node above it has had a cutoff, so its remaining columns can be skipped
+		 */
+		boolean isCancelled() {
+			for(SplitPoint splitPoint = this; splitPoint != null; splitPoint = splitPoint.parent) {
+				synchronized(splitPoint) {
+					if(splitPoint.alpha >= splitPoint.beta) {
+						return true;
+					}
+				}
+			}
+			return false;
+		}
+	}
+	
+	/**
+	 * A column of a split point that is searched as a fork/join task.
+	 */
+	private final class ColumnTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private final SplitPoint splitPoint;
+		private final State state;			// the State after dropping a piece in the column
+		private final int numPlies;
+		private final int ply;
+		
+		ColumnTask(SplitPoint splitPoint, State state, int numPlies, int ply) {
+			this.splitPoint = splitPoint;
+			this.state = state;
+			this.numPlies = numPlies;
+			this.ply = ply;
+		}
+		
+		@Override
+		protected void compute() {
+			if(stopped || splitPoint.isCancelled()) {
+				return;
+			}
+			int col = state.getColumnDropped();
+			double alpha = splitPoint.alpha(col);
+			double value = search(state, numPlies, ply, alpha, splitPoint.beta(), !splitPoint.isMax, splitPoint);
+			if(!stopped && !Double.isNaN(value) && splitPoint.update(col, value, alpha)) {
+				worker().alphaBeta.storeCutoff(col, ply-1, numPlies+1);
+			}
+		}
+	}
+	
+	/**
+	 * Creates a ParallelSearch.
+	 * @param numThreads	the number of threads to search with
+	 * @param tableSizeMB	size of the shared transposition table in megabytes
+	 */
+	public ParallelSearch(int numThreads, int tableSizeMB) {
+		this(numThreads, tableSizeMB, Evaluation.SCORE);
+	}
+	
+	/**
+	 * Creates a ParallelSearch.
+	 * @param numThreads	the number of threads to search with
+	 * @param tableSizeMB	size of the shared transposition table in megabytes
+	 * @param evaluation	values the States at the bottom of the tree
+	 */
+	public ParallelSearch(int numThreads, int tableSizeMB, Evaluation evaluation) {
+		pool = new ForkJoinPool(numThreads);
+		table = new TranspositionTable(tableSizeMB);
+		workers = new ThreadLocal<Worker>();
+		this.evaluation = evaluation;
+	}
+	
+	/**
+	 * Searches numPlies deep for the best move that player can make from state.
+	 * @param state		the current State (player has the next move)
+	 * @param numPlies	the depth of the tree
+	 * @param player	the Player making use of the search
+	 * @return			the best move and its value
+	 */
+	public SearchResult search(State state, int numPlies, Player player) {
+		long start = System.nanoTime();
+		prepare(player);
+		double[] result = searchRoot(state, numPlies, Long.MAX_VALUE);
+		if(result == null) {
+			return new SearchResult(-1, 0, 0, nodeCount(), System.nanoTime() - start);
+		}
+		return new SearchResult((int)result[1], result[0], numPlies, nodeCount(), System.nanoTime() - start);
+	}
+	
+	/**
+	 * Searches 1, 2, 3... plies deep for the best move that player can make from state, until the time budget runs out
+	 * or the whole rest of the game has been searched (see AlphaBeta.searchTimed).
+	 * @param state			the current State (player has the next move)
+	 * @param budgetMillis	the time budget in milliseconds
+	 * @param player		the Player making use of the search
+	 * @return				the best move of the deepest iteration that finished, and its value
+	 */
+	public SearchResult searchTimed(State state, long budgetMillis, Player player) {
+		long start = System.nanoTime();
+		long stop = start + budgetMillis * 1000000;
+		int maxPlies = Math.max(1, state.getSize().getNumCells() - state.turnNumber);
+		prepare(player);
+		
+		double[] best = null;
+		int completedDepth = 0;
+		for(int numPlies = 1; numPlies <= maxPlies; numPlies++) {
+			double[] result = searchRoot(state, numPlies, numPlies == 1 ? Long.MAX_VALUE : stop);
+			if(result == null) {
+				break;
+			}
+			best = result;
+			completedDepth = numPlies;
+			if(System.nanoTime() - start > (stop - start) / 2) {
+				break;
+			}
+		}
+		if(best == null) {
+			return new SearchResult(-1, 0, 0, nodeCount(), System.nanoTime() - start);
+		}
+		return new SearchResult((int)best[1], best[0], completedDepth, nodeCount(), System.nanoTime() - start);
+	}
+	
+	/**
+	 * Stops the running search, and every search started until this is called again with false, as if its time had run
+	 * out (see AlphaBeta.setCancelled).  A cancelled search returns a best column of -1.  Can be called from any thread.
+	 * @param cancelled	true to stop searching; false to search normally again
+	 */
+	void setCancelled(boolean cancelled) {
+		this.cancelled = cancelled;
+	}
+	
+	/**
+	 * Stops the threads of the pool.  The ParallelSearch cannot be used afterwards.
+	 */
+	public void shutdown() {
+		pool.shutdown();
+	}
+	
+	/**
+	 * @return			the transposition table hit rate of the last search, over all threads
+	 */
+	public double getTableHitRate() {
+		long probes = getTableProbes();
+		return probes == 0 ? 0 : (double)getTableHits() / probes;
+	}
+	
+	/**
+	 * @return			the number of transposition table lookups made by the workers in the last search
+	 */
+	public long getTableProbes() {
+		long probes = 0;
+		for(Worker worker : allWorkers) {
+			probes += worker.tableProbes;
+		}
+		return probes;
+	}
+	
+	/**
+	 * @return			the number of transposition table lookups that found their State in the last search
+	 */
+	public long getTableHits() {
+		long hits = 0;
+		for(Worker worker : allWorkers) {
+			hits += worker.tableHits;
+		}
+		return hits;
+	}
+	
+	/**
+	 * @return			the number of States evaluated by the workers in the last search
+	 */
+	public long getLeafCount() {
+		long leafCount = 0;
+		for(Worker worker : allWorkers) {
+			leafCount += worker.leafCount;
+		}
+		return leafCount;
+	}
+	
+	/**
+	 * @return			the number of States searched by the workers whose remaining columns were pruned in the last search
+	 */
+	public long getCutoffCount() {
+		long cutoffCount = 0;
+		for(Worker worker : allWorkers) {
+			cutoffCount += worker.cutoffCount;
+		}
+		return cutoffCount;
+	}
+	
+	/**
+	 * @return			the number of States visited by the workers at each distance from the root in the last search
+	 */
+	public long[] getPlyNodeCounts() {
+		long[] totals = new long[BoardSize.MAX_CELLS + 1];
+		for(int ply = 0; ply < totals.length; ply++) {
+			totals[ply] = splitNodeCounts.get(ply);
+		}
+		for(Worker worker : allWorkers) {
+			for(int ply = 0; ply < totals.length; ply++) {
+				totals[ply] += worker.plyNodeCounts[ply];
+			}
+		}
+		int length = totals.length;
+		while(length > 0 && totals[length - 1] == 0) {
+			length--;
+		}
+		return Arrays.copyOf(totals, length);
+	}
+	
+	/**
+	 * Gets ready for a new search.
+	 * @param player	the Player making use of the search
+	 */
+	private void prepare(Player player) {
+		this.player = player;
+		if(tablePiece != player.getPiece()) {
+			// values are stored from the point of view of the searching player
+			table.clear();
+			tablePiece = player.getPiece();
+		}
+		for(int ply = 0; ply < splitNodeCounts.length(); ply++) {
+			splitNodeCounts.set(ply, 0);
+		}
+		for(Worker worker : allWorkers) {
+			worker.nodeCount = 0;
+			worker.tableProbes = 0;
+			worker.tableHits = 0;
+			worker.leafCount = 0;
+			worker.cutoffCount = 0;
+			Arrays.fill(worker.plyNodeCounts, 0);
+			worker.searchNumber = -1;
+		}
+	}
+	
+	/**
+	 * Runs one iteration of the search on the pool.
+	 * @param state		the current State (player has the next move)
+	 * @param numPlies	the depth of the tree
+	 * @param deadline	System.nanoTime() at which the search has to stop
+	 * @return			{value, best column} of the best move; null if the search ran out of time
+	 */
+	private double[] searchRoot(final State state, final int numPlies, long deadline) {
+		this.maxPlies = numPlies;
+		this.deadline = deadline;
+		stopped = false;
+		searchNumber++;
+		double[] result = pool.invoke(new RecursiveTask<double[]>() {
+			private static final long serialVersionUID = 1L;
+			
+			@Override
+			protected double[] compute() {
+				return searchRootTask(state, numPlies);
+			}
+		});
+		for(Worker worker : allWorkers) {
+			if(worker.searchNumber == searchNumber) {
+				collect(worker);
+			}
+		}
+		return stopped ? null : result;
+	}
+	
+	/**
+	 * Searches the root: the first column on its own, then the others in parallel.
+	 * @param state		the current State
+	 * @param numPlies	the depth of the tree
+	 * @return			{value, best column} of the best move; null if the search ran out of time
+	 */
+	private double[] searchRootTask(State state, int numPlies) {
+		splitNodeCounts.incrementAndGet(0);
+		if(numPlies == 0 || state.isTerminalState()) {
+			return new double[] {evaluation.evaluate(player, state), -1};
+		}
+		SplitPoint splitPoint = split(state, numPlies, 0, Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY, true, true, null);
+		if(stopped) {
+			return null;
+		}
+		table.store(state.getCanonicalHash(), splitPoint.bestValue(), TranspositionTable.EXACT, numPlies,
+				state.canonicalColumn(splitPoint.bestCol()));
+		return new double[] {splitPoint.bestValue(), splitPoint.bestCol()};
+	}
+	
+	/**
+	 * Searches a node below the root.  Nodes with at least SPLIT_PLIES plies left are split between threads after their
+	 * first column has been searched; the others are searched by the worker of the current thread.
+	 * @param state		the current State that is being evaluated
+	 * @param numPlies	the remaining depth of the tree
+	 * @param ply		the distance from the root
+	 * @param alpha		the value that the maximizing player is already assured of
+	 * @param beta		the value that the minimizing player is already assured of
+	 * @param isMax		true if this is a maximizing state
+	 * @param parent	the nearest split point above state
+	 * @return			the value of state if it is between alpha and beta; otherwise a bound on the value; NaN if the
+	 * 					search of state was abandoned because a split point above it had a cutoff
+	 */
+	private double search(State state, int numPlies, int ply, double alpha, double beta, boolean isMax, SplitPoint parent) {
+		if(cancelled) {
+			stopped = true;
+		}
+		if(stopped) {
+			return 0;
+		}
+		if(numPlies < SPLIT_PLIES || state.isTerminalState()) {
+			AlphaBeta alphaBeta = worker().alphaBeta;
+			double value = alphaBeta.searchSubtree(state, numPlies, ply, alpha, beta, isMax, player);
+			if(alphaBeta.isAborted()) {
+				stopped = true;
+			}
+			return value;
+		}
+		splitNodeCounts.incrementAndGet(ply);
+		long entry = table.probe(state.getCanonicalHash());
+		if(entry != 0 && TranspositionTable.depth(entry) >= numPlies) {
+			double value = TranspositionTable.value(entry);
+			int bound = TranspositionTable.bound(entry);
+			if(bound == TranspositionTable.EXACT
+					|| bound == TranspositionTable.LOWER && value >= beta
+					|| bound == TranspositionTable.UPPER && value <= alpha) {
+				return value;
+			}
+		}
+		
+		SplitPoint splitPoint = split(state, numPlies, ply, alpha, beta, isMax, false, parent);
+		if(stopped) {
+			return 0;
+		}
+		if(splitPoint == null || splitPoint.isAbandoned()) {
+			return Double.NaN;
+		}
+		double bestValue = splitPoint.bestValue();
+		int bound = TranspositionTable.EXACT;
+		if(bestValue <= alpha) {
+			bound = TranspositionTable.UPPER;
+		}
+		else if(bestValue >= beta) {
+			bound = TranspositionTable.LOWER;
+		}
+		table.store(state.getCanonicalHash(), bestValue, bound, numPlies, state.canonicalColumn(splitPoint.bestCol()));
+		return bestValue;
+	}
+	
+	/**
+	 * Searches the first column of a node, then the others in parallel (Young Brothers Wait).
+	 * @param state		the node
+	 * @param numPlies	the remaining depth of the tree
+	 * @param ply		the distance from the root
+	 * @param alpha		the value that the maximizing player is already assured of
+	 * @param beta		the value that the minimizing player is already assured of
+	 * @param isMax		true if this is a maximizing state
+	 * @param isRoot	true if state is the root
+	 * @param parent	the nearest split point above state
+	 * @return			the split point holding the best value and column of the node; null if the search of the first
+	 * 					column was abandoned
+	 */
+	private SplitPoint split(State state, int numPlies, int ply, double alpha, double beta, boolean isMax, boolean isRoot, SplitPoint parent) {
+		long entry = table.probe(state.getCanonicalHash());
+		int[] columns = worker().alphaBeta.orderedColumns(state, ply,
+				entry == 0 ? -1 : state.canonicalColumn(TranspositionTable.bestColumn(entry)));
+		double firstValue = search(state.dropPiece(columns[0]), numPlies-1, ply+1, alpha, beta, !isMax, parent);
+		if(Double.isNaN(firstValue)) {
+			return null;
+		}
+		SplitPoint splitPoint = new SplitPoint(parent, isMax, isRoot, alpha, beta, firstValue, columns[0]);
+		if(!stopped && splitPoint.isCutoff()) {
+			worker().alphaBeta.storeCutoff(columns[0], ply, numPlies);
+		}
+		else if(!stopped && !splitPoint.isCancelled() && columns.length > 1) {
+			List<ColumnTask> tasks = new ArrayList<ColumnTask>(columns.length - 1);
+			for(int i = 1; i < columns.length; i++) {
+				tasks.add(new ColumnTask(splitPoint, state.dropPiece(columns[i]), numPlies-1, ply+1));
+			}
+			ForkJoinTask.invokeAll(tasks);
+		}
+		return splitPoint;
+	}
+	
+	/**
+	 * Returns the worker of the current thread, prepared for the current iteration.
+	 * @return			the worker
+	 */
+	private Worker worker() {
+		Worker worker = workers.get();
+		if(worker == null) {
+			worker = new Worker(table, evaluation);
+			workers.set(worker);
+			allWorkers.add(worker);
+		}
+		if(worker.searchNumber != searchNumber) {
+			worker.alphaBeta.prepareWorker(maxPlies, deadline);
+			worker.searchNumber = searchNumber;
+		}
+		return worker;
+	}
+	
+	/**
+	 * Adds the statistics of a worker's last iteration to its totals for the search.  Called once the iteration is over.
+	 * @param worker	the worker
+	 */
+	private void collect(Worker worker) {
+		worker.nodeCount += worker.alphaBeta.getNodeCount();
+		worker.tableProbes += worker.alphaBeta.getTableProbes();
+		worker.tableHits += worker.alphaBeta.getTableHits();
+		worker.leafCount += worker.alphaBeta.getLeafCount();
+		worker.cutoffCount += worker.alphaBeta.getCutoffCount();
+		worker.alphaBeta.addPlyNodeCounts(worker.plyNodeCounts);
+	}
+	
+	/**
+	 * @return			the number of States visited during the current search, by all workers and above them
+	 */
+	private long nodeCount() {
+		long nodeCount = 0;
+		for(int ply = 0; ply < splitNodeCounts.length(); ply++) {
+			nodeCount += splitNodeCounts.get(ply);
+		}
+		for(Worker worker : allWorkers) {
+			nodeCount += worker.nodeCount;
+		}
+		return nodeCount;
+	}
+}
@@ -0,0 +1,168 @@
+package simacogo;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Analyses a file of positions without a human, e.g. every position of the Games a GameServer played: searches every
+ * position with the search of the options, on all the processors at once, and writes its best column and value in the
+ * order of the input.  Every line of the input is one position, either
+ * <pre>
+ * .../O../XOX					the rows of the grid, top row first, as GameServer replies to BOARD (here 3x3)
+ * 5 5 4 6						the columns (1 is the leftmost) dropped into from the initial State, 'O' first
+ * </pre>
+ * Empty lines and lines starting with '#' are skipped.  Every position must be on a grid of the size of "-size", so
+ * that the tables of a search never hold positions of two sizes.
+ * The output is tab-separated with one line per position: the number of its input line, the best column (0 if the Game
+ * is over), the value for the piece that has the next move and the depth searched; or the number of its line and
+ * "ERROR message" if it cannot be read.
+ * The positions are streamed: no more than WINDOW_PER_WORKER positions per worker are read ahead of the one that is
+ * written next, so the memory used does not grow with the size of the input.  Every worker has an Engine of its own,
+ * with tables of "-hash" MB, that it keeps from one position to the next.
+ * Usage: PositionAnalyzer [-in FILE] [-out FILE] [-workers N] [options]
+ * where options are the options of Simacogo that choose the search, e.g. "-plies 8" or "-time 100".  The input and
+ * output are standard input and output unless given, and there is a worker per processor unless given.  The searches
+ * use one thread each unless "-threads" says otherwise.
+ * @author Patrick Drucker
+ */
+public class PositionAnalyzer {
+	private static final int WINDOW_PER_WORKER = 4;		// positions read ahead per worker, so no worker waits for one
+	
+	/**
+	 * Analyses the positions and prints how long it took to standard error.
+	 * @param args
+	 * @throws IOException
+	 * @throws InterruptedException
+	 * @throws ExecutionException
+	 */
+	public static void main(String[] args) throws IOException, InterruptedException, ExecutionException {
+		String in = null;
+		String out = null;
+		int numWorkers = Runtime.getRuntime().availableProcessors();
+		for(int i = 0; i + 1 < args.length; i++) {
+			if(args[i].equals("-in")) {
+				in = args[i+1];
+			}
+			else if(args[i].equals("-out")) {
+				out = args[i+1];
+			}
+			else if(args[i].equals("-workers")) {
+				numWorkers = Integer.parseInt(args[i+1]);
+			}
+		}
+		final GameConfig config = new GameConfig().withNumThreads(1).withArguments(args);
+		final Player[] players = new Game(new GameConfig().withTableSizeMB(0).withEndgameCells(0)).getPlayers();
+		final List<Engine> engines = Collections.synchronizedList(new ArrayList<Engine>());
+		final ThreadLocal<Engine> engine = ThreadLocal.withInitial(() -> {
+			Engine workerEngine = new Engine(config);
+			engines.add(workerEngine);
+			return workerEngine;
+		});
+		System.err.println("Analysing with " + config + " on " + numWorkers + " workers");
+		
+		ExecutorService workers = Executors.newFixedThreadPool(numWorkers);
+		ArrayDeque<Future<String>> window = new ArrayDeque<Future<String>>();
+		int numPositions = 0;
+		long start = System.nanoTime();
+		try(BufferedReader reader = in == null ? new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8))
+					: Files.newBufferedReader(Paths.get(in), StandardCharsets.UTF_8);
+				PrintWriter writer = new PrintWriter(out == null ? new BufferedWriter(new OutputStreamWriter(System.out,
+						StandardCharsets.UTF_8)) : Files.newBufferedWriter(Paths.get(out), StandardCharsets.UTF_8))) {
+			writer.println("line\tcolumn\tvalue\tdepth");
+			int lineNumber = 0;
+			String line;
+			while((line = reader.readLine()) != null) {
+				lineNumber++;
+				final String position = line.trim();
+				if(position.isEmpty() || position.startsWith("#")) {
+					continue;
+				}
+				if(window.size() == numWorkers * WINDOW_PER_WORKER) {
+					writer.println(window.poll().get());
+				}
+				final int number = lineNumber;
+				window.add(workers.submit(() -> number + "\t" + analyse(position, config.getBoardSize(), engine.get(), players)));
+				numPositions++;
+			}
+			while(!window.isEmpty()) {
+				writer.println(window.poll().get());
+			}
+		}
+		finally {
+			workers.shutdown();
+			workers.awaitTermination(1, TimeUnit.MINUTES);
+			for(Engine workerEngine : engines) {
+				workerEngine.shutdown();
+			}
+		}
+		long elapsedNanos = System.nanoTime() - start;
+		System.err.printf("Analysed %d positions in %.1f s: %.1f positions/s%n", numPositions, elapsedNanos / 1e9,
+				numPositions * 1e9 / Math.max(1, elapsedNanos));
+	}
+	
+	/**
+	 * Reads and searches one position.
+	 * @param position	a line of the input
+	 * @param size		the size of the grid
+	 * @param engine	the Engine of the worker
+	 * @param players	the two Players, one for each piece
+	 * @return			the best column, value and depth, separated by tabs; or "ERROR message"
+	 */
+	private static String analyse(String position, BoardSize size, Engine engine, Player[] players) {
+		State state;
+		try {
+			state = read(position, size);
+		}
+		catch(IllegalArgumentException e) {
+			return "ERROR " + e.getMessage();
+		}
+		Player player = players[0].getPiece() == state.getNextMovePiece() ? players[0] : players[1];
+		if(state.isTerminalState()) {
+			return "0\t" + Value.evaluate(player, state) + "\t0";
+		}
+		SearchResult result = engine.search(state, player);
+		return (result.getBestColumn() + 1) + "\t" + result.getValue() + "\t" + result.getDepth();
+	}
+	
+	/**
+	 * Reads a position: the rows of a grid if the line has a '/', and the columns dropped into otherwise.
+	 * @param position	a line of the input
+	 * @param size		the size of the grid
+	 * @return			the State of the position
+	 * @throws IllegalArgumentException	if the line is not a position on a grid of that size
+	 */
+	private static State read(String position, BoardSize size) {
+		if(position.indexOf('/') >= 0) {
+			State state = State.parse(position);
+			if(state.getSize() != size) {
+				throw new IllegalArgumentException("not a " + size + " grid");
+			}
+			return state;
+		}
+		State state = new State(size, 'O', 'X');
+		for(String word : position.split("\\s+")) {
+			int column = Integer.parseInt(word);
+			if(column < 1 || column > size.getColumns() || !state.columnIsAvailable(column)) {
+				throw new IllegalArgumentException("column " + column + " is not available");
+			}
+			state = state.dropPiece(column - 1);
+		}
+		return state;
+	}
+}
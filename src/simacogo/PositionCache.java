@@ -0,0 +1,247 @@
+package simacogo;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A cache of the results of searches (best column, value and depth of a position) kept in a memory-mapped file outside
+ * the Java heap, so that it outlives the Game, the Engine and the process that filled it.  Every Game that is given the
+ * same PositionCache, and every process that opens the same file, looks its positions up in it before searching them
+ * and adds the results of its searches to it, so the positions that come up again and again are only searched once.
+ * The file is a header followed by a hash table of buckets of BUCKET_ENTRIES entries, one cache line each.  An entry is
+ * a key and a packed data long, as in TranspositionTable, and the key is stored XORed with the data, so the cache can be
+ * read and written by any number of threads and processes at once without locking: an entry torn by two writers no
+ * longer matches its key and is treated as empty.  The key is the canonical Zobrist hash of the position mixed with
+ * the size of the grid, the piece that has the next move and the Evaluation, so a position and its mirror image share
+ * an entry and the results of different grids and evaluations never mix.
+ * The header holds a generation that is advanced whenever the cache is opened and every time as many results have been
+ * stored as there are buckets.  When a bucket is full, a new result replaces the entry with the lowest depth less
+ * AGE_PENALTY for every generation since it was stored, so deep results are kept over shallow ones until they are old.
+ * @author Patrick Drucker
+ */
+public final class PositionCache {
+	static final int DEFAULT_SIZE_MB = 64;			// size of a new cache file
+	private static final int MAGIC = 0x534D4350;	// "SMCP", the first four bytes of a cache file
+	private static final int VERSION = 1;			// version of the file format
+	private static final int HEADER_BYTES = 64;		// magic, version, number of buckets, generation; one cache line
+	private static final int NUM_BUCKETS_OFFSET = 8;
+	private static final int GENERATION_OFFSET = 12;
+	private static final int ENTRY_BYTES = 2 * Long.BYTES;	// a key and a data long
+	private static final int BUCKET_ENTRIES = 4;	// entries per bucket, a cache line
+	private static final int BUCKET_BYTES = BUCKET_ENTRIES * ENTRY_BYTES;
+	private static final int AGE_PENALTY = 2;		// plies of depth a result loses for every generation since it was stored
+	private static final int COLUMN_SHIFT = 0;
+	private static final int DEPTH_SHIFT = 8;
+	private static final int GENERATION_SHIFT = 16;
+	private static final int VALUE_SHIFT = 32;
+	private static final long KEY_MIX = 0x9E3779B97F4A7C15L;	// spreads the size, piece and evaluation over the key
+	private final MappedByteBuffer buffer;			// the mapped file
+	private final int bucketMask;					// number of buckets - 1 (the number of buckets is a power of two)
+	private final AtomicLong numStores = new AtomicLong();	// results stored since the cache was opened
+	private volatile int generation;				// the generation of the results stored now
+	
+	private PositionCache(MappedByteBuffer buffer) throws IOException {
+		this.buffer = buffer;
+		if(buffer.capacity() < HEADER_BYTES || buffer.getInt(0) != MAGIC) {
+			throw new IOException("Not a position cache");
+		}
+		if(buffer.getInt(4) != VERSION) {
+			throw new IOException("Unsupported position cache version: " + buffer.getInt(4));
+		}
+		int numBuckets = buffer.getInt(NUM_BUCKETS_OFFSET);
+		if(Integer.bitCount(numBuckets) != 1 || buffer.capacity() != HEADER_BYTES + (long)numBuckets * BUCKET_BYTES) {
+			throw new IOException("Position cache is truncated or corrupt");
+		}
+		this.bucketMask = numBuckets - 1;
+		this.generation = advanceGeneration();
+	}
+	
+	/**
+	 * Opens a cache file by mapping it into memory, or creates an empty one of about sizeMB megabytes if there is none.
+	 * The size of an existing file is kept.
+	 * @param file			the cache file
+	 * @param sizeMB		the size of a new file in megabytes
+	 * @return				the PositionCache
+	 * @throws IOException	if the file cannot be read or written or is not a position cache
+	 */
+	public static PositionCache open(Path file, int sizeMB) throws IOException {
+		if(sizeMB < 1) {
+			throw new IllegalArgumentException("Position cache size must be at least 1 MB: " + sizeMB);
+		}
+		try(FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+				StandardOpenOption.WRITE)) {
+			if(channel.size() == 0) {
+				long numBuckets = Math.min(Long.highestOneBit((long)sizeMB * 1024 * 1024 / BUCKET_BYTES), 1 << 24);
+				MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0,
+						HEADER_BYTES + numBuckets * BUCKET_BYTES);
+				buffer.putInt(NUM_BUCKETS_OFFSET, (int)numBuckets);
+				buffer.putInt(4, VERSION);
+				buffer.putInt(0, MAGIC);
+				return new PositionCache(buffer);
+			}
+			return new PositionCache(channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size()));
+		}
+	}
+	
+	/**
+	 * Opens the cache file of command line arguments: "-cache FILE", with "-cacheMB N" for the size of a new file.
+	 * @param args			the command line arguments
+	 * @return				the PositionCache; null if there is no "-cache"
+	 * @throws IOException	if the file cannot be read or written or is not a position cache
+	 */
+	public static PositionCache fromArguments(String[] args) throws IOException {
+		String file = null;
+		int sizeMB = DEFAULT_SIZE_MB;
+		for(int i = 0; i + 1 < args.length; i++) {
+			if(args[i].equals("-cache")) {
+				file = args[i+1];
+			}
+			else if(args[i].equals("-cacheMB")) {
+				sizeMB = Integer.parseInt(args[i+1]);
+			}
+		}
+		return file == null ? null : open(Paths.get(file), sizeMB);
+	}
+	
+	/**
+	 * Looks up the result of a State.
+	 * @param state			the State
+	 * @param evaluation	the Evaluation of the search
+	 * @return				the best column and its value for the piece that has the next move, and the depth it was
+	 * 						searched to; null if state is not in the cache
+	 */
+	public SearchResult lookup(State state, Evaluation evaluation) {
+		long start = System.nanoTime();
+		long key = key(state, evaluation);
+		int bucket = HEADER_BYTES + ((int)key & bucketMask) * BUCKET_BYTES;
+		for(int offset = bucket; offset < bucket + BUCKET_BYTES; offset += ENTRY_BYTES) {
+			long data = buffer.getLong(offset + Long.BYTES);
+			if(data != 0 && (buffer.getLong(offset) ^ data) == key) {
+				return new SearchResult(state.canonicalColumn(column(data)), value(data), depth(data), 0,
+						System.nanoTime() - start);
+			}
+		}
+		return null;
+	}
+	
+	/**
+	 * Stores the result of searching a State, unless the cache holds a deeper result of it from the same generation.
+	 * @param state			the State
+	 * @param evaluation	the Evaluation of the search
+	 * @param result		the best column and its value for the piece that has the next move
+	 */
+	public void store(State state, Evaluation evaluation, SearchResult result) {
+		if(result.getBestColumn() < 0) {
+			return;
+		}
+		int gen = generation;
+		long key = key(state, evaluation);
+		long data = (long)Float.floatToIntBits((float)result.getValue()) << VALUE_SHIFT
+				| (long)(gen & 0xFFFF) << GENERATION_SHIFT | (long)Math.min(result.getDepth(), 0xFF) << DEPTH_SHIFT
+				| (long)(state.canonicalColumn(result.getBestColumn()) + 1) << COLUMN_SHIFT;
+		int bucket = HEADER_BYTES + ((int)key & bucketMask) * BUCKET_BYTES;
+		int victim = bucket;
+		int victimPriority = Integer.MAX_VALUE;
+		for(int offset = bucket; offset < bucket + BUCKET_BYTES; offset += ENTRY_BYTES) {
+			long existing = buffer.getLong(offset + Long.BYTES);
+			if(existing == 0) {
+				if(victimPriority > Integer.MIN_VALUE) {
+					victim = offset;
+					victimPriority = Integer.MIN_VALUE;
+				}
+				continue;
+			}
+			if((buffer.getLong(offset) ^ existing) == key) {
+				if(depth(existing) > result.getDepth() && generation(existing) == (gen & 0xFFFF)) {
+					return;
+				}
+				victim = offset;
+				break;
+			}
+			int priority = depth(existing) - AGE_PENALTY * ((gen - generation(existing)) & 0xFFFF);
+			if(priority < victimPriority) {
+				victim = offset;
+				victimPriority = priority;
+			}
+		}
+		buffer.putLong(victim, key ^ data);
+		buffer.putLong(victim + Long.BYTES, data);
+		if(numStores.incrementAndGet() % (bucketMask + 1) == 0) {
+			generation = advanceGeneration();
+		}
+	}
+	
+	/**
+	 * Advances the generation in the header, which every process using the file shares.
+	 * @return				the new generation
+	 */
+	private int advanceGeneration() {
+		int next = (buffer.getInt(GENERATION_OFFSET) + 1) & 0xFFFF;
+		buffer.putInt(GENERATION_OFFSET, next);
+		return next;
+	}
+	
+	/**
+	 * Writes the changes to the file.  The OS writes them on its own as well, even if the process ends without calling
+	 * this, so it is only needed to survive a crash of the machine.
+	 */
+	public void force() {
+		buffer.force();
+	}
+	
+	/**
+	 * @return			the number of entries of the cache
+	 */
+	public int getCapacity() {
+		return (bucketMask + 1) * BUCKET_ENTRIES;
+	}
+	
+	/**
+	 * @param state			a State
+	 * @param evaluation	the Evaluation of the search
+	 * @return				the key of the State
+	 */
+	private static long key(State state, Evaluation evaluation) {
+		BoardSize size = state.getSize();
+		long salt = ((size.getRows() * (BoardSize.MAX_COLUMNS + 1L) + size.getColumns()) * 2
+				+ (state.getNextMovePiece() == 'X' ? 1 : 0)) * Evaluation.values().length + evaluation.ordinal() + 1;
+		return state.getCanonicalHash() ^ salt * KEY_MIX;
+	}
+	
+	/**
+	 * @param data		a packed entry
+	 * @return			the stored value
+	 */
+	private static double value(long data) {
+		return Float.intBitsToFloat((int)(data >>> VALUE_SHIFT));
+	}
+	
+	/**
+	 * @param data		a packed entry
+	 * @return			the generation the entry was stored in
+	 */
+	private static int generation(long data) {
+		return (int)(data >>> GENERATION_SHIFT & 0xFFFF);
+	}
+	
+	/**
+	 * @param data		a packed entry
+	 * @return			the number of plies that were searched below the State
+	 */
+	private static int depth(long data) {
+		return (int)(data >>> DEPTH_SHIFT & 0xFF);
+	}
+	
+	/**
+	 * @param data		a packed entry
+	 * @return			the canonical column of the best move
+	 */
+	private static int column(long data) {
+		return (int)(data >>> COLUMN_SHIFT & 0xFF) - 1;
+	}
+}
@@ -9,16 +9,31 @@ import java.io.InputStreamReader;
  * @author Patrick Drucker
  */
 public class PrintGame extends Game {
-	BufferedReader reader = new BufferedReader(new InputStreamReader(System.in));
+	BufferedReader reader;
 	
 	/**
-	 * Constructor for PrintGame. Uses Game's default constructor and initializes the numPlies by retrieving user input.
+	 * Constructor for PrintGame. Uses the default GameConfig and initializes the numPlies by retrieving user input.
 	 * Also prints the empty board state.
 	 * @throws IOException
 	 */
 	public PrintGame() throws IOException {
-		super();
-		getNumPlyInput();
+		this(new GameConfig());
+	}
+	
+	/**
+	 * Constructor for PrintGame. Initializes the numPlies by retrieving user input, unless the computer has a time budget
+	 * per move or plays a number of playouts instead.  Also prints the empty board state.
+	 * @param config	settings of the computer player's search
+	 * @throws IOException
+	 */
+	public PrintGame(GameConfig config) throws IOException {
+		this(config, new BufferedReader(new InputStreamReader(System.in)));
+	}
+	
+	private PrintGame(GameConfig config, BufferedReader reader) throws IOException {
+		super(config.getMoveTimeMillis() == 0 && config.getAlgorithm() != Algorithm.MCTS
+				? config.withNumPlies(getNumPlyInput(reader)) : config);
+		this.reader = reader;
 		System.out.println("S I M A C O G O\n");
 		printCurrentState();
 	}
@@ -32,11 +47,15 @@ public class PrintGame extends Game {
 	}
 	
 	/**
-	 * Prints the current State of the board.
+	 * Prints the current State of the board, under the column numbers (the last digit of those above 9).
 	 */
 	private void printCurrentState() {
 		printScore();
-		System.out.println("1 2 3 4 5 6 7 8 9");
+		StringBuilder columnNumbers = new StringBuilder();
+		for(int col = 1; col <= this.currentState.getSize().getColumns(); col++) {
+			columnNumbers.append(col % 10).append(' ');
+		}
+		System.out.println(columnNumbers.toString().trim());
 		System.out.println(this.currentState);
 	}
 	
@@ -82,10 +101,12 @@ public class PrintGame extends Game {
 	
 	/**
 	 * Gets user input on how many plies the computer should search in its minimax algorithm computation.
-	 * Sets the numPlies instance variable.
+	 * @param reader		reads the user input
+	 * @return numPlies		the number of plies
 	 * @throws IOException
 	 */
-	private void getNumPlyInput() throws IOException {
+	private static int getNumPlyInput(BufferedReader reader) throws IOException {
+		int numPlies = 0;
 		String choice;
 		char firstChar;
 		boolean failed;
@@ -113,6 +134,7 @@ public class PrintGame extends Game {
 			}
 		} while(failed);
 		System.out.print("\n");
+		return numPlies;
 	}
 	
 	/**
@@ -123,8 +145,8 @@ public class PrintGame extends Game {
 	 */
 	private int getTurnInput() throws IOException {
 		int col = -1;
+		int columns = this.currentState.getSize().getColumns();
 		String choice;
-		char firstChar;
 		boolean failed;
 		
 		do {
@@ -139,13 +161,14 @@ public class PrintGame extends Game {
 					return -1;
 				}
 				else {
-					firstChar = choice.charAt(0);
-					
-					if(Character.isDigit(firstChar) && firstChar != '0') {
-						col = Character.getNumericValue(firstChar);
+					try {
+						col = Integer.parseInt(choice);
 					}
-					else {
-						System.out.println("Please enter a digit (1-9) as the column #.");
+					catch(NumberFormatException e) {
+						col = 0;
+					}
+					if(col < 1 || col > columns) {
+						System.out.println("Please enter a number (1-" + columns + ") as the column #.");
 						failed = true;
 					}
 
@@ -167,10 +190,18 @@ public class PrintGame extends Game {
 	public void printWinner() throws IOException {
 		reader.close();
 		System.out.println("-----------------Game Over-----------------");
-		System.out.println("                  (" + numPlies + "-ply)               ");
+		if(getConfig().getMoveTimeMillis() > 0) {
+			System.out.println("               (" + getConfig().getMoveTimeMillis() + " ms/move)            ");
+		}
+		else if(getConfig().getAlgorithm() == Algorithm.MCTS) {
+			System.out.println("             (" + getConfig().getNumPlayouts() + " playouts)            ");
+		}
+		else {
+			System.out.println("                  (" + getNumPlies() + "-ply)               ");
+		}
 		printScore();
-		int scoreHuman = (int)Value.playerScore(Game.getHumanPlayer(), this.currentState);
-		int scoreComputer = (int)Value.playerScore(Game.getComputerPlayer(), this.currentState);
+		int scoreHuman = (int)Value.playerScore(getHumanPlayer(), this.currentState);
+		int scoreComputer = (int)Value.playerScore(getComputerPlayer(), this.currentState);
 		if(scoreHuman > scoreComputer) {
 			System.out.println("+-------------------------+");
 			System.out.println("|      WINNER: Human      |");
@@ -0,0 +1,405 @@
+package simacogo;
+
+/**
+ * A mutable board for the search.  Where State.dropPiece creates a new State for every move, a SearchBoard is changed
+ * in place by makeMove and changed back by unmakeMove, and generateMoves writes the available columns into a buffer
+ * owned by the caller, so searching a tree allocates nothing per node.
+ * Keeps the same bitboards, running scores and Zobrist hash as State.  A SearchBoard belongs to one search at a time.
+ * The bitboards of a wide grid are arrays that the SearchBoard owns and changes in place, so they are not copied per
+ * move either.
+ * @author Patrick Drucker
+ */
+public final class SearchBoard {
+	private BoardSize size;									// number of rows and columns of the grid
+	private int[] centreOrder;								// columns ordered from the centre outwards
+	private long lowX, highX;								// bitboard of the 'X' pieces (narrow grids)
+	private long lowO, highO;								// bitboard of the 'O' pieces (narrow grids)
+	private long[] wideX, wideO;							// bitboards of the pieces (wide grids); null for narrow grids
+	private long[] filled;									// bitboard built by maxScore (wide grids)
+	private int[] heights;									// number of pieces in each column
+	private double scoreX;									// running score of the 'X' pieces
+	private double scoreO;									// running score of the 'O' pieces
+	private long hash;										// Zobrist hash of the grid
+	private long mirrorHash;								// Zobrist hash of the mirror image of the grid
+	private char nextMovePiece;								// the piece of the Player who has the next move
+	private char otherPiece;								// the piece of the Player who moves after that
+	private int turnNumber;									// number of pieces on the grid
+	private double[] drops;									// score gained by the move of each turn
+	private NeuralNetwork.Accumulator accumulator;			// kept up to date by every move once neuralValue is used; null before
+	
+	/**
+	 * Creates a SearchBoard that is a copy of a State.
+	 * @param state		the State to copy
+	 */
+	public SearchBoard(State state) {
+		set(state);
+	}
+	
+	/**
+	 * Makes this SearchBoard a copy of a State, without allocating.
+	 * @param state		the State to copy
+	 */
+	public void set(State state) {
+		if(size != state.getSize()) {
+			size = state.getSize();
+			centreOrder = size.getCentreOrder();
+			heights = new int[size.getColumns()];
+			drops = new double[size.getNumCells()];
+			wideX = size.isWide() ? new long[size.getNumWords()] : null;
+			wideO = size.isWide() ? new long[size.getNumWords()] : null;
+			filled = size.isWide() ? new long[size.getNumWords()] : null;
+			accumulator = null;
+		}
+		lowX = state.lowX;
+		highX = state.highX;
+		lowO = state.lowO;
+		highO = state.highO;
+		if(size.isWide()) {
+			System.arraycopy(state.wideX, 0, wideX, 0, wideX.length);
+			System.arraycopy(state.wideO, 0, wideO, 0, wideO.length);
+		}
+		for(int col = 0; col < size.getColumns(); col++) {
+			heights[col] = state.height(col);
+		}
+		scoreX = state.scoreX;
+		scoreO = state.scoreO;
+		hash = state.hash;
+		mirrorHash = state.mirrorHash;
+		nextMovePiece = state.nextMovePiece;
+		otherPiece = state.otherPiece;
+		turnNumber = state.turnNumber;
+		if(accumulator != null) {
+			refreshAccumulator();
+		}
+	}
+	
+	/**
+	 * Drops the next piece into a column.  The column must not be full.
+	 * @param col		the column (0 is the leftmost)
+	 */
+	public void makeMove(int col) {
+		int index = size.index(col, heights[col]++);
+		if(wideX != null) {
+			long[] words = nextMovePiece == 'X' ? wideX : wideO;
+			double drop = Value.dropScore(Bitboard.nextToNeighbours(size, words, index), Bitboard.diagonalNeighbours(size, words, index));
+			drops[turnNumber] = drop;
+			if(nextMovePiece == 'X') {
+				scoreX += drop;
+			}
+			else {
+				scoreO += drop;
+			}
+			Bitboard.set(words, index);
+		}
+		else if(nextMovePiece == 'X') {
+			double drop = Value.dropScore(Bitboard.nextToNeighbours(size, lowX, highX, index), Bitboard.diagonalNeighbours(size, lowX, highX, index));
+			drops[turnNumber] = drop;
+			scoreX += drop;
+			if(index < Long.SIZE) {
+				lowX |= 1L << index;
+			}
+			else {
+				highX |= 1L << (index - Long.SIZE);
+			}
+		}
+		else {
+			double drop = Value.dropScore(Bitboard.nextToNeighbours(size, lowO, highO, index), Bitboard.diagonalNeighbours(size, lowO, highO, index));
+			drops[turnNumber] = drop;
+			scoreO += drop;
+			if(index < Long.SIZE) {
+				lowO |= 1L << index;
+			}
+			else {
+				highO |= 1L << (index - Long.SIZE);
+			}
+		}
+		hash ^= Zobrist.key(nextMovePiece, index);
+		mirrorHash ^= Zobrist.key(nextMovePiece, size.index(size.mirror(col), heights[col] - 1));
+		if(accumulator != null) {
+			accumulator.add(nextMovePiece, col, heights[col] - 1);
+		}
+		char piece = nextMovePiece;
+		nextMovePiece = otherPiece;
+		otherPiece = piece;
+		turnNumber++;
+	}
+	
+	/**
+	 * Takes back the last move, which must have been made in col.
+	 * @param col		the column (0 is the leftmost) of the last move
+	 */
+	public void unmakeMove(int col) {
+		char piece = otherPiece;
+		otherPiece = nextMovePiece;
+		nextMovePiece = piece;
+		turnNumber--;
+		int index = size.index(col, --heights[col]);
+		hash ^= Zobrist.key(piece, index);
+		mirrorHash ^= Zobrist.key(piece, size.index(size.mirror(col), heights[col]));
+		if(accumulator != null) {
+			accumulator.remove(piece, col, heights[col]);
+		}
+		if(wideX != null) {
+			if(piece == 'X') {
+				Bitboard.clear(wideX, index);
+				scoreX -= drops[turnNumber];
+			}
+			else {
+				Bitboard.clear(wideO, index);
+				scoreO -= drops[turnNumber];
+			}
+		}
+		else if(piece == 'X') {
+			if(index < Long.SIZE) {
+				lowX &= ~(1L << index);
+			}
+			else {
+				highX &= ~(1L << (index - Long.SIZE));
+			}
+			scoreX -= drops[turnNumber];
+		}
+		else {
+			if(index < Long.SIZE) {
+				lowO &= ~(1L << index);
+			}
+			else {
+				highO &= ~(1L << (index - Long.SIZE));
+			}
+			scoreO -= drops[turnNumber];
+		}
+	}
+	
+	/**
+	 * Writes the columns that are not full into a buffer, centre columns first.
+	 * @param moves		buffer of at least as many ints as the grid has columns
+	 * @return			the number of columns written
+	 */
+	public int generateMoves(int[] moves) {
+		int numMoves = 0;
+		int rows = size.getRows();
+		for(int i = 0; i < centreOrder.length; i++) {
+			if(heights[centreOrder[i]] < rows) {
+				moves[numMoves++] = centreOrder[i];
+			}
+		}
+		return numMoves;
+	}
+	
+	/**
+	 * Writes the columns that are not full into a buffer, centre columns first, like generateMoves.  When the grid is its
+	 * own mirror image, a column and its mirror column lead to mirror images of the same position, so only the left one
+	 * of each pair is written: a search that breaks ties in favour of the lower column chooses the same move.
+	 * @param moves		buffer of at least as many ints as the grid has columns
+	 * @return			the number of columns written
+	 */
+	public int generateDistinctMoves(int[] moves) {
+		if(hash != mirrorHash) {
+			return generateMoves(moves);
+		}
+		int numMoves = 0;
+		int rows = size.getRows();
+		for(int i = 0; i < centreOrder.length; i++) {
+			int col = centreOrder[i];
+			if(heights[col] < rows && col <= size.mirror(col)) {
+				moves[numMoves++] = col;
+			}
+		}
+		return numMoves;
+	}
+	
+	/**
+	 * @return true		if every position of the grid has a piece; false otherwise
+	 */
+	public boolean isTerminal() {
+		return turnNumber == drops.length;
+	}
+	
+	/**
+	 * @param col		a column (0 is the leftmost)
+	 * @return			true if the column is full
+	 */
+	public boolean isFull(int col) {
+		return heights[col] == size.getRows();
+	}
+	
+	/**
+	 * Returns the score that the next piece would gain by being dropped into a column, without dropping it.
+	 * @param col		a column (0 is the leftmost) that is not full
+	 * @return			the score the drop would gain
+	 */
+	public double dropScore(int col) {
+		return dropScore(col, nextMovePiece);
+	}
+	
+	/**
+	 * Returns the score that a piece would gain by being dropped into a column, whichever piece has the next move.
+	 * @param col		a column (0 is the leftmost) that is not full
+	 * @param piece		'X' or 'O'
+	 * @return			the score the drop would gain
+	 */
+	double dropScore(int col, char piece) {
+		int index = size.index(col, heights[col]);
+		if(wideX != null) {
+			long[] words = piece == 'X' ? wideX : wideO;
+			return Value.dropScore(Bitboard.nextToNeighbours(size, words, index), Bitboard.diagonalNeighbours(size, words, index));
+		}
+		if(piece == 'X') {
+			return Value.dropScore(Bitboard.nextToNeighbours(size, lowX, highX, index), Bitboard.diagonalNeighbours(size, lowX, highX, index));
+		}
+		return Value.dropScore(Bitboard.nextToNeighbours(size, lowO, highO, index), Bitboard.diagonalNeighbours(size, lowO, highO, index));
+	}
+	
+	/**
+	 * Returns the most a piece could score by the end of the Game: its score if it filled every empty cell.
+	 * @param piece		'X' or 'O'
+	 * @return			an upper bound of the final score of the piece
+	 */
+	public double maxScore(char piece) {
+		if(wideX != null) {
+			long[] full = size.getFull();
+			long[] other = piece == 'X' ? wideO : wideX;
+			for(int i = 0; i < full.length; i++) {
+				filled[i] = full[i] & ~other[i];
+			}
+			return Value.bitboardScore(size, filled);
+		}
+		long emptyLow = size.getFullLow() & ~(lowX | lowO);
+		long emptyHigh = size.getFullHigh() & ~(highX | highO);
+		if(piece == 'X') {
+			return Value.bitboardScore(size, lowX | emptyLow, highX | emptyHigh);
+		}
+		return Value.bitboardScore(size, lowO | emptyLow, highO | emptyHigh);
+	}
+	
+	/**
+	 * @return			the score of the piece with the next move minus the score of the other piece
+	 */
+	public double scoreDifference() {
+		return score(nextMovePiece) - score(otherPiece);
+	}
+	
+	/**
+	 * Values the board with the network of the NEURAL Evaluation.  The first call builds the first layer of the network
+	 * from the grid; from then on every move and every unmade move updates it.
+	 * @param piece		'X' or 'O'
+	 * @return			the value of the board for piece: the final score difference at the end of the Game
+	 * @throws IllegalStateException	if there is no network for the size of the grid
+	 */
+	double neuralValue(char piece) {
+		double value = score(piece) - score(piece == 'X' ? 'O' : 'X');
+		if(isTerminal()) {
+			return value;
+		}
+		if(accumulator == null) {
+			accumulator = NeuralNetwork.getDefault(size).newAccumulator();
+			refreshAccumulator();
+		}
+		double change = accumulator.evaluate(nextMovePiece, piece == nextMovePiece ? value : -value);
+		return piece == nextMovePiece ? value + change : value - change;
+	}
+	
+	/**
+	 * Rebuilds the first layer of the network from the grid.
+	 */
+	private void refreshAccumulator() {
+		accumulator.clear();
+		for(int col = 0; col < size.getColumns(); col++) {
+			for(int row = 0; row < heights[col]; row++) {
+				int index = size.index(col, row);
+				boolean isX = wideX != null ? Bitboard.isSet(wideX, index) : Bitboard.isSet(lowX, highX, index);
+				accumulator.add(isX ? 'X' : 'O', col, row);
+			}
+		}
+	}
+	
+	/**
+	 * @param piece		'X' or 'O'
+	 * @return			the total score of the piece
+	 */
+	public double score(char piece) {
+		return piece == 'X' ? scoreX : scoreO;
+	}
+	
+	/**
+	 * @param piece		'X' or 'O'
+	 * @return			the low word of the bitboard of a piece (narrow grids)
+	 */
+	long lowBits(char piece) {
+		return piece == 'X' ? lowX : lowO;
+	}
+	
+	/**
+	 * @param piece		'X' or 'O'
+	 * @return			the high word of the bitboard of a piece (narrow grids)
+	 */
+	long highBits(char piece) {
+		return piece == 'X' ? highX : highO;
+	}
+	
+	/**
+	 * @param col		a column (0 is the leftmost)
+	 * @return			the number of pieces in the column
+	 */
+	int height(int col) {
+		return heights[col];
+	}
+	
+	/**
+	 * @param col		a column (0 is the leftmost) that is not full
+	 * @return			the bit index of the position that the next piece dropped into the column would take
+	 */
+	int dropIndex(int col) {
+		return size.index(col, heights[col]);
+	}
+	
+	/**
+	 * @return size		the number of rows and columns of the grid
+	 */
+	public BoardSize getSize() {
+		return size;
+	}
+	
+	/**
+	 * @return hash		the Zobrist hash of the grid
+	 */
+	public long getHash() {
+		return hash;
+	}
+	
+	/**
+	 * @return			the Zobrist hash of the grid or of its mirror image, whichever is smaller (see State.getCanonicalHash)
+	 */
+	public long getCanonicalHash() {
+		return Math.min(hash, mirrorHash);
+	}
+	
+	/**
+	 * Converts a column between the grid and the grid of getCanonicalHash, in either direction.
+	 * @param col		a column number, or -1
+	 * @return			col mirrored if getCanonicalHash is the hash of the mirror image; col otherwise
+	 */
+	public int canonicalColumn(int col) {
+		return col < 0 || mirrorHash >= hash ? col : size.mirror(col);
+	}
+	
+	/**
+	 * @return			true if the grid is its own mirror image, e.g. the empty grid
+	 */
+	public boolean isSymmetric() {
+		return hash == mirrorHash;
+	}
+	
+	/**
+	 * @return nextMovePiece	the piece of the Player who has the next move
+	 */
+	public char getNextMovePiece() {
+		return nextMovePiece;
+	}
+	
+	/**
+	 * @return turnNumber	the number of pieces on the grid
+	 */
+	public int getTurnNumber() {
+		return turnNumber;
+	}
+}
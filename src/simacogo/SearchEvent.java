@@ -0,0 +1,53 @@
+package simacogo;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A Java Flight Recorder event for one search of the computer player, committed by Engine.  Only filled in and
+ * written when the event is enabled in the recording, e.g. with "java -XX:StartFlightRecording ...".
+ * @author Patrick Drucker
+ */
+@Name("simacogo.Search")
+@Label("Search")
+@Category("Simacogo")
+@Description("One search for the move of the computer player")
+class SearchEvent extends Event {
+	@Label("Algorithm")
+	String algorithm;
+	
+	@Label("Depth")
+	@Description("Number of plies searched")
+	int depth;
+	
+	@Label("Best Column")
+	int bestColumn;
+	
+	@Label("Value")
+	double value;
+	
+	@Label("Nodes")
+	@Description("Number of States visited")
+	long nodes;
+	
+	@Label("Leaves")
+	@Description("Number of States evaluated")
+	long leaves;
+	
+	@Label("Nodes per Second")
+	double nodesPerSecond;
+	
+	@Label("Effective Branching Factor")
+	double branchingFactor;
+	
+	@Label("Cutoff Rate")
+	@Description("Share of the States that were not leaves whose remaining columns were pruned")
+	double cutoffRate;
+	
+	@Label("Table Hit Rate")
+	@Description("Share of the transposition table lookups that found their State")
+	double tableHitRate;
+}
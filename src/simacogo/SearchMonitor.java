@@ -0,0 +1,150 @@
+package simacogo;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Adds up the SearchStatistics of the searches of every Engine that is created with monitoring on, and shows the
+ * totals over JMX as "simacogo:type=SearchMonitor".  There is one SearchMonitor per JVM, registered the first time it
+ * is asked for.  Engines record into it from any number of threads without locking.
+ * @author Patrick Drucker
+ */
+public final class SearchMonitor implements SearchMonitorMBean {
+	static final String OBJECT_NAME = "simacogo:type=SearchMonitor";	// name of the MBean
+	private static SearchMonitor instance;				// the registered SearchMonitor; null until it is asked for
+	private final LongAdder searchCount = new LongAdder();
+	private final LongAdder nodeCount = new LongAdder();
+	private final LongAdder leafCount = new LongAdder();
+	private final LongAdder cutoffCount = new LongAdder();
+	private final LongAdder interiorCount = new LongAdder();	// States that were not leaves, of the searches that count cutoffs
+	private final LongAdder tableProbes = new LongAdder();
+	private final LongAdder tableHits = new LongAdder();
+	private final LongAdder elapsedNanos = new LongAdder();
+	private final LongAccumulator maxElapsedNanos = new LongAccumulator(Math::max, 0);
+	private final DoubleAdder branchingFactors = new DoubleAdder();	// sum of the effective branching factors
+	private volatile SearchStatistics lastSearch;		// statistics of the last search; null before the first
+	
+	/**
+	 * Private constructor: use getInstance.
+	 */
+	private SearchMonitor() {
+	}
+	
+	/**
+	 * Returns the SearchMonitor of the JVM, registering it with the platform MBean server the first time.
+	 * @return			the SearchMonitor
+	 */
+	public static synchronized SearchMonitor getInstance() {
+		if(instance == null) {
+			instance = new SearchMonitor();
+			try {
+				MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+				ObjectName name = new ObjectName(OBJECT_NAME);
+				if(!server.isRegistered(name)) {
+					server.registerMBean(instance, name);
+				}
+			}
+			catch(JMException e) {
+				throw new IllegalStateException("Cannot register " + OBJECT_NAME, e);
+			}
+		}
+		return instance;
+	}
+	
+	/**
+	 * Adds the statistics of a search.
+	 * @param statistics	the statistics
+	 */
+	void record(SearchStatistics statistics) {
+		searchCount.increment();
+		nodeCount.add(statistics.getNodeCount());
+		leafCount.add(statistics.getLeafCount());
+		if(statistics.getCutoffCount() > 0) {
+			cutoffCount.add(statistics.getCutoffCount());
+			interiorCount.add(statistics.getNodeCount() - statistics.getLeafCount());
+		}
+		tableProbes.add(statistics.getTableProbes());
+		tableHits.add(statistics.getTableHits());
+		elapsedNanos.add(statistics.getElapsedNanos());
+		maxElapsedNanos.accumulate(statistics.getElapsedNanos());
+		branchingFactors.add(statistics.getEffectiveBranchingFactor());
+		lastSearch = statistics;
+	}
+	
+	@Override
+	public long getSearchCount() {
+		return searchCount.sum();
+	}
+	
+	@Override
+	public long getNodeCount() {
+		return nodeCount.sum();
+	}
+	
+	@Override
+	public long getLeafCount() {
+		return leafCount.sum();
+	}
+	
+	@Override
+	public double getNodesPerSecond() {
+		long nanos = elapsedNanos.sum();
+		return nanos == 0 ? 0 : nodeCount.sum() * 1e9 / nanos;
+	}
+	
+	@Override
+	public double getAverageBranchingFactor() {
+		long searches = searchCount.sum();
+		return searches == 0 ? 0 : branchingFactors.sum() / searches;
+	}
+	
+	@Override
+	public double getCutoffRate() {
+		long interior = interiorCount.sum();
+		return interior == 0 ? 0 : (double)cutoffCount.sum() / interior;
+	}
+	
+	@Override
+	public double getTableHitRate() {
+		long probes = tableProbes.sum();
+		return probes == 0 ? 0 : (double)tableHits.sum() / probes;
+	}
+	
+	@Override
+	public double getAverageSearchMillis() {
+		long searches = searchCount.sum();
+		return searches == 0 ? 0 : elapsedNanos.sum() / 1e6 / searches;
+	}
+	
+	@Override
+	public double getMaxSearchMillis() {
+		return maxElapsedNanos.get() / 1e6;
+	}
+	
+	@Override
+	public String getLastSearch() {
+		SearchStatistics statistics = lastSearch;
+		return statistics == null ? "" : statistics.toString();
+	}
+	
+	@Override
+	public void reset() {
+		searchCount.reset();
+		nodeCount.reset();
+		leafCount.reset();
+		cutoffCount.reset();
+		interiorCount.reset();
+		tableProbes.reset();
+		tableHits.reset();
+		elapsedNanos.reset();
+		maxElapsedNanos.reset();
+		branchingFactors.reset();
+		lastSearch = null;
+	}
+}
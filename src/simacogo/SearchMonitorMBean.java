@@ -0,0 +1,63 @@
+package simacogo;
+
+/**
+ * The JMX management interface of SearchMonitor: the statistics of every search since the last reset.
+ * @author Patrick Drucker
+ */
+public interface SearchMonitorMBean {
+	
+	/**
+	 * @return			the number of searches
+	 */
+	long getSearchCount();
+	
+	/**
+	 * @return			the number of States visited
+	 */
+	long getNodeCount();
+	
+	/**
+	 * @return			the number of States evaluated
+	 */
+	long getLeafCount();
+	
+	/**
+	 * @return			the number of States visited per second of searching
+	 */
+	double getNodesPerSecond();
+	
+	/**
+	 * @return			the average effective branching factor of the searches
+	 */
+	double getAverageBranchingFactor();
+	
+	/**
+	 * @return			the share of the States that were not leaves whose remaining columns were pruned
+	 */
+	double getCutoffRate();
+	
+	/**
+	 * @return			the share of the transposition table lookups that found their State
+	 */
+	double getTableHitRate();
+	
+	/**
+	 * @return			the average time of a search in milliseconds
+	 */
+	double getAverageSearchMillis();
+	
+	/**
+	 * @return			the time of the longest search in milliseconds
+	 */
+	double getMaxSearchMillis();
+	
+	/**
+	 * @return			the statistics of the last search
+	 */
+	String getLastSearch();
+	
+	/**
+	 * Sets every statistic back to zero.
+	 */
+	void reset();
+}
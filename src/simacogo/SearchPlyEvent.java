@@ -0,0 +1,29 @@
+package simacogo;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A Java Flight Recorder event for one distance from the root of a search: how many States were visited there and
+ * how many that is per State one ply closer to the root.  Committed by Engine after the SearchEvent of the search.
+ * @author Patrick Drucker
+ */
+@Name("simacogo.SearchPly")
+@Label("Search Ply")
+@Category("Simacogo")
+@Description("The States visited at one distance from the root of a search")
+class SearchPlyEvent extends Event {
+	@Label("Ply")
+	@Description("Distance from the root")
+	int ply;
+	
+	@Label("Nodes")
+	long nodes;
+	
+	@Label("Branching Factor")
+	@Description("Nodes at this ply per node at the ply before")
+	double branchingFactor;
+}
@@ -0,0 +1,104 @@
+package simacogo;
+
+/**
+ * The immutable result of a search: the column to drop a piece in, its value, the line of play it expects and how
+ * much work it took.
+ * @author Patrick Drucker
+ */
+public final class SearchResult {
+	private final int bestColumn;			// the column (0-8) of the best move; -1 if there is no move
+	private final double value;				// the value of the best move for the searching player
+	private final int depth;				// the number of plies that were searched
+	private final long nodeCount;			// the number of States visited
+	private final long elapsedNanos;		// the time the search took
+	private final int[] principalVariation;	// the best line of play, bestColumn first
+	
+	/**
+	 * Creates a SearchResult.
+	 * @param bestColumn	the column (0-8) of the best move; -1 if there is no move
+	 * @param value			the value of the best move for the searching player
+	 * @param depth			the number of plies that were searched
+	 * @param nodeCount		the number of States visited
+	 * @param elapsedNanos	the time the search took in nanoseconds
+	 */
+	public SearchResult(int bestColumn, double value, int depth, long nodeCount, long elapsedNanos) {
+		this(bestColumn, value, depth, nodeCount, elapsedNanos, bestColumn < 0 ? new int[0] : new int[] {bestColumn});
+	}
+	
+	/**
+	 * Creates a SearchResult with the best line of play.
+	 * @param bestColumn			the column (0-8) of the best move; -1 if there is no move
+	 * @param value					the value of the best move for the searching player
+	 * @param depth					the number of plies that were searched
+	 * @param nodeCount				the number of States visited
+	 * @param elapsedNanos			the time the search took in nanoseconds
+	 * @param principalVariation	the columns of the best line of play, bestColumn first
+	 */
+	public SearchResult(int bestColumn, double value, int depth, long nodeCount, long elapsedNanos,
+			int[] principalVariation) {
+		this.bestColumn = bestColumn;
+		this.value = value;
+		this.depth = depth;
+		this.nodeCount = nodeCount;
+		this.elapsedNanos = elapsedNanos;
+		this.principalVariation = principalVariation.clone();
+	}
+	
+	/**
+	 * @return bestColumn	the column (0-8) of the best move; -1 if there is no move
+	 */
+	public int getBestColumn() {
+		return bestColumn;
+	}
+	
+	/**
+	 * @return value	the value of the best move for the searching player
+	 */
+	public double getValue() {
+		return value;
+	}
+	
+	/**
+	 * @return depth	the number of plies that were searched
+	 */
+	public int getDepth() {
+		return depth;
+	}
+	
+	/**
+	 * @return nodeCount	the number of States visited
+	 */
+	public long getNodeCount() {
+		return nodeCount;
+	}
+	
+	/**
+	 * @return elapsedNanos		the time the search took in nanoseconds
+	 */
+	public long getElapsedNanos() {
+		return elapsedNanos;
+	}
+	
+	/**
+	 * @return			the columns of the best line of play, the best column first; only the best column if the search
+	 * 					did not keep the line
+	 */
+	public int[] getPrincipalVariation() {
+		return principalVariation.clone();
+	}
+	
+	/**
+	 * @return			the number of States visited per second
+	 */
+	public double getNodesPerSecond() {
+		return elapsedNanos == 0 ? 0 : nodeCount * 1e9 / elapsedNanos;
+	}
+	
+	/* (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	public String toString() {
+		return "column " + (bestColumn + 1) + " value " + value + " depth " + depth + " nodes " + nodeCount
+				+ " time " + elapsedNanos / 1000000 + " ms";
+	}
+}
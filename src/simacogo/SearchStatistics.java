@@ -0,0 +1,163 @@
+package simacogo;
+
+import java.util.Arrays;
+
+/**
+ * The immutable statistics of one search: how many States it visited, how many of them were leaves, how often the
+ * pruning and the transposition table paid off, and how the tree grew from one ply to the next.
+ * Counts that the algorithm does not keep (e.g. cutoffs of plain minimax) are 0.
+ * @author Patrick Drucker
+ */
+public final class SearchStatistics {
+	private final String algorithm;			// the algorithm that searched
+	private final int depth;				// the number of plies that were searched
+	private final long nodeCount;			// the number of States visited
+	private final long leafCount;			// the number of States evaluated (at the full depth or the end of the Game)
+	private final long cutoffCount;			// the number of States whose remaining columns were pruned
+	private final long tableProbes;			// transposition table lookups
+	private final long tableHits;			// transposition table lookups that found their State
+	private final long[] plyNodeCounts;		// States visited at each distance from the root (index 0 is the root)
+	private final long elapsedNanos;		// the time the search took
+	
+	/**
+	 * Creates a SearchStatistics.
+	 * @param algorithm			the algorithm that searched
+	 * @param depth				the number of plies that were searched
+	 * @param nodeCount			the number of States visited
+	 * @param leafCount			the number of States evaluated
+	 * @param cutoffCount		the number of States whose remaining columns were pruned
+	 * @param tableProbes		transposition table lookups
+	 * @param tableHits			transposition table lookups that found their State
+	 * @param plyNodeCounts		States visited at each distance from the root, starting with the root
+	 * @param elapsedNanos		the time the search took in nanoseconds
+	 */
+	public SearchStatistics(String algorithm, int depth, long nodeCount, long leafCount, long cutoffCount, long tableProbes,
+			long tableHits, long[] plyNodeCounts, long elapsedNanos) {
+		this.algorithm = algorithm;
+		this.depth = depth;
+		this.nodeCount = nodeCount;
+		this.leafCount = leafCount;
+		this.cutoffCount = cutoffCount;
+		this.tableProbes = tableProbes;
+		this.tableHits = tableHits;
+		this.plyNodeCounts = plyNodeCounts.clone();
+		this.elapsedNanos = elapsedNanos;
+	}
+	
+	/**
+	 * @return algorithm
+	 */
+	public String getAlgorithm() {
+		return algorithm;
+	}
+	
+	/**
+	 * @return depth	the number of plies that were searched
+	 */
+	public int getDepth() {
+		return depth;
+	}
+	
+	/**
+	 * @return nodeCount	the number of States visited
+	 */
+	public long getNodeCount() {
+		return nodeCount;
+	}
+	
+	/**
+	 * @return leafCount	the number of States evaluated
+	 */
+	public long getLeafCount() {
+		return leafCount;
+	}
+	
+	/**
+	 * @return cutoffCount	the number of States whose remaining columns were pruned
+	 */
+	public long getCutoffCount() {
+		return cutoffCount;
+	}
+	
+	/**
+	 * @return tableProbes	the number of transposition table lookups
+	 */
+	public long getTableProbes() {
+		return tableProbes;
+	}
+	
+	/**
+	 * @return tableHits	the number of transposition table lookups that found their State
+	 */
+	public long getTableHits() {
+		return tableHits;
+	}
+	
+	/**
+	 * @return elapsedNanos		the time the search took in nanoseconds
+	 */
+	public long getElapsedNanos() {
+		return elapsedNanos;
+	}
+	
+	/**
+	 * @return			the number of States visited per second
+	 */
+	public double getNodesPerSecond() {
+		return elapsedNanos == 0 ? 0 : nodeCount * 1e9 / elapsedNanos;
+	}
+	
+	/**
+	 * @return			the share of the States that were not leaves whose remaining columns were pruned
+	 */
+	public double getCutoffRate() {
+		long interior = nodeCount - leafCount;
+		return interior <= 0 ? 0 : (double)cutoffCount / interior;
+	}
+	
+	/**
+	 * @return			the share of the transposition table lookups that found their State
+	 */
+	public double getTableHitRate() {
+		return tableProbes == 0 ? 0 : (double)tableHits / tableProbes;
+	}
+	
+	/**
+	 * @return			the number of columns searched per State on average: the depth-th root of the number of States
+	 */
+	public double getEffectiveBranchingFactor() {
+		return depth == 0 || nodeCount <= 1 ? 0 : Math.pow(nodeCount, 1.0 / depth);
+	}
+	
+	/**
+	 * @return			the number of distances from the root whose States were counted
+	 */
+	public int getNumPlies() {
+		return plyNodeCounts.length;
+	}
+	
+	/**
+	 * @param ply		a distance from the root, less than getNumPlies()
+	 * @return			the number of States visited at that distance from the root
+	 */
+	public long getNodeCount(int ply) {
+		return plyNodeCounts[ply];
+	}
+	
+	/**
+	 * @param ply		a distance from the root, between 1 and getNumPlies() - 1
+	 * @return			the number of States visited at that distance per State visited one ply closer to the root
+	 */
+	public double getBranchingFactor(int ply) {
+		return plyNodeCounts[ply - 1] == 0 ? 0 : (double)plyNodeCounts[ply] / plyNodeCounts[ply - 1];
+	}
+	
+	/* (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	public String toString() {
+		return String.format("%s depth %d nodes %d leaves %d nps %.0f ebf %.2f cutoffs %.1f%% table hits %.1f%% per ply %s",
+				algorithm, depth, nodeCount, leafCount, getNodesPerSecond(), getEffectiveBranchingFactor(),
+				100 * getCutoffRate(), 100 * getTableHitRate(), Arrays.toString(plyNodeCounts));
+	}
+}
@@ -1,6 +1,9 @@
 package simacogo;
 
 import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Random;
 
 /**
  * Simacogo is basically a combination of Connect-Four and Go and played on a 9x9 grid. 
@@ -16,11 +19,45 @@ public class Simacogo {
 	
 	/**
 	 * Runs a Game of Simacogo between a Human and Computer Player.
+	 * The computer's search is set with the arguments read by GameConfig.withArguments, e.g. "-algorithm parallel",
+	 * "-hash MB", "-threads N" or "-time MS" (a time budget per move instead of asking for a number of plies), and
+	 * "-book FILE" opens an opening book written by OpeningBookGenerator, and "-cache FILE" a position cache that keeps the
+	 * results of the computer's searches from one Game to the next.
+	 * "-size ROWSxCOLUMNS" plays on a grid of another size than 9x9, and "-ponder off" stops the computer from searching
+	 * while the human thinks.
+	 * Run with "-verify [numGames] [-size ROWSxCOLUMNS]" to instead cross-check the running scores against a full recomputation on random games.
+	 * Run with "-protocol [options]" to drive the engine from another program instead (see EngineProtocol).
 	 * @param args
 	 * @throws IOException
 	 */
 	public static void main(String[] args) throws IOException {
-		PrintGame print = new PrintGame();
+		if(args.length > 0 && args[0].equals("-protocol")) {
+			EngineProtocol.main(Arrays.copyOfRange(args, 1, args.length));
+			return;
+		}
+		if(args.length > 0 && args[0].equals("-verify")) {
+			int numGames = args.length > 1 && !args[1].startsWith("-") ? Integer.parseInt(args[1]) : 1000;
+			BoardSize size = new GameConfig().withArguments(args).getBoardSize();
+			Value.crossCheck(numGames, new Random(), size);
+			System.out.println("Scores agree on " + numGames + " random games on " + size + ".");
+			return;
+		}
+		// the computer searches the human's replies while the human thinks, unless told "-ponder off"
+		GameConfig config;
+		try {
+			config = new GameConfig().withPondering(true).withArguments(args);
+		}
+		catch(IllegalArgumentException e) {
+			System.err.println(e.getMessage());
+			return;
+		}
+		config = config.withPositionCache(PositionCache.fromArguments(args));
+		for(int i = 0; i + 1 < args.length; i++) {
+			if(args[i].equals("-book")) {
+				config = config.withOpeningBook(OpeningBook.open(Paths.get(args[i+1])));
+			}
+		}
+		PrintGame print = new PrintGame(config);
 		boolean finished = false;
 		while(!finished) {
 			finished = print.takeTurn();
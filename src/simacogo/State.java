@@ -1,31 +1,70 @@
 package simacogo;
 
 import java.util.ArrayList;
+import java.util.Random;
 
 /**
  * A class that represents the State of a game of Simacogo.
+ * The grid is stored as one bitboard per player plus the height of every column (see Bitboard), so that the checks
+ * made during the search are shifts, ANDs and popcounts.  A char[][] view of the grid is only built when asked for.
+ * The grid is 9x9 unless another BoardSize is given.  The bitboards and heights of a narrow grid are kept in fields;
+ * those of a wide grid in arrays, of which dropPiece copies the ones it changes.
  * @author Patrick Drucker
  */
 public class State {
-	private static final int ROWS = 9;					// number of rows in the grid
-	private static final int COLUMNS = 9;				// number of columns in the grid
-	public char[][] grid = new char[ROWS][COLUMNS];		// state of the grid
+	static final int ROWS = 9;							// number of rows in the standard grid
+	static final int COLUMNS = 9;						// number of columns in the standard grid
+	private static final int HEIGHT_BITS = 4;			// bits used to store the height of each column
+	private static final long HEIGHT_MASK = (1L << HEIGHT_BITS) - 1;
+	final BoardSize size;								// number of rows and columns of the grid
+	long lowX, highX;									// bitboard of the 'X' pieces (narrow grids)
+	long lowO, highO;									// bitboard of the 'O' pieces (narrow grids)
+	long heights;										// number of pieces in each column, HEIGHT_BITS per column (narrow grids)
+	long[] wideX, wideO;								// bitboards of the pieces (wide grids); null for narrow grids
+	byte[] wideHeights;									// number of pieces in each column (wide grids); null for narrow grids
+	double scoreX;										// running score of the 'X' pieces
+	double scoreO;										// running score of the 'O' pieces
+	long hash;											// Zobrist hash of the grid (see Zobrist)
+	long mirrorHash;									// Zobrist hash of the mirror image of the grid
+	private char[][] grid;								// char view of the grid, built on demand
 	char nextMovePiece;									// the piece of the Player who has the next move
+	char otherPiece;									// the piece of the Player who moves after that
 	int turnNumber;										// turn number
 	int columnDropped;									// the column a piece was dropped in to get to this State
 	
 	/**
-	 * Constructor that initializes a 9x9 Simicogo grid with all '.'.
+	 * Constructor that initializes an empty 9x9 Simicogo grid where 'O' moves first.
 	 */
 	public State() {
+		this('O', 'X');
+	}
+	
+	/**
+	 * Constructor that initializes an empty 9x9 Simicogo grid.
+	 * @param firstMovePiece	the piece of the Player who moves first
+	 * @param secondMovePiece	the piece of the other Player
+	 */
+	public State(char firstMovePiece, char secondMovePiece) {
+		this(BoardSize.STANDARD, firstMovePiece, secondMovePiece);
+	}
+	
+	/**
+	 * Constructor that initializes an empty Simicogo grid of any size.
+	 * @param size				the number of rows and columns of the grid
+	 * @param firstMovePiece	the piece of the Player who moves first
+	 * @param secondMovePiece	the piece of the other Player
+	 */
+	public State(BoardSize size, char firstMovePiece, char secondMovePiece) {
+		this.size = size;
+		if(size.isWide()) {
+			wideX = new long[size.getNumWords()];
+			wideO = new long[size.getNumWords()];
+			wideHeights = new byte[size.getColumns()];
+		}
 		columnDropped = -1;
-		nextMovePiece = Game.getFirstMovePiece();
+		nextMovePiece = firstMovePiece;
+		otherPiece = secondMovePiece;
 		turnNumber = 0;
-		for (int row = 0; row < ROWS; row++) {
-			for (int col = 0; col < COLUMNS; col++) {
-				grid[row][col] = '.';
-			}
-		}
 	}
 	
 	/**
@@ -33,29 +72,23 @@ public class State {
 	 * @param state 	the State to be copied into this State.
 	 */
 	public State(State state) {
+		this.size = state.size;
 		this.columnDropped = state.columnDropped;
 		this.nextMovePiece = state.nextMovePiece;
+		this.otherPiece = state.otherPiece;
 		this.turnNumber = state.turnNumber;
-		for (int row = 0; row < ROWS; row++) {
-			for (int col = 0; col < COLUMNS; col++) {
-				this.grid[row][col] = state.grid[row][col];
-			}
-		}
-	}
-	
-	/**
-	 * Constructor that creates a new State out of a given grid.
-	 * @param grid
-	 */
-	private State(char[][] grid) {
-		columnDropped = -1;
-		this.nextMovePiece = Game.getFirstMovePiece();
-		this.turnNumber = 0;
-		for (int row = 0; row < ROWS; row++) {
-			for (int col = 0; col < COLUMNS; col++) {
-				this.grid[row][col] = grid[row][col];
-			}
-		}
+		this.lowX = state.lowX;
+		this.highX = state.highX;
+		this.lowO = state.lowO;
+		this.highO = state.highO;
+		this.heights = state.heights;
+		this.scoreX = state.scoreX;
+		this.scoreO = state.scoreO;
+		this.hash = state.hash;
+		this.mirrorHash = state.mirrorHash;
+		this.wideX = state.wideX;
+		this.wideO = state.wideO;
+		this.wideHeights = state.wideHeights;
 	}
 	
 	/**
@@ -63,14 +96,7 @@ public class State {
 	 * @return true 	if this grid is in a game-ending state; false otherwise
 	 */
 	public boolean isTerminalState() {
-		for (int i = 0; i < ROWS; i++) {
-			for (int j = 0; j < COLUMNS; j++) {
-				if (grid[i][j] == '.') {
-					return false;
-				}
-			}
-		}
-		return true;
+		return turnNumber == size.getNumCells();
 	}
 	
 	/**
@@ -79,13 +105,10 @@ public class State {
 	 * @return nextStates 	a list of possible States that are reachable from this State
 	 */
 	public ArrayList<State> successors() {
-		ArrayList<State> nextStates = new ArrayList<State>();
-		State nextState;
-		for(int col = 0; col < COLUMNS; col++) {
-			nextState = dropPiece(col);
-			if(nextState != null) {
-				nextStates.add(nextState);
-				nextState.columnDropped = col;
+		ArrayList<State> nextStates = new ArrayList<State>(size.getColumns());
+		for(int col = 0; col < size.getColumns(); col++) {
+			if(height(col) != size.getRows()) {
+				nextStates.add(dropPiece(col));
 			}
 		}
 		return nextStates;
@@ -97,36 +120,161 @@ public class State {
 	 * @return nextState 	the new State if a piece were to be dropped in columnNumber; null if column is full
 	 */
 	public State dropPiece(int columnNumber) {
-		State nextState = new State(this.grid);
-		int numAvailableSpace = numAvailableSpaces(columnNumber);
-		if(numAvailableSpace != 0) {
-			nextState.grid[numAvailableSpace-1][columnNumber] = nextMovePiece;
-			nextState.turnNumber = this.turnNumber + 1;
-			nextState.nextMovePiece = Game.getPieces()[nextState.turnNumber % 2];		// changes the nextState piece depending on turnNumber (odd or even)
+		return dropPiece(columnNumber, nextMovePiece);
+	}
+	
+	/**
+	 * Drops a given piece into a column, whichever piece has the next move, and passes the move on as dropPiece does.
+	 * @param columnNumber 	the column that the piece will be dropped into
+	 * @param piece			'X' or 'O'
+	 * @return nextState 	the new State; null if column is full
+	 */
+	private State dropPiece(int columnNumber, char piece) {
+		int height = height(columnNumber);
+		if(height == size.getRows()) {
+			return null;
+		}
+		State nextState = new State(this);
+		int index = size.index(columnNumber, height);
+		if(size.isWide()) {
+			dropWide(nextState, columnNumber, index, piece);
+		}
+		else if(piece == 'X') {
+			nextState.scoreX += Value.dropScore(Bitboard.nextToNeighbours(size, lowX, highX, index), Bitboard.diagonalNeighbours(size, lowX, highX, index));
+			if(index < Long.SIZE) {
+				nextState.lowX |= 1L << index;
+			}
+			else {
+				nextState.highX |= 1L << (index - Long.SIZE);
+			}
 		}
 		else {
-			nextState = null;
+			nextState.scoreO += Value.dropScore(Bitboard.nextToNeighbours(size, lowO, highO, index), Bitboard.diagonalNeighbours(size, lowO, highO, index));
+			if(index < Long.SIZE) {
+				nextState.lowO |= 1L << index;
+			}
+			else {
+				nextState.highO |= 1L << (index - Long.SIZE);
+			}
+		}
+		if(!size.isWide()) {
+			nextState.heights += 1L << (columnNumber * HEIGHT_BITS);
 		}
+		nextState.hash ^= Zobrist.key(piece, index);
+		nextState.mirrorHash ^= Zobrist.key(piece, size.index(size.mirror(columnNumber), height));
+		nextState.columnDropped = columnNumber;
+		nextState.turnNumber = this.turnNumber + 1;
+		nextState.nextMovePiece = otherPiece;		// the players take turns
+		nextState.otherPiece = nextMovePiece;
 		return nextState;
 	}
 	
 	/**
-	 * Returns an integer that represents the number of available spaces in a column.
-	 * @param columnNumber 	a column number
-	 * @return the number 	of available spaces in a specified column number
+	 * Drops the next piece into a wide grid: copies the bitboard of the piece and the heights for nextState and changes
+	 * the copies, so this State keeps its own.
+	 * @param nextState		the copy of this State that the piece is dropped into
+	 * @param columnNumber	the column
+	 * @param index			bit index of the position the piece lands on
+	 * @param piece			the piece that is dropped
 	 */
-	public int numAvailableSpaces(int columnNumber) {
-		for(int row = 0; row < ROWS; row++) {
-			for(int col = 0; col < COLUMNS; col++) {
-				if(col == columnNumber && row == 0 && grid[row][col] != '.') {
-					return 0;
+	private void dropWide(State nextState, int columnNumber, int index, char piece) {
+		if(piece == 'X') {
+			nextState.scoreX += Value.dropScore(Bitboard.nextToNeighbours(size, wideX, index), Bitboard.diagonalNeighbours(size, wideX, index));
+			nextState.wideX = wideX.clone();
+			Bitboard.set(nextState.wideX, index);
+		}
+		else {
+			nextState.scoreO += Value.dropScore(Bitboard.nextToNeighbours(size, wideO, index), Bitboard.diagonalNeighbours(size, wideO, index));
+			nextState.wideO = wideO.clone();
+			Bitboard.set(nextState.wideO, index);
+		}
+		nextState.wideHeights = wideHeights.clone();
+		nextState.wideHeights[columnNumber]++;
+	}
+	
+	/**
+	 * Reads a State from its rows, top row first, separated by '/', as GameServer sends them in reply to BOARD, e.g.
+	 * "XO./O../OX." for a 3x3 grid.  The size of the grid is that of the rows.  As 'O' moves first, 'O' has the next move
+	 * if both pieces are on the grid as often, and 'X' if 'O' is on it once more.
+	 * @param board		the rows of '.', 'X' and 'O'
+	 * @return			the State
+	 * @throws IllegalArgumentException	if the rows are not a grid of Simacogo
+	 */
+	public static State parse(String board) {
+		String[] rows = board.trim().split("/");
+		BoardSize size = BoardSize.of(rows.length, rows[0].length());
+		for(String row : rows) {
+			if(row.length() != size.getColumns()) {
+				throw new IllegalArgumentException("Rows of " + row.length() + " and " + size.getColumns() + " columns");
+			}
+		}
+		State state = new State(size, 'O', 'X');
+		int numX = 0;
+		int numO = 0;
+		for(int col = 0; col < size.getColumns(); col++) {
+			for(int row = size.getRows() - 1; row >= 0; row--) {
+				char piece = rows[row].charAt(col);
+				if(piece == 'X' || piece == 'O') {
+					if(state.height(col) != size.getRows() - 1 - row) {
+						throw new IllegalArgumentException("Piece above an empty position in column " + (col + 1));
+					}
+					state = state.dropPiece(col, piece);
+					numX += piece == 'X' ? 1 : 0;
+					numO += piece == 'O' ? 1 : 0;
 				}
-				else if(col == columnNumber && isOccupied(row, col)) {
-					return row;
+				else if(piece != '.') {
+					throw new IllegalArgumentException("Unknown piece " + piece);
 				}
 			}
 		}
-		return ROWS;
+		if(numO != numX && numO != numX + 1) {
+			throw new IllegalArgumentException(numO + " 'O' and " + numX + " 'X' pieces");
+		}
+		state.nextMovePiece = numO == numX ? 'O' : 'X';
+		state.otherPiece = numO == numX ? 'X' : 'O';
+		state.columnDropped = -1;
+		return state;
+	}
+	
+	/**
+	 * Plays random moves from the initial State, 'O' first, e.g. to start the Games of a Tournament or of self-play
+	 * from different positions.
+	 * @param random	source of the random columns
+	 * @param size		the size of the grid
+	 * @param plies		the number of moves to play; fewer if the Game ends before
+	 * @return			the State after the moves
+	 */
+	public static State randomOpening(Random random, BoardSize size, int plies) {
+		State state = new State(size, 'O', 'X');
+		for(int ply = 0; ply < plies && !state.isTerminalState(); ply++) {
+			int col;
+			do {
+				col = random.nextInt(size.getColumns());
+			} while(state.numAvailableSpaces(col) == 0);
+			state = state.dropPiece(col);
+		}
+		return state;
+	}
+	
+	/**
+	 * Returns the number of pieces in a column.
+	 * @param columnNumber 	a column number
+	 * @return				the number of pieces that have been dropped in the column
+	 */
+	int height(int columnNumber) {
+		if(wideHeights != null) {
+			return wideHeights[columnNumber];
+		}
+		return (int)(heights >>> (columnNumber * HEIGHT_BITS) & HEIGHT_MASK);
+	}
+	
+	/**
+	 * Returns an integer that represents the number of available spaces in a column.
+	 * @param columnNumber 	a column number
+	 * @return the number 	of available spaces in a specified column number
+	 */
+	public int numAvailableSpaces(int columnNumber) {
+		return size.getRows() - height(columnNumber);
 	}
 	
 	/**
@@ -136,10 +284,21 @@ public class State {
 	 * @return true 	if the position of this spot in the grid is occupied; false otherwise
 	 */
 	private boolean isOccupied(int row, int column) {
-		if(grid[row][column] != '.') {
-			return true;
+		return isSet('X', row, column) || isSet('O', row, column);
+	}
+	
+	/**
+	 * @param piece		'X' or 'O'
+	 * @param row		row number of the grid (0 is the top row)
+	 * @param column	column number of the grid
+	 * @return			true if the piece is at that position of the grid
+	 */
+	private boolean isSet(char piece, int row, int column) {
+		int index = size.index(column, size.getRows() - 1 - row);
+		if(size.isWide()) {
+			return Bitboard.isSet(wideBits(piece), index);
 		}
-		return false;
+		return Bitboard.isSet(lowBits(piece), highBits(piece), index);
 	}
 	
 	/**
@@ -153,14 +312,112 @@ public class State {
 		}
 		return true;
 	}
+	
+	/**
+	 * Returns the score of a piece, kept up to date by dropPiece.
+	 * @param piece		'X' or 'O'
+	 * @return			the total score of the piece in this State
+	 */
+	double score(char piece) {
+		return piece == 'X' ? scoreX : scoreO;
+	}
+	
+	/**
+	 * @param piece		'X' or 'O'
+	 * @return			the low word of the bitboard of a piece
+	 */
+	long lowBits(char piece) {
+		return piece == 'X' ? lowX : lowO;
+	}
+	
+	/**
+	 * @param piece		'X' or 'O'
+	 * @return			the high word of the bitboard of a piece
+	 */
+	long highBits(char piece) {
+		return piece == 'X' ? highX : highO;
+	}
+	
+	/**
+	 * @param piece		'X' or 'O'
+	 * @return			the bitboard of a piece on a wide grid; must not be changed
+	 */
+	long[] wideBits(char piece) {
+		return piece == 'X' ? wideX : wideO;
+	}
+	
+	/**
+	 * @return size		the number of rows and columns of the grid
+	 */
+	public BoardSize getSize() {
+		return size;
+	}
 
 	/**
+	 * Returns the grid as a rows x columns array of '.', 'X' and 'O'.  The array is built from the bitboards the first time it is
+	 * asked for, so it should not be used by the search.
 	 * @return grid
 	 */
 	public char[][] getGrid() {
+		if(grid == null) {
+			char[][] view = new char[size.getRows()][size.getColumns()];
+			for (int row = 0; row < size.getRows(); row++) {
+				for (int col = 0; col < size.getColumns(); col++) {
+					if(isSet('X', row, col)) {
+						view[row][col] = 'X';
+					}
+					else if(isSet('O', row, col)) {
+						view[row][col] = 'O';
+					}
+					else {
+						view[row][col] = '.';
+					}
+				}
+			}
+			grid = view;
+		}
 		return grid;
 	}
 	
+	/**
+	 * @return nextMovePiece	the piece of the Player who has the next move
+	 */
+	public char getNextMovePiece() {
+		return nextMovePiece;
+	}
+	
+	/**
+	 * @return hash		the Zobrist hash of the grid
+	 */
+	public long getHash() {
+		return hash;
+	}
+	
+	/**
+	 * The grid and its mirror image (reflected left to right) score the same and have the same future, so they share
+	 * one entry in the tables of the searches: the one of the smaller of their hashes.
+	 * @return			the Zobrist hash of the grid or of its mirror image, whichever is smaller
+	 */
+	public long getCanonicalHash() {
+		return Math.min(hash, mirrorHash);
+	}
+	
+	/**
+	 * Converts a column between the grid and the grid of getCanonicalHash, in either direction.
+	 * @param col		a column number, or -1
+	 * @return			col mirrored if getCanonicalHash is the hash of the mirror image; col otherwise
+	 */
+	public int canonicalColumn(int col) {
+		return col < 0 || mirrorHash >= hash ? col : size.mirror(col);
+	}
+	
+	/**
+	 * @return			true if the grid is its own mirror image, e.g. the empty grid
+	 */
+	public boolean isSymmetric() {
+		return hash == mirrorHash;
+	}
+	
 	/**
 	 * @return columnDropped
 	 */
@@ -172,13 +429,14 @@ public class State {
 	 * @see java.lang.Object#toString()
 	 */
 	public String toString() {
-		String s = "";
-		for(int row = 0; row < ROWS; row++) {
-			for(int col = 0; col < COLUMNS; col++) {
-				s += grid[row][col] + " ";
+		char[][] grid = getGrid();
+		StringBuilder s = new StringBuilder(size.getRows() * (2 * size.getColumns() + 1));
+		for(int row = 0; row < size.getRows(); row++) {
+			for(int col = 0; col < size.getColumns(); col++) {
+				s.append(grid[row][col]).append(' ');
 			}
-			s += "\n";
+			s.append('\n');
 		}
-		return s;
+		return s.toString();
 	}
 }
@@ -0,0 +1,43 @@
+package simacogo;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * A final class with the thread pools shared by GameServer and LoadClient.
+ * Cannot be instantiated.
+ * @author Patrick Drucker
+ */
+final class Threads {
+	
+	/**
+	 * Private constructor to prevent instantiation of this class.
+	 */
+	private Threads() {
+	}
+	
+	/**
+	 * Returns an executor that runs every task on a new virtual thread when the JVM has them (Java 21 and later), and on
+	 * a cached pool of platform threads otherwise.  Meant for tasks that spend their time blocked on I/O, so any number of
+	 * them can wait at once.  The virtual thread executor is looked up by reflection, so this also compiles and runs on
+	 * older JVMs.
+	 * @return			the executor
+	 */
+	static ExecutorService newPerTaskExecutor() {
+		try {
+			return (ExecutorService)Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		}
+		catch(ReflectiveOperationException | UnsupportedOperationException e) {
+			return Executors.newCachedThreadPool();
+		}
+	}
+	
+	/**
+	 * @param executor	an executor returned by newPerTaskExecutor
+	 * @return			true if it runs its tasks on virtual threads
+	 */
+	static boolean isVirtual(ExecutorService executor) {
+		return !(executor instanceof ThreadPoolExecutor);
+	}
+}
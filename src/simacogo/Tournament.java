@@ -0,0 +1,252 @@
+package simacogo;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Plays two computer players, A and B, against each other without a human, on all the processors at once, to show
+ * whether a change to the search changes how well it plays.  Each side has its own GameConfig, so the two can differ
+ * in depth or time budget, algorithm and evaluation.
+ * The games are played in pairs: both games of a pair start from the same random opening, with A moving first in one
+ * and B in the other, so neither side profits from a lucky opening or from moving first.  Every game is played with
+ * new players, so the games do not depend on each other or on the order in which the threads play them.
+ * Prints the wins, draws and losses of A, the Elo difference of A over B with its 95% error bar (only a lower or an
+ * upper bound when one side won nearly every game) and the average time per move of each side, and can write one line
+ * per game to a file.
+ * Usage: Tournament [-games N] [-threads N] [-opening PLIES] [-seed S] [-out FILE] -a "OPTIONS" -b "OPTIONS"
+ * where OPTIONS are the options of Simacogo that choose the search, e.g. -a "-plies 6" -b "-time 50 -eval potential".
+ * @author Patrick Drucker
+ */
+public class Tournament {
+	private static final int TABLE_SIZE_MB = 1;			// default table size of each side, as many games are played at once
+	private static final double Z_95 = 1.96;			// standard normal quantile of a 95% two-sided interval
+	
+	/**
+	 * The result of one game, for side A.
+	 */
+	private static final class GameResult {
+		final char pieceA;			// the piece A played: 'O' if A moved first
+		final double scoreA;		// the final score of A
+		final double scoreB;		// the final score of B
+		final int movesA;			// the moves A chose (after the opening)
+		final int movesB;
+		final long nanosA;			// the time A spent choosing its moves
+		final long nanosB;
+		
+		GameResult(char pieceA, double scoreA, double scoreB, int movesA, int movesB, long nanosA, long nanosB) {
+			this.pieceA = pieceA;
+			this.scoreA = scoreA;
+			this.scoreB = scoreB;
+			this.movesA = movesA;
+			this.movesB = movesB;
+			this.nanosA = nanosA;
+			this.nanosB = nanosB;
+		}
+		
+		/**
+		 * @return		1 if A won, 0.5 for a draw and 0 if A lost
+		 */
+		double points() {
+			return scoreA > scoreB ? 1 : scoreA == scoreB ? 0.5 : 0;
+		}
+	}
+	
+	/**
+	 * Runs the tournament and prints its results.
+	 * @param args
+	 * @throws IOException
+	 * @throws InterruptedException
+	 * @throws ExecutionException
+	 */
+	public static void main(String[] args) throws IOException, InterruptedException, ExecutionException {
+		int numGames = 1000;
+		int numThreads = Runtime.getRuntime().availableProcessors();
+		int openingPlies = 4;
+		long seed = 1;
+		String out = null;
+		String optionsA = "";
+		String optionsB = "";
+		for(int i = 0; i + 1 < args.length; i++) {
+			if(args[i].equals("-games")) {
+				numGames = Integer.parseInt(args[i+1]);
+			}
+			else if(args[i].equals("-threads")) {
+				numThreads = Integer.parseInt(args[i+1]);
+			}
+			else if(args[i].equals("-opening")) {
+				openingPlies = Integer.parseInt(args[i+1]);
+			}
+			else if(args[i].equals("-seed")) {
+				seed = Long.parseLong(args[i+1]);
+			}
+			else if(args[i].equals("-out")) {
+				out = args[i+1];
+			}
+			else if(args[i].equals("-a")) {
+				optionsA = args[i+1];
+			}
+			else if(args[i].equals("-b")) {
+				optionsB = args[i+1];
+			}
+		}
+		GameConfig base = new GameConfig().withTableSizeMB(TABLE_SIZE_MB);
+		final GameConfig configA = base.withArguments(split(optionsA));
+		final GameConfig configB = base.withArguments(split(optionsB));
+		if(configA.getBoardSize() != configB.getBoardSize()) {
+			throw new IllegalArgumentException("A and B have to play on the same size of grid");
+		}
+		int numPairs = (numGames + 1) / 2;
+		System.out.println("A: " + configA + "\nB: " + configB + "\n" + numPairs * 2 + " games from " + openingPlies
+				+ "-ply random openings on " + numThreads + " threads");
+	
+		ExecutorService pool = Executors.newFixedThreadPool(numThreads);
+		List<Future<GameResult[]>> futures = new ArrayList<Future<GameResult[]>>();
+		long start = System.nanoTime();
+		for(int pair = 0; pair < numPairs; pair++) {
+			// an even number of moves, so that 'O' has the next move
+			final State opening = State.randomOpening(new Random(seed * 1000003 + pair), configA.getBoardSize(),
+					openingPlies - openingPlies % 2);
+			futures.add(pool.submit(() -> new GameResult[] {
+					play(opening, configA, configB, 'O'), play(opening, configA, configB, 'X')}));
+		}
+	
+		double wins = 0, draws = 0, losses = 0;
+		double pairPoints = 0, pairPointsSquared = 0;
+		long movesA = 0, movesB = 0, nanosA = 0, nanosB = 0;
+		try(PrintWriter writer = out == null ? null : new PrintWriter(Files.newBufferedWriter(Paths.get(out)))) {
+			if(writer != null) {
+				writer.println("game\tA piece\tA score\tB score\tA points\tA ms/move\tB ms/move");
+			}
+			for(int pair = 0; pair < numPairs; pair++) {
+				double points = 0;
+				for(GameResult result : futures.get(pair).get()) {
+					points += result.points();
+					wins += result.points() == 1 ? 1 : 0;
+					draws += result.points() == 0.5 ? 1 : 0;
+					losses += result.points() == 0 ? 1 : 0;
+					movesA += result.movesA;
+					movesB += result.movesB;
+					nanosA += result.nanosA;
+					nanosB += result.nanosB;
+					if(writer != null) {
+						writer.printf("%d\t%c\t%.1f\t%.1f\t%.1f\t%.3f\t%.3f%n", (int)(wins + draws + losses), result.pieceA,
+								result.scoreA, result.scoreB, result.points(), millisPerMove(result.nanosA, result.movesA),
+								millisPerMove(result.nanosB, result.movesB));
+					}
+				}
+				pairPoints += points / 2;
+				pairPointsSquared += (points / 2) * (points / 2);
+				if((pair + 1) % Math.max(1, numPairs / 10) == 0 && pair + 1 < numPairs) {
+					System.out.printf("%d games: %.0f-%.0f-%.0f%n", (pair + 1) * 2, wins, draws, losses);
+				}
+			}
+		}
+		pool.shutdown();
+	
+		// the two games of a pair are not independent, so the error comes from the spread of the pair results
+		double score = pairPoints / numPairs;
+		double variance = Math.max(0, pairPointsSquared / numPairs - score * score);
+		double error = Z_95 * Math.sqrt(variance / numPairs);
+		double low = score - error;
+		double high = score + error;
+		if(high >= 1) {
+			// the spread of the pairs is too small when A won nearly all of them, so the rule of three bounds it:
+			// 95% sure that fewer than 3 pairs in numPairs are lost
+			low = Math.min(low, 1 - 3.0 / numPairs);
+		}
+		if(low <= 0) {
+			high = Math.max(high, 3.0 / numPairs);
+		}
+		// a side that took every point would be infinitely stronger, so half a game is moved to the other side
+		double elo = elo((score * numPairs * 2 + 0.5) / (numPairs * 2 + 1));
+		System.out.printf("A wins %.0f, draws %.0f, loses %.0f: score %.1f%% +/- %.1f%%%n", wins, draws, losses,
+				100 * score, 100 * error);
+		if(low > 0 && high < 1) {
+			System.out.printf("Elo difference of A over B: %.1f +/- %.1f (95%%)%n", elo, (elo(high) - elo(low)) / 2);
+		}
+		else if(low > 0) {
+			System.out.printf("Elo difference of A over B: %.1f, at least %.1f (95%%)%n", elo, elo(low));
+		}
+		else if(high < 1) {
+			System.out.printf("Elo difference of A over B: %.1f, at most %.1f (95%%)%n", elo, elo(high));
+		}
+		else {
+			System.out.printf("Elo difference of A over B: %.1f, too few games for a bound%n", elo);
+		}
+		System.out.printf("Average time per move: A %.3f ms, B %.3f ms%n", millisPerMove(nanosA, movesA),
+				millisPerMove(nanosB, movesB));
+		System.out.printf("Played in %d s%n", (System.nanoTime() - start) / 1000000000);
+	}
+	
+	/**
+	 * Plays one game between A and B from an opening.
+	 * @param opening	the State after the opening; 'O' has the next move
+	 * @param configA	settings of A
+	 * @param configB	settings of B
+	 * @param pieceA	the piece A plays; 'O' moves first
+	 * @return			the result of the game
+	 */
+	private static GameResult play(State opening, GameConfig configA, GameConfig configB, char pieceA) {
+		ComputerPlayer a = new ComputerPlayer(configA, pieceA);
+		ComputerPlayer b = new ComputerPlayer(configB, pieceA == 'O' ? 'X' : 'O');
+		a.setOpponent(b);
+		b.setOpponent(a);
+		State state = opening;
+		int movesA = 0, movesB = 0;
+		long nanosA = 0, nanosB = 0;
+		try {
+			while(!state.isTerminalState()) {
+				long start = System.nanoTime();
+				if(state.getNextMovePiece() == pieceA) {
+					state = a.dropPiece(state, -1);
+					nanosA += System.nanoTime() - start;
+					movesA++;
+				}
+				else {
+					state = b.dropPiece(state, -1);
+					nanosB += System.nanoTime() - start;
+					movesB++;
+				}
+			}
+		}
+		finally {
+			a.getEngine().shutdown();
+			b.getEngine().shutdown();
+		}
+		return new GameResult(pieceA, state.score(a.getPiece()), state.score(b.getPiece()), movesA, movesB, nanosA, nanosB);
+	}
+	
+	/**
+	 * @param score		the share of the points won, between 0 and 1
+	 * @return			the Elo difference that is expected to win that share; infinite for 0 and 1
+	 */
+	private static double elo(double score) {
+		return 400 * Math.log10(score / (1 - score));
+	}
+	
+	/**
+	 * @param nanos		time spent on the moves
+	 * @param moves		the number of moves
+	 * @return			the average milliseconds per move; 0 if there were none
+	 */
+	private static double millisPerMove(long nanos, long moves) {
+		return moves == 0 ? 0 : nanos / 1e6 / moves;
+	}
+	
+	/**
+	 * @param options	options separated by spaces
+	 * @return			the options
+	 */
+	private static String[] split(String options) {
+		return options.trim().isEmpty() ? new String[0] : options.trim().split("\\s+");
+	}
+}
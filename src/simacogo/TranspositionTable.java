@@ -0,0 +1,128 @@
+package simacogo;
+
+import java.util.Arrays;
+
+/**
+ * A fixed-size hash table of search results, indexed by the Zobrist hash of a State.
+ * The table is split into buckets of two entries: the first keeps the deepest result that hashed to the bucket and
+ * the second is always replaced, so that shallow results near the leaves do not push out expensive ones.
+ * Every entry is a key and a packed data long holding the value, the bound type, the depth and the best column.
+ * The value is stored as a float, which holds the values of an Evaluation exactly only if they are multiples of a
+ * power of two (such as 1/4 or 1/64) and not too large, so the weights of an Evaluation are chosen that way: a value
+ * that is rounded in the table no longer equals the value of the search and can change which move is the best.
+ * The table can be shared by searches running in different threads without locking: the key is stored XORed with the
+ * data, so an entry that is torn by two threads writing it at once no longer matches its hash and is ignored.
+ * @author Patrick Drucker
+ */
+public class TranspositionTable {
+	static final int EXACT = 1;								// the stored value is the value of the State
+	static final int LOWER = 2;								// the value of the State is at least the stored value
+	static final int UPPER = 3;								// the value of the State is at most the stored value
+	private static final int ENTRY_BYTES = 2 * Long.BYTES;	// a key and a data long
+	private static final int MINIMAL_SIZE_BYTES = 32 * 1024;	// size of a table created with a size of 0 MB
+	private static final int BOUND_SHIFT = 0;
+	private static final int COLUMN_SHIFT = 2;
+	private static final int DEPTH_SHIFT = 8;
+	private static final int VALUE_SHIFT = 32;
+	private final long[] keys;					// hash of the State in each entry, XORed with the data
+	private final long[] data;					// packed result in each entry; 0 if the entry is empty
+	private final int bucketMask;				// number of buckets - 1 (the number of buckets is a power of two)
+	
+	/**
+	 * Creates a table that uses about sizeMB megabytes.
+	 * @param sizeMB	size of the table in megabytes; 0 for a minimal table (for running many Games at once)
+	 */
+	public TranspositionTable(int sizeMB) {
+		if(sizeMB < 0) {
+			throw new IllegalArgumentException("Transposition table size cannot be negative: " + sizeMB);
+		}
+		long sizeBytes = sizeMB == 0 ? MINIMAL_SIZE_BYTES : (long)sizeMB * 1024 * 1024;
+		long numBuckets = Long.highestOneBit(sizeBytes / (2 * ENTRY_BYTES));
+		numBuckets = Math.min(numBuckets, 1 << 29);
+		keys = new long[(int)numBuckets * 2];
+		data = new long[(int)numBuckets * 2];
+		bucketMask = (int)numBuckets - 1;
+	}
+	
+	/**
+	 * Looks up a State.
+	 * @param hash		Zobrist hash of the State
+	 * @return			the packed entry of the State; 0 if the State is not in the table
+	 */
+	public long probe(long hash) {
+		int entry = ((int)hash & bucketMask) * 2;
+		long packed = data[entry];
+		if(packed != 0 && (keys[entry] ^ packed) == hash) {
+			return packed;
+		}
+		packed = data[entry+1];
+		if(packed != 0 && (keys[entry+1] ^ packed) == hash) {
+			return packed;
+		}
+		return 0;
+	}
+	
+	/**
+	 * Stores the result of searching a State.  The result goes in the depth-preferred entry of its bucket if it is at
+	 * least as deep as what is there (or is for the same State), otherwise in the always-replace entry.
+	 * @param hash		Zobrist hash of the State
+	 * @param value		the value found by the search
+	 * @param bound		EXACT, LOWER or UPPER
+	 * @param depth		the number of plies searched below the State
+	 * @param bestCol	the column of the best move found; -1 if there is none
+	 */
+	public void store(long hash, double value, int bound, int depth, int bestCol) {
+		long packed = (long)Float.floatToIntBits((float)value) << VALUE_SHIFT | (long)(depth & 0xFF) << DEPTH_SHIFT
+				| (long)((bestCol + 1) & 0x3F) << COLUMN_SHIFT | bound << BOUND_SHIFT;
+		int entry = ((int)hash & bucketMask) * 2;
+		long existing = data[entry];
+		if(existing == 0 || (keys[entry] ^ existing) == hash || depth >= depth(existing)) {
+			keys[entry] = hash ^ packed;
+			data[entry] = packed;
+		}
+		else {
+			keys[entry+1] = hash ^ packed;
+			data[entry+1] = packed;
+		}
+	}
+	
+	/**
+	 * Empties the table.
+	 */
+	public void clear() {
+		Arrays.fill(keys, 0);
+		Arrays.fill(data, 0);
+	}
+	
+	/**
+	 * @param entry		a packed entry returned by probe
+	 * @return			the stored value
+	 */
+	static double value(long entry) {
+		return Float.intBitsToFloat((int)(entry >>> VALUE_SHIFT));
+	}
+	
+	/**
+	 * @param entry		a packed entry returned by probe
+	 * @return			EXACT, LOWER or UPPER
+	 */
+	static int bound(long entry) {
+		return (int)(entry >>> BOUND_SHIFT & 0x3);
+	}
+	
+	/**
+	 * @param entry		a packed entry returned by probe
+	 * @return			the number of plies that were searched below the State
+	 */
+	static int depth(long entry) {
+		return (int)(entry >>> DEPTH_SHIFT & 0xFF);
+	}
+	
+	/**
+	 * @param entry		a packed entry returned by probe
+	 * @return			the column of the best move; -1 if there is none
+	 */
+	static int bestColumn(long entry) {
+		return (int)(entry >>> COLUMN_SHIFT & 0x3F) - 1;
+	}
+}
@@ -1,5 +1,7 @@
 package simacogo;
 
+import java.util.Random;
+
 /**
  * A final class that contain static functions that can evaluate a State and the score of the Game.
  * Cannot be instantiated.
@@ -18,12 +20,108 @@ public final class Value {
 	
 	/**
 	 * Evaluates a Player's score for the minimax algorithm (scorePlayer - scoreOpponent).
+	 * Uses the running scores kept by the State, so this does not depend on the size of the grid.
 	 * @param player 	the Player whose score is being evaluated
 	 * @param state 	the current state of
 	 * @return			the evaluated score of the current State
 	 */
 	public static double evaluate(Player player, State state) {
-		return Value.playerScore(player, state) - Value.playerScore(player.getOpponent(), state);
+		return state.score(player.getPiece()) - state.score(player.getOpponent().getPiece());
+	}
+	
+	/**
+	 * Evaluates a Player's score for the minimax algorithm (scorePlayer - scoreOpponent) on a SearchBoard.
+	 * @param player 	the Player whose score is being evaluated
+	 * @param board 	the board being searched
+	 * @return			the evaluated score of the board
+	 */
+	public static double evaluate(Player player, SearchBoard board) {
+		return board.score(player.getPiece()) - board.score(player.getOpponent().getPiece());
+	}
+	
+	/**
+	 * Returns the score gained by a piece that is dropped next to other pieces of the same kind.
+	 * Every new pair is counted twice, once for each of its two pieces.
+	 * @param nextTo	the number of common pieces next to the dropped piece (up, down, left, right)
+	 * @param diagonal	the number of common pieces diagonal from the dropped piece
+	 * @return			the score added by the drop
+	 */
+	static double dropScore(int nextTo, int diagonal) {
+		return 2 * (NEXT_TO * nextTo + DIAGONAL * diagonal);
+	}
+	
+	/**
+	 * Calculates the current score of a piece from the bitboards of a State.  Gives the same result as playerScore
+	 * without touching the grid, so this is the one used by the search.
+	 * @param piece		the piece whose score is being determined ('X' or 'O')
+	 * @param state		the current State of the Game.
+	 * @return			the total score of the piece
+	 */
+	static double bitboardScore(char piece, State state) {
+		if(state.getSize().isWide()) {
+			return bitboardScore(state.getSize(), state.wideBits(piece));
+		}
+		return bitboardScore(state.getSize(), state.lowBits(piece), state.highBits(piece));
+	}
+	
+	/**
+	 * Calculates the score of the pieces of a bitboard.
+	 * @param size		the size of the grid
+	 * @param low		low word of the bitboard
+	 * @param high		high word of the bitboard
+	 * @return			the total score of the pieces
+	 */
+	static double bitboardScore(BoardSize size, long low, long high) {
+		return 2 * (NEXT_TO * Bitboard.nextToPairs(size, low, high) + DIAGONAL * Bitboard.diagonalPairs(size, low, high));
+	}
+	
+	/**
+	 * Calculates the score of the pieces of a wide bitboard.
+	 * @param size		the size of the grid
+	 * @param words		the bitboard
+	 * @return			the total score of the pieces
+	 */
+	static double bitboardScore(BoardSize size, long[] words) {
+		return 2 * (NEXT_TO * Bitboard.nextToPairs(size, words) + DIAGONAL * Bitboard.diagonalPairs(size, words));
+	}
+	
+	/**
+	 * Plays random games and checks after every drop that the running scores kept by the State agree with
+	 * bitboardScore and with the full recomputation done by playerScore.
+	 * @param numGames	the number of random games to play
+	 * @param random	source of the random columns
+	 * @throws IllegalStateException	if the scores of a State do not agree
+	 */
+	public static void crossCheck(int numGames, Random random) {
+		crossCheck(numGames, random, BoardSize.STANDARD);
+	}
+	
+	/**
+	 * Plays random games on a grid of any size and checks after every drop that the running scores kept by the State
+	 * agree with bitboardScore and with the full recomputation done by playerScore.
+	 * @param numGames	the number of random games to play
+	 * @param random	source of the random columns
+	 * @param size		the size of the grid
+	 * @throws IllegalStateException	if the scores of a State do not agree
+	 */
+	public static void crossCheck(int numGames, Random random, BoardSize size) {
+		for(int game = 0; game < numGames; game++) {
+			State state = new State(size, 'O', 'X');
+			while(!state.isTerminalState()) {
+				int col;
+				do {
+					col = random.nextInt(size.getColumns());
+				} while(state.numAvailableSpaces(col) == 0);
+				state = state.dropPiece(col);
+				for(char piece : new char[] {'X', 'O'}) {
+					double running = state.score(piece);
+					if(running != bitboardScore(piece, state) || running != pieceScore(piece, state)) {
+						throw new IllegalStateException("Score of " + piece + " is " + running + " but should be "
+								+ pieceScore(piece, state) + " in game " + game + ":\n" + state);
+					}
+				}
+			}
+		}
 	}
 	
 	/**
@@ -33,11 +131,21 @@ public final class Value {
 	 * @return			the total score of a Player
 	 */
 	public static double playerScore(Player player, State state) {
+		return pieceScore(player.getPiece(), state);
+	}
+	
+	/**
+	 * Calculates the current score of a piece in a specific State by going over every position of the grid.
+	 * @param piece		the piece whose score is being determined ('X' or 'O')
+	 * @param state		the current State of the Game.
+	 * @return			the total score of the piece
+	 */
+	static double pieceScore(char piece, State state) {
 		double playerScore = 0;
 		for(int row = 0; row < state.getGrid().length; row++) {
 			for(int col = 0; col < state.getGrid()[row].length; col++) {
-				if(state.getGrid()[row][col] == player.getPiece()) {
-					playerScore += score(player.getPiece(), state, row, col);
+				if(state.getGrid()[row][col] == piece) {
+					playerScore += score(piece, state, row, col);
 				}
 			}
 		}
@@ -87,7 +195,7 @@ public final class Value {
 	 * @return			1 or 0
 	 */
 	private static int rightScore(char piece, State state, int row, int col) {
-		if(col != state.getGrid().length-1 && state.getGrid()[row][col+1] == piece) {
+		if(col != state.getGrid()[row].length-1 && state.getGrid()[row][col+1] == piece) {
 			return NEXT_TO;
 		}
 		else {
@@ -0,0 +1,41 @@
+package simacogo;
+
+import java.util.Random;
+
+/**
+ * A final class that holds the random keys used to hash States (Zobrist hashing).
+ * The hash of a State is the XOR of the keys of every piece on the grid, so dropping a piece only XORs in one key.
+ * The keys come from a fixed seed, so a State has the same hash in every run of the program.  Grids of every size share
+ * the keys, so States of different sizes should not be stored in the same table.
+ * Cannot be instantiated.
+ * @author Patrick Drucker
+ */
+final class Zobrist {
+	private static final long SEED = 0x5349_4D41_434F_474FL;		// "SIMACOGO"
+	private static final int NUM_KEYS = (BoardSize.MAX_ROWS + 1) * BoardSize.MAX_COLUMNS;	// bit indexes of the largest grid
+	private static final long[] KEYS_X = new long[NUM_KEYS];	// key of an 'X' at each bit index
+	private static final long[] KEYS_O = new long[NUM_KEYS];	// key of an 'O' at each bit index
+
+	static {
+		Random random = new Random(SEED);
+		for(int index = 0; index < KEYS_X.length; index++) {
+			KEYS_X[index] = random.nextLong();
+			KEYS_O[index] = random.nextLong();
+		}
+	}
+
+	/**
+	 * Private constructor to prevent instantiation.
+	 */
+	private Zobrist() {
+	}
+
+	/**
+	 * @param piece		'X' or 'O'
+	 * @param index		bit index of the position (see Bitboard)
+	 * @return			the key of a piece at a position
+	 */
+	static long key(char piece, int index) {
+		return piece == 'X' ? KEYS_X[index] : KEYS_O[index];
+	}
+}
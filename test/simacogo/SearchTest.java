@@ -0,0 +1,157 @@
+package simacogo;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Checks the searches against Minimax, which searches every move and so is the reference for the value and the best
+ * column of a position: AlphaBeta and ParallelSearch have to find the same value and column, and EndgameSolver the
+ * value of Minimax searched to the end of the Game and a column that reaches it.  Deeper than MINIMAX_PLIES, where
+ * Minimax would take too long, ParallelSearch is checked against an AlphaBeta with an empty table instead, as its
+ * split points are only nested from SPLIT_PLIES + 2 plies on.  The positions are the initial State and seeded random
+ * openings, on the standard grid and on a wide one, with either piece to move.  Every search keeps its tables from one
+ * position and depth to the next, as it does in a Game, so results it reads back are checked too.
+ * @author Patrick Drucker
+ */
+public class SearchTest {
+	private static final BoardSize WIDE = BoardSize.of(9, 13);		// a grid whose bitboards do not fit in 128 bits
+	private static final int NUM_POSITIONS = 6;						// random positions per grid
+	private static final int NUM_THREADS = 8;						// threads of ParallelSearch, more than most processors
+	private static final int MINIMAX_PLIES = 6;						// the deepest searches are checked against Minimax
+	private static final int MAX_PLIES = ParallelSearch.SPLIT_PLIES + 3;	// the deepest ParallelSearch is checked
+	private static final Player[] PLAYERS = new Game(new GameConfig().withTableSizeMB(0).withEndgameCells(0)).getPlayers();
+	
+	@Test
+	public void alphaBetaMatchesMinimax() {
+		for(BoardSize size : new BoardSize[] {BoardSize.STANDARD, WIDE}) {
+			AlphaBeta alphaBeta = new AlphaBeta(1);
+			for(State state : positions(size, 1)) {
+				for(int numPlies = 1; numPlies <= MINIMAX_PLIES; numPlies++) {
+					Player player = player(state);
+					SearchResult expected = new Minimax().search(state, numPlies, player);
+					double value = alphaBeta.search(state, numPlies, player);
+					String position = describe(state, numPlies);
+					assertEquals(position, expected.getValue(), value, 0);
+					assertEquals(position, expected.getBestColumn(), alphaBeta.getResultingState().getColumnDropped());
+				}
+			}
+		}
+	}
+	
+	@Test
+	public void parallelSearchMatchesMinimax() {
+		for(BoardSize size : new BoardSize[] {BoardSize.STANDARD, WIDE}) {
+			ParallelSearch parallelSearch = new ParallelSearch(NUM_THREADS, 1);
+			try {
+				for(State state : positions(size, 2)) {
+					for(int numPlies = 1; numPlies <= MAX_PLIES; numPlies++) {
+						Player player = player(state);
+						SearchResult expected = reference(state, numPlies, player);
+						SearchResult result = parallelSearch.search(state, numPlies, player);
+						String position = describe(state, numPlies);
+						assertEquals(position, expected.getValue(), result.getValue(), 0);
+						assertEquals(position, expected.getBestColumn(), result.getBestColumn());
+					}
+				}
+			}
+			finally {
+				parallelSearch.shutdown();
+			}
+		}
+	}
+	
+	@Test
+	public void endgameSolverMatchesMinimax() {
+		for(BoardSize size : new BoardSize[] {BoardSize.STANDARD, WIDE}) {
+			EndgameSolver solver = new EndgameSolver(1);
+			for(State state : positions(size, 3)) {
+				// play on to the last few empty cells
+				Random random = new Random(state.getCanonicalHash());
+				while(EndgameSolver.emptyCells(state) > 8) {
+					state = state.dropPiece(randomColumn(state, random));
+				}
+				if(state.isTerminalState()) {
+					continue;
+				}
+				Player player = player(state);
+				int numPlies = EndgameSolver.emptyCells(state);
+				SearchResult expected = new Minimax().search(state, numPlies, player);
+				SearchResult result = solver.solve(state, player);
+				String position = describe(state, numPlies);
+				assertEquals(position, expected.getValue(), result.getValue(), 0);
+				// the solver may choose another of several best columns, so its column is searched by Minimax
+				double value = new Minimax().minimax(state.dropPiece(result.getBestColumn()), numPlies - 1, false, player);
+				assertEquals(position + "column " + result.getBestColumn(), expected.getValue(), value, 0);
+			}
+		}
+	}
+	
+	/**
+	 * @param state		a State
+	 * @param numPlies	the depth to search it to
+	 * @param player	the Player that has the next move
+	 * @return			the value and best column of Minimax, or of an AlphaBeta with an empty table if Minimax would
+	 * 					take too long
+	 */
+	private static SearchResult reference(State state, int numPlies, Player player) {
+		if(numPlies <= MINIMAX_PLIES) {
+			return new Minimax().search(state, numPlies, player);
+		}
+		AlphaBeta alphaBeta = new AlphaBeta();
+		double value = alphaBeta.search(state, numPlies, player);
+		return new SearchResult(alphaBeta.getResultingState().getColumnDropped(), value, numPlies, 0, 0);
+	}
+	
+	/**
+	 * @param size		the size of the grid
+	 * @param seed		seed of the random openings
+	 * @return			the initial State and NUM_POSITIONS random openings of 1 to 20 moves
+	 */
+	private static List<State> positions(BoardSize size, long seed) {
+		List<State> positions = new ArrayList<State>();
+		positions.add(new State(size, 'O', 'X'));
+		Random random = new Random(seed);
+		for(int i = 0; i < NUM_POSITIONS; i++) {
+			State state = State.randomOpening(random, size, 1 + random.nextInt(20));
+			if(!state.isTerminalState()) {
+				positions.add(state);
+			}
+		}
+		return positions;
+	}
+	
+	/**
+	 * @param state		a State
+	 * @param random	source of the column
+	 * @return			a random column that is not full
+	 */
+	private static int randomColumn(State state, Random random) {
+		int col;
+		do {
+			col = random.nextInt(state.getSize().getColumns());
+		} while(state.numAvailableSpaces(col) == 0);
+		return col;
+	}
+	
+	/**
+	 * @param state		a State
+	 * @return			a Player of the piece that has the next move
+	 */
+	private static Player player(State state) {
+		return PLAYERS[0].getPiece() == state.getNextMovePiece() ? PLAYERS[0] : PLAYERS[1];
+	}
+	
+	/**
+	 * @param state		a State
+	 * @param numPlies	the depth it is searched to
+	 * @return			the State and depth, for the message of a failed check
+	 */
+	private static String describe(State state, int numPlies) {
+		return numPlies + " plies from\n" + state;
+	}
+}